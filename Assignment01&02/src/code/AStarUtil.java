@@ -2,10 +2,7 @@ package code;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Set;
 
 /**
  * This utility class provides a public method to find a guaranteed shorted path
@@ -14,84 +11,141 @@ import java.util.Set;
  *
  */
 public class AStarUtil {
+
+    // how often (in polled states, minus one) findPath() checks if it's cancelled
+    private static final int CANCEL_CHECK_INTERVAL = (1 << 10) - 1;
     
     /**
      * A static method to find a guaranteed shorted path between two nodes 
-     * using A* algorithm
+     * using A* algorithm.
+     * 
+     * The search runs over the compact form of the graph, keeping the cost, 
+     * the previous state and the arc used for each search state in arrays. The 
+     * fringe is an indexed heap keyed by state, so when a cheaper way to a state 
+     * in the fringe is found its priority is lowered in place (decrease-key). 
+     * 
+     * To honour turn restrictions exactly, the search is turn-aware: a node 
+     * reached by an arc that some turn is banned from gets its own state for 
+     * that arc (numbered from numNodes up), since the turns allowed from there 
+     * depend on the arc. Every other way of reaching the node shares the node's 
+     * own state. Each turn is checked against the TurnRestrictions index in O(1).
+     * 
+     * @param graph    the compact form of the graph
+     * @param start   the start point
+     * @param end     the destination
+     * @param restrictions 
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    returns a list of Segment objects, all segments within 
+     *            are the path from start to end. Returns an empty List 
+     *            If no path can be found 
+     */
+    public static List<Segment> findPath(CompactGraph graph, Node start, Node end,
+            TurnRestrictions restrictions, boolean distanceFirst) {
+        return findPath(graph, start, end, restrictions, distanceFirst, 
+                CostModel.euclidean(graph, distanceFirst));
+    }
+
+    /**
+     * Same as above, but with the given heuristic instead of the euclidean one.
+     * @param graph    the compact form of the graph
      * @param start   the start point
      * @param end     the destination
      * @param restrictions 
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @param heuristic    the heuristic for the cost model given by distanceFirst
      * @return    returns a list of Segment objects, all segments within 
      *            are the path from start to end. Returns an empty List 
      *            If no path can be found 
      */
-    public static List<Segment> findPath(Node start, Node end, 
-            Set<Restriction> restrictions, boolean distanceFirst) {
-        // a collection storing all nodes that are visited
-        HashSet<Integer> visitedNodes = new HashSet<>();
-        PriorityQueue<AStarNode> fringe = new PriorityQueue<>();
+    public static List<Segment> findPath(CompactGraph graph, Node start, Node end,
+            TurnRestrictions restrictions, boolean distanceFirst, CostModel.Heuristic heuristic) {
+        return findPath(graph, start, end, restrictions, distanceFirst, heuristic,
+                new SearchSpace(numStates(graph, restrictions)));
+    }
+
+    /**
+     * Same as above, but keeps its scratch state in the given search space instead
+     * of allocating new arrays, so that it can be reused across queries.
+     * @param graph    the compact form of the graph
+     * @param start   the start point
+     * @param end     the destination
+     * @param restrictions 
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @param heuristic    the heuristic for the cost model given by distanceFirst
+     * @param space    a search space of numStates(graph, restrictions) states, not 
+     *                 used by any other search at the same time
+     * @return    returns a list of Segment objects, all segments within 
+     *            are the path from start to end. Returns an empty List 
+     *            If no path can be found, or if the thread is interrupted 
+     *            (which is how a search on a background thread is cancelled)
+     */
+    public static List<Segment> findPath(CompactGraph graph, Node start, Node end,
+            TurnRestrictions restrictions, boolean distanceFirst, CostModel.Heuristic heuristic, 
+            SearchSpace space) {
+        int numNodes = graph.numNodes();
+        space.reset();
+        // cost from start, the state we came from and the arc we came by, for each state
+        double[] costFromStart = space.costFromStart;
+        int[] cameFrom = space.cameFrom;
+        int[] cameBy = space.cameBy;
+        IndexedMinHeap fringe = space.fringe;
+        int target = end.index;
 
         // enqueue the start node
-        fringe.offer(new AStarNode(start, null, end, distanceFirst));
+        costFromStart[start.index] = 0;
+        cameFrom[start.index] = -1;
+        cameBy[start.index] = -1;
+        space.markReached(start.index);
+        fringe.insert(start.index, heuristic.estimate(start.index, target));
         
+        int polls = 0;
         while (!fringe.isEmpty()) {
-            AStarNode polledNode = fringe.poll();
-            // mark it as visited by adding it into visited set.
-            visitedNodes.add(polledNode.node.nodeID);
+            // give up if cancelled; checked now and then, as it's not free
+            if ((++polls & CANCEL_CHECK_INTERVAL) == 0 && Thread.currentThread().isInterrupted()) {
+                return new ArrayList<>();
+            }
+            int polledState = fringe.poll();
+            // mark it as visited.
+            space.markVisited(polledState);
+            int polledNode = polledState < numNodes ? polledState : graph.targets[cameBy[polledState]];
             
             // if the end node is dequeued, the path is found
-            if (polledNode.node.nodeID == end.nodeID) {
-                List<Segment> path = new ArrayList<>();
-                AStarNode backTracer = polledNode;
-                // back trace it from end to start.
-                while (backTracer.cameFrom != null){
-                    path.add(backTracer.edge);
-                    backTracer = backTracer.cameFrom;
-                }
-                
-                Collections.reverse(path);
-                
-                return path;
+            if (polledNode == target) {
+                return backTrace(graph, cameFrom, cameBy, polledState);
             }
             
-            Node oneEnd = polledNode.node;
-            outer: for (Segment seg : polledNode.node.joinedSegments) {
-                Node theOtherEnd = seg.theOtherEnd(oneEnd);
-                
-                // check if this segment is not for car, if so, don't enqueue this node
-                if (seg.road.notForCar) {
+            for (int arc = graph.offsets[polledNode]; arc < graph.offsets[polledNode + 1]; arc++) {
+                // filter out those that are not for car or against a one-way road
+                if (!graph.canDrive(arc)) {
                     continue;
                 }
                 
-                // check if from this segment is one-way only, if so, don't enqueue this node
-                if (isOneWay(oneEnd, seg, theOtherEnd)) {
+                // check if this turn is restricted, if so, don't enqueue this state
+                if (polledState >= numNodes && restrictions.isBanned(cameBy[polledState], arc)) {
                     continue;
                 }
                 
-                // check if this node is in restriction list, if so, don't enqueue this node
-                for (Restriction restr : restrictions) {
-                    if (isInRestriction(polledNode, oneEnd, seg, theOtherEnd, restr)) {
-                        continue outer;
-                    }
+                // filter out those visited
+                int theOtherEnd = graph.targets[arc];
+                int nextState = forwardState(restrictions, numNodes, theOtherEnd, arc);
+                if (space.isVisited(nextState)) {
+                    continue;
                 }
 
-                if (!visitedNodes.contains(theOtherEnd.nodeID)) { // filter out those visited
-                    AStarNode neighbour = new AStarNode(theOtherEnd, polledNode, end, distanceFirst);
-                    // a flag to mark if this neighbor is updated or added directly
-                    boolean isInFringe = false;  
-                    for (AStarNode nodeAInFringe : fringe) {
-                        if (nodeAInFringe.node.nodeID == theOtherEnd.nodeID) {
-                            // if already in fringe, see if its cost needs to be updated
-                            compareAndUpdate(neighbour, nodeAInFringe, distanceFirst);
-                            isInFringe = true;
-                            break;
-                        }
-                    }
-                    
+                double cost = costFromStart[polledState] + graph.cost(arc, distanceFirst);
+                if (!space.isReached(nextState)) {
                     // if not in fringe, add it in.
-                    if (!isInFringe) {
-                        fringe.offer(neighbour);
-                    }
+                    space.markReached(nextState);
+                    costFromStart[nextState] = cost;
+                    cameFrom[nextState] = polledState;
+                    cameBy[nextState] = arc;
+                    fringe.insert(nextState, cost + heuristic.estimate(theOtherEnd, target));
+                } else if (cost < costFromStart[nextState]) {
+                    // if already in fringe and this way is cheaper, update its cost
+                    costFromStart[nextState] = cost;
+                    cameFrom[nextState] = polledState;
+                    cameBy[nextState] = arc;
+                    fringe.decreaseKey(nextState, cost + heuristic.estimate(theOtherEnd, target));
                 }
             }
         }
@@ -100,50 +154,274 @@ public class AStarUtil {
     }
 
     /**
-     * This method check if the next-to-be-enqueued node is one of restrictions.
-     * @param polledNode
-     * @param oneEnd
-     * @param seg
-     * @param theOtherEnd
-     * @param restr
-     * @return    
+     * @param graph
+     * @param restrictions
+     * @return    the number of states findPath() searches over: one for each node, 
+     *            and one for each arc some turn is banned from
+     */
+    public static int numStates(CompactGraph graph, TurnRestrictions restrictions) {
+        return graph.numNodes() + restrictions.numRestrictedIn();
+    }
+
+    /**
+     * @return    the forward search state reached by driving the given arc into node:
+     *            the arc's own state if some turn is banned from it, otherwise the node's
      */
-    private static boolean isInRestriction(AStarNode polledNode, Node oneEnd, Segment seg, Node theOtherEnd,
-            Restriction restr) {
-        return oneEnd.nodeID == restr.rstrNode.nodeID
-                && polledNode.cameFrom != null && polledNode.edge != null
-                && polledNode.cameFrom.node.nodeID == restr.nodeFrom.nodeID
-                && polledNode.edge.roadID == restr.roadFrom.roadID
-                && seg.roadID == restr.roadTo.roadID
-                && theOtherEnd.nodeID == restr.nodeTo.nodeID;
+    private static int forwardState(TurnRestrictions restrictions, int numNodes, int node, int arc) {
+        int index = restrictions.inIndex(arc);
+        return index < 0 ? node : numNodes + index;
     }
 
     /**
-     * This method check if the next-to-be-enqueued node in on the other end 
-     * of a one-way only road.
-     * @param oneEnd
-     * @param seg
-     * @param theOtherEnd
-     * @return
+     * @return    the backward search state of leaving node by the given arc: the arc's
+     *            own state if some turn is banned onto it, otherwise the node's
      */
-    private static boolean isOneWay(Node oneEnd, Segment seg, Node theOtherEnd) {
-        // for debug
-        // System.out.println("one-way encountered: roadID: " + seg.road.roadID
-        //         + ". road name: " + seg.road.label + ", " + seg.road.city
-        //         + ". from Node: " + oneEnd.nodeID + ". to node: " + theOtherEnd.nodeID);
-        return seg.road.isOneWay && oneEnd.nodeID == seg.end.nodeID 
-                && theOtherEnd.nodeID == seg.start.nodeID;
+    private static int backwardState(TurnRestrictions restrictions, int numNodes, int node, int arc) {
+        int index = restrictions.outIndex(arc);
+        return index < 0 ? node : numNodes + index;
     }
 
-    private static void compareAndUpdate(AStarNode neighbour, AStarNode nodeAInFringe, boolean distanceFirst) {
-        if (neighbour.costFromStart < nodeAInFringe.costFromStart) {
-            nodeAInFringe.cameFrom = neighbour.cameFrom;
-            nodeAInFringe.setEdge();
-            if (distanceFirst) {
-                nodeAInFringe.updateCostFromStartDist();                
+    /**
+     * This method back traces the path from the end to the start.
+     * @param graph
+     * @param cameFrom
+     * @param cameBy
+     * @param end    the state the end node was reached in
+     * @return    the path from start to end
+     */
+    private static List<Segment> backTrace(CompactGraph graph, int[] cameFrom, int[] cameBy, int end) {
+        List<Segment> path = new ArrayList<>();
+        for (int state = end; cameBy[state] >= 0; state = cameFrom[state]) {
+            path.add(graph.segment(cameBy[state]));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * A static method to find a guaranteed shortest path between two nodes using
+     * bidirectional A*: one search goes forward from the start, the other goes
+     * backward from the end over the reversed graph, so that one-way roads are
+     * followed the right way in both. 
+     * 
+     * Both searches share one potential, the average of the two heuristics:
+     *     potential(v) = (estimate(v, end) - estimate(start, v)) / 2
+     * The forward search orders states by cost + potential, the backward one by 
+     * cost - potential, which keeps both consistent. Whenever a search reaches a 
+     * node already reached by the other, a path through that node is recorded if 
+     * it is the best so far and its turn there isn't banned. The search stops 
+     * once the two smallest keys add up to no less than the best path, since no 
+     * undiscovered path can then be cheaper.
+     * 
+     * Both searches are turn-aware in the same way as findPath(): the forward 
+     * search keeps a state for each arc some turn is banned from, the backward 
+     * search one for each arc some turn is banned onto.
+     * 
+     * @param graph    the compact form of the graph
+     * @param start   the start point
+     * @param end     the destination
+     * @param restrictions 
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @param heuristic    the heuristic for the cost model given by distanceFirst
+     * @return    returns a list of Segment objects, all segments within 
+     *            are the path from start to end. Returns an empty List 
+     *            If no path can be found 
+     */
+    public static List<Segment> findPathBidirectional(CompactGraph graph, Node start, Node end,
+            TurnRestrictions restrictions, boolean distanceFirst, CostModel.Heuristic heuristic) {
+        int numNodes = graph.numNodes();
+        int source = start.index;
+        int target = end.index;
+        
+        // forward search: cost from start, and the state we came from and the arc 
+        // we came by
+        int numForward = numNodes + restrictions.numRestrictedIn();
+        double[] costFromStart = new double[numForward];
+        int[] cameFrom = new int[numForward];
+        int[] cameBy = new int[numForward];
+        boolean[] reachedForward = new boolean[numForward];
+        boolean[] visitedForward = new boolean[numForward];
+        IndexedMinHeap forwardFringe = new IndexedMinHeap(numForward);
+        
+        // backward search: cost to end, and the state and arc we go on to
+        int numBackward = numNodes + restrictions.numRestrictedOut();
+        double[] costToEnd = new double[numBackward];
+        int[] goTo = new int[numBackward];
+        int[] goBy = new int[numBackward];
+        boolean[] reachedBackward = new boolean[numBackward];
+        boolean[] visitedBackward = new boolean[numBackward];
+        IndexedMinHeap backwardFringe = new IndexedMinHeap(numBackward);
+        
+        // the potential of each node, worked out when it's first reached by either search
+        double[] potentials = new double[numNodes];
+        boolean[] hasPotential = new boolean[numNodes];
+        
+        reachedForward[source] = true;
+        cameFrom[source] = -1;
+        cameBy[source] = -1;
+        forwardFringe.insert(source, potential(heuristic, source, target, source, potentials, hasPotential));
+        reachedBackward[target] = true;
+        goTo[target] = -1;
+        goBy[target] = -1;
+        backwardFringe.insert(target, -potential(heuristic, source, target, target, potentials, hasPotential));
+        
+        // the best path found so far, and the states where its two halves meet
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetingForward = -1, meetingBackward = -1;
+        if (source == target) {
+            bestCost = 0;
+            meetingForward = source;
+            meetingBackward = target;
+        }
+        
+        while (!forwardFringe.isEmpty() && !backwardFringe.isEmpty()) {
+            if (forwardFringe.peekPriority() + backwardFringe.peekPriority() >= bestCost) {
+                break;
+            }
+            
+            if (forwardFringe.peekPriority() <= backwardFringe.peekPriority()) {
+                // expand the forward search
+                int polledState = forwardFringe.poll();
+                visitedForward[polledState] = true;
+                int polledNode = polledState < numNodes ? polledState : graph.targets[cameBy[polledState]];
+                for (int arc = graph.offsets[polledNode]; arc < graph.offsets[polledNode + 1]; arc++) {
+                    if (!graph.canDrive(arc)
+                            || polledState >= numNodes && restrictions.isBanned(cameBy[polledState], arc)) {
+                        continue;
+                    }
+                    int theOtherEnd = graph.targets[arc];
+                    int nextState = forwardState(restrictions, numNodes, theOtherEnd, arc);
+                    if (visitedForward[nextState]) {
+                        continue;
+                    }
+                    
+                    double cost = costFromStart[polledState] + graph.cost(arc, distanceFirst);
+                    if (!reachedForward[nextState] || cost < costFromStart[nextState]) {
+                        reachedForward[nextState] = true;
+                        costFromStart[nextState] = cost;
+                        cameFrom[nextState] = polledState;
+                        cameBy[nextState] = arc;
+                        forwardFringe.insertOrDecrease(nextState, 
+                                cost + potential(heuristic, source, target, theOtherEnd, potentials, hasPotential));
+                        
+                        // met the backward search, either in the node's own state or
+                        // in the state of an arc leaving it
+                        int meeting = bestBackwardMeeting(graph, restrictions, theOtherEnd, arc, 
+                                reachedBackward, costToEnd, goBy);
+                        if (meeting >= 0 && cost + costToEnd[meeting] < bestCost) {
+                            bestCost = cost + costToEnd[meeting];
+                            meetingForward = nextState;
+                            meetingBackward = meeting;
+                        }
+                    }
+                }
             } else {
-                nodeAInFringe.updateCostFromStartTime();
+                // expand the backward search
+                int polledState = backwardFringe.poll();
+                visitedBackward[polledState] = true;
+                int polledNode = polledState < numNodes ? polledState : graph.source(goBy[polledState]);
+                for (int arc = graph.offsets[polledNode]; arc < graph.offsets[polledNode + 1]; arc++) {
+                    if (!graph.canDriveReversed(arc)) {
+                        continue;
+                    }
+                    // the twin is the arc actually driven, from theOtherEnd into polledNode
+                    int driven = graph.twin(arc);
+                    if (polledState >= numNodes && restrictions.isBanned(driven, goBy[polledState])) {
+                        continue;
+                    }
+                    int theOtherEnd = graph.targets[arc];
+                    int nextState = backwardState(restrictions, numNodes, theOtherEnd, driven);
+                    if (visitedBackward[nextState]) {
+                        continue;
+                    }
+                    
+                    double cost = costToEnd[polledState] + graph.cost(arc, distanceFirst);
+                    if (!reachedBackward[nextState] || cost < costToEnd[nextState]) {
+                        reachedBackward[nextState] = true;
+                        costToEnd[nextState] = cost;
+                        goTo[nextState] = polledState;
+                        goBy[nextState] = driven;
+                        backwardFringe.insertOrDecrease(nextState, 
+                                cost - potential(heuristic, source, target, theOtherEnd, potentials, hasPotential));
+                        
+                        // met the forward search, either in the node's own state or
+                        // in the state of an arc arriving at it
+                        int meeting = bestForwardMeeting(graph, restrictions, theOtherEnd, driven, 
+                                reachedForward, costFromStart, cameBy);
+                        if (meeting >= 0 && cost + costFromStart[meeting] < bestCost) {
+                            bestCost = cost + costFromStart[meeting];
+                            meetingForward = meeting;
+                            meetingBackward = nextState;
+                        }
+                    }
+                }
+            }
+        }
+        
+        if (meetingForward < 0) {
+            // if cannot find a path, return an empty list
+            return new ArrayList<>();
+        }
+        List<Segment> path = backTrace(graph, cameFrom, cameBy, meetingForward);
+        for (int state = meetingBackward; goBy[state] >= 0; state = goTo[state]) {
+            path.add(graph.segment(goBy[state]));
+        }
+        return path;
+    }
+
+    /**
+     * This method finds the cheapest backward search state at a node that can be
+     * joined by arriving through the given arc.
+     * @return    the state, or -1 if there is none
+     */
+    private static int bestBackwardMeeting(CompactGraph graph, TurnRestrictions restrictions, int node, 
+            int arcIn, boolean[] reachedBackward, double[] costToEnd, int[] goBy) {
+        int best = reachedBackward[node] ? node : -1;
+        if (restrictions.isRestricted(node)) {
+            int numNodes = graph.numNodes();
+            for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+                int state = backwardState(restrictions, numNodes, node, arc);
+                if (state >= numNodes && reachedBackward[state] && !restrictions.isBanned(arcIn, goBy[state])
+                        && (best < 0 || costToEnd[state] < costToEnd[best])) {
+                    best = state;
+                }
             }
         }
+        return best;
+    }
+
+    /**
+     * This method finds the cheapest forward search state at a node that can be
+     * joined by leaving through the given arc.
+     * @return    the state, or -1 if there is none
+     */
+    private static int bestForwardMeeting(CompactGraph graph, TurnRestrictions restrictions, int node, 
+            int arcOut, boolean[] reachedForward, double[] costFromStart, int[] cameBy) {
+        int best = reachedForward[node] ? node : -1;
+        if (restrictions.isRestricted(node)) {
+            int numNodes = graph.numNodes();
+            for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+                // the twin of an arc leaving the node is an arc arriving at it
+                int state = forwardState(restrictions, numNodes, node, graph.twin(arc));
+                if (state >= numNodes && reachedForward[state] && !restrictions.isBanned(cameBy[state], arcOut)
+                        && (best < 0 || costFromStart[state] < costFromStart[best])) {
+                    best = state;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return    the average potential of a node used by bidirectional A*, worked
+     *            out on first use and then kept in potentials
+     */
+    private static double potential(CostModel.Heuristic heuristic, int source, int target, int node,
+            double[] potentials, boolean[] hasPotential) {
+        if (!hasPotential[node]) {
+            potentials[node] = (heuristic.estimate(node, target) - heuristic.estimate(source, node)) / 2;
+            hasPotential[node] = true;
+        }
+        return potentials[node];
     }
 }
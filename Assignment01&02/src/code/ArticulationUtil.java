@@ -1,180 +1,150 @@
 package code;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.Stack;
 
 /**
- * This utility class provides a single method to find all articulation points
- * within a given collection of nodes, assuming nodes are connected as graph already. 
+ * This utility class provides methods to find all articulation points, bridges and
+ * biconnected components within a graph, with the Hopcroft-Tarjan algorithm.
+ *
+ * It runs over the compact form of the graph, and the depth-first search is
+ * iterative, with its stack and all per-node state (discovery time, low point, the
+ * arc the node was reached by, and the next arc to look at) in arrays indexed by
+ * node index, so the search takes linear time, makes no object per node, and does
+ * not modify the nodes, so it can be rerun at any time.
+ *
+ * Each segment is pushed onto a stack when it's first met from below, i.e. as a
+ * tree edge or as a back edge to an ancestor; once a subtree is found to hang off
+ * the rest of the graph by its parent alone, the segments pushed since its tree
+ * edge form one biconnected component. The arc a node was reached by is skipped by
+ * its twin, not by the parent node, so that two segments between the same pair of
+ * nodes are seen as a cycle rather than as a bridge.
+ *
  * @author Hector
  *
  */
 public class ArticulationUtil {
 
-    // this field controls either to use iterative or recursive algorithm.
-    public static final boolean ITERATIVE = true; // Default: iterative
-
     /**
-     * This method finds all articulation points in the given node collection
-     * 
-     * @param nodes
-     *            a collection of nodes within which this method will search for
-     *            articulation points
+     * This method finds all articulation points in the given graph
+     *
+     * @param graph
+     *            the compact form of the graph within which this method will
+     *            search for articulation points
      * @return a set of nodes containing all articulation points
      */
-    public static Set<Node> findArticulationPoints(Collection<Node> nodes) {
-        // make connections between between nodes, give them neighbours
-        initialise(nodes);
-        /*
-         * Auckland map contains several disconnected sets. This set keeps track
-         * of those nodes that are unvisited, so that all disconnected graphs
-         * will be searched through.
-         */
-        Set<Node> unvisitedNodes = new HashSet<>(nodes);
-        Set<Node> articulationPoints = new HashSet<>();
-
-        while (!unvisitedNodes.isEmpty()) {
-            int numSubtrees = 0;
-            Node start = unvisitedNodes.iterator().next();
-            start.depth = 0;
-            for (Node neighbour : start.neighbours) {
-                if (neighbour.depth == Node.MAX_DEPTH) {
-                    if (ITERATIVE) {
-                        iterArtPts(neighbour, start, articulationPoints, unvisitedNodes);
-                    } else {
-                        recArtPts(neighbour, 1, start, articulationPoints, unvisitedNodes);
-                    }
-                    numSubtrees++;
-                }
-            }
-
-            if (numSubtrees > 1) {
-                articulationPoints.add(start);
-            }
-
-            unvisitedNodes.remove(start);
-        }
+    public static Set<Node> findArticulationPoints(CompactGraph graph) {
         // could return empty set
-        return articulationPoints;
+        return findBiconnectivity(graph).articulationPoints();
     }
 
     /**
-     * This method adds all neighbour nodes into each node, make connections
-     * between every node and its neighbours. (For articulation point feature)
-     * 
-     * @param nodes
-     *            a collection of nodes within which this method will search for
-     *            articulation points
-     */
-    private static void initialise(Collection<Node> nodes) {
-        for (Node node : nodes) {
-            node.setNeighbours();
-        }
-    }
-
-    /**
-     * Recursive version of articulation points search
-     * 
-     * @param node   
-     * @param depth
-     * @param from
-     * @param artPoints
-     * @param unvisitedNodes
-     * @return
+     * This method finds all articulation points, bridges and biconnected components
+     * in the given graph.
+     *
+     * @param graph
+     *            the compact form of the graph to be searched
+     * @return the biconnected structure of the graph
      */
-    private static int recArtPts(Node node, int depth, Node from, Set<Node> artPoints, Set<Node> unvisitedNodes) {
-        node.depth = depth;
-        int reachBack = depth;
+    public static Biconnectivity findBiconnectivity(CompactGraph graph) {
+        int numNodes = graph.numNodes();
+        int numSegments = graph.segments.length;
+        int[] offsets = graph.offsets, targets = graph.targets, twins = graph.twins;
+        int[] arcSegment = graph.arcSegment;
+
+        // discovery time (0 if not visited yet) and low point of each node
+        int[] discovered = new int[numNodes];
+        int[] low = new int[numNodes];
+        // the arc each node was reached by (-1 for a root), and its next arc to look at
+        int[] parentArc = new int[numNodes];
+        int[] nextArc = new int[numNodes];
+        // the nodes on the current path of the search, and the segments not yet in
+        // a component
+        int[] path = new int[numNodes];
+        int[] segmentStack = new int[numSegments];
+
+        boolean[] isArticulationPoint = new boolean[numNodes];
+        int[] bridges = new int[numSegments];
+        int numBridges = 0;
+        int[] components = new int[numSegments];
+        Arrays.fill(components, -1);
+        int numComponents = 0;
+        int time = 0;
 
-        for (Node neighbour : node.neighbours) {
-            if (neighbour.nodeID == from.nodeID) {
+        /*
+         * Auckland map contains several disconnected sets. Any node that is still
+         * unvisited after searching from the previous start starts a new search,
+         * so that all disconnected graphs will be searched through.
+         */
+        for (int root = 0; root < numNodes; root++) {
+            if (discovered[root] != 0) {
                 continue;
             }
-
-            if (neighbour.depth < Node.MAX_DEPTH) {
-                reachBack = Math.min(reachBack, neighbour.depth);
-            } else {
-                int childReach = recArtPts(neighbour, depth + 1, node, artPoints, unvisitedNodes);
-                if (childReach >= depth) {
-                    artPoints.add(node);
-                }
-                reachBack = Math.min(reachBack, childReach);
-            }
-
-            unvisitedNodes.remove(neighbour);
-        }
-        
-        return reachBack;
-    }
-
-    /**
-     * Iterative version of articulation points search
-     * 
-     * @param firstNode
-     * @param root
-     * @param artPoints
-     * @param unvisitedNodes
-     */
-    private static void iterArtPts(Node firstNode, Node root, Set<Node> artPoints, Set<Node> unvisitedNodes) {
-        Stack<IteArtStackElement> stack = new Stack<>();
-        stack.push(new IteArtStackElement(firstNode, 1, new IteArtStackElement(root, 0, null)));
-
-        while (!stack.isEmpty()) {
-            IteArtStackElement elem = stack.peek();
-            Node node = elem.node;
-            if (elem.children == null) { // first time
-                node.depth = elem.reach = elem.depth;
-                elem.children = new ArrayList<>();
-                for (Node neighbour : node.neighbours) {
-                    if (neighbour.nodeID != elem.parent.node.nodeID) {
-                        elem.children.add(neighbour);
+            discovered[root] = low[root] = ++time;
+            parentArc[root] = -1;
+            nextArc[root] = offsets[root];
+            int pathLength = 0, stackSize = 0, rootChildren = 0;
+            path[pathLength++] = root;
+
+            while (pathLength > 0) {
+                int node = path[pathLength - 1];
+                if (nextArc[node] < offsets[node + 1]) {
+                    int arc = nextArc[node]++;
+                    if (parentArc[node] >= 0 && arc == twins[parentArc[node]]) {
+                        continue;
                     }
+                    int neighbour = targets[arc];
+                    if (discovered[neighbour] == 0) {
+                        // tree edge, go down
+                        segmentStack[stackSize++] = arcSegment[arc];
+                        discovered[neighbour] = low[neighbour] = ++time;
+                        parentArc[neighbour] = arc;
+                        nextArc[neighbour] = offsets[neighbour];
+                        path[pathLength++] = neighbour;
+                        if (node == root) {
+                            rootChildren++;
+                        }
+                    } else if (discovered[neighbour] < discovered[node]) {
+                        // back edge to an ancestor; seen from the ancestor's side, it
+                        // has been pushed already
+                        segmentStack[stackSize++] = arcSegment[arc];
+                        low[node] = Math.min(low[node], discovered[neighbour]);
+                    }
+                    continue;
                 }
-            } else if (!elem.children.isEmpty()) {  // children to process
-                Node child = elem.children.remove(0);
-                if (child.depth < Node.MAX_DEPTH) {
-                    elem.reach = Math.min(elem.reach, child.depth);
-                } else {
-                    stack.push(new IteArtStackElement(child, node.depth + 1, elem));
+
+                // all arcs of the node are done, go back up
+                pathLength--;
+                if (node == root) {
+                    break;
                 }
-            } else {  // last time
-                if (node.nodeID != firstNode.nodeID) {
-                    if (elem.reach >= elem.parent.depth) {
-                        artPoints.add(elem.parent.node);
+                int parent = path[pathLength - 1];
+                low[parent] = Math.min(low[parent], low[node]);
+                if (low[node] >= discovered[parent]) {
+                    // nothing under the node reaches above its parent
+                    if (parent != root) {
+                        isArticulationPoint[parent] = true;
+                    }
+                    int treeSegment = arcSegment[parentArc[node]];
+                    int seg;
+                    do {
+                        seg = segmentStack[--stackSize];
+                        components[seg] = numComponents;
+                    } while (seg != treeSegment);
+                    numComponents++;
+                    if (low[node] > discovered[parent]) {
+                        bridges[numBridges++] = treeSegment;
                     }
-                    elem.parent.reach = Math.min(elem.parent.reach, elem.reach);
                 }
-                stack.pop();
-                unvisitedNodes.remove(elem.node);
             }
-        }
-    }
-    
-    /**
-     * This class represents the object pushed into the stack in the iterative version of
-     * articulation points algorithm.
-     * @author Hector
-     *
-     */
-    private static class IteArtStackElement {
-
-        Node node;
-        int reach;
-        IteArtStackElement parent;
-        int depth;
-        List<Node> children;
 
-        public IteArtStackElement(Node node, int depth, IteArtStackElement parent) {
-            this.node = node;
-            this.reach = Integer.MAX_VALUE;
-            this.parent = parent;
-            this.depth = depth;
-            this.children = null;
+            // the root is one if it has more than one subtree
+            if (rootChildren > 1) {
+                isArticulationPoint[root] = true;
+            }
         }
+
+        return new Biconnectivity(graph, isArticulationPoint, Arrays.copyOf(bridges, numBridges), components,
+                numComponents);
     }
-    
 }
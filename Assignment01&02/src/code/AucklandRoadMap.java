@@ -10,12 +10,21 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.SwingUtilities;
 
 /**
  * A digital map of Auckland. It has some basic features such as panning,
  * zooming, searching, and dragging.
  * 
- * PS:Quad-tree is still in the waiting list. Gotta make some time to finish it.
+ * The event thread never does heavy work: frames are drawn by a FrameRenderer on
+ * its own thread (from the tile cache, plus highlights) and only copied to the
+ * screen here, and data files are loaded and paths are found on background threads.
+ * A load or path search that is superseded by a new one is cancelled, and its
+ * result is thrown away. All fields are only touched on the event thread; the
+ * background threads are handed what they need when they start.
  * 
  * @author Hector
  *
@@ -23,6 +32,22 @@ import java.util.Set;
 public class AucklandRoadMap extends GUI {
 
     Graph graph;
+    // rendered tiles of the map, without highlights
+    private TileCache tileCache;
+    // draws the frames off the event thread
+    private FrameRenderer frameRenderer;
+    
+    // run loading and path finding, one task at a time each
+    private ExecutorService loader;
+    private ExecutorService pathFinder;
+    private ExecutorService roadSearcher;
+    // the running (or last) tasks, and how many have been started, so that the
+    // result of a task that has been superseded can be told apart and dropped
+    private Future<?> loading;
+    private Future<?> searching;
+    private int loadGeneration;
+    private int searchGeneration;
+    private int roadSearchGeneration;
 
     // the center of Auckland City according to Google Maps, as
     // latitude-longitude
@@ -57,6 +82,13 @@ public class AucklandRoadMap extends GUI {
     boolean isDisplayingArtPts;
     private Set<Node> articulationPoints;
     
+    // for isochrone: where can be driven to from the start node within some minutes,
+    // once it's found, and how many have been asked for, so that old ones are dropped
+    private static final double ISOCHRONE_MINUTES = 10;
+    boolean isDisplayingIsochrone;
+    private Isochrone isochrone;
+    private int isochroneGeneration;
+    
     // a flag switch between distance-first or time-first. Default is distance-first.
     boolean distanceFirst;
     
@@ -65,6 +97,10 @@ public class AucklandRoadMap extends GUI {
      */
     public AucklandRoadMap() {
         graph = new Graph();
+        tileCache = newTileCache(graph);
+        loader = newWorker("map loader");
+        pathFinder = newWorker("path finder");
+        roadSearcher = newWorker("road searcher");
         currentOrigin = CENTRE; // use center of Auckland as the origin.
         Dimension d = getDrawingAreaDimension();
         // after several tests, 50 is a good choice for the scale
@@ -77,13 +113,86 @@ public class AucklandRoadMap extends GUI {
         pathFound = new ArrayList<>();
         articulationPoints = new HashSet<>();
         isDisplayingArtPts = false;
+        isDisplayingIsochrone = false;
+        isochrone = null;
         distanceFirst = true;
+        // last, as it starts asking for frames
+        frameRenderer = new FrameRenderer(super::redraw);
+        redraw();
+    }
+
+    /**
+     * This method makes a tile cache of the given graph, which asks for a new frame
+     * whenever a tile is ready.
+     */
+    private TileCache newTileCache(Graph graph) {
+        return new TileCache(graph, TileCache.DEFAULT_BUDGET, () -> SwingUtilities.invokeLater(this::redraw));
+    }
+
+    private static ExecutorService newWorker(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
     protected void redraw(Graphics g) {
+        if (frameRenderer == null) {
+            // still being constructed
+            return;
+        }
+        // only copy the latest frame; if it's not of the current size, ask for one that is
+        if (!frameRenderer.paintLatest(g, getDrawingAreaDimension())) {
+            redraw();
+        }
+    }
+
+    /**
+     * This method asks the render thread for a new frame of the current view, and
+     * the window is repainted once it's drawn.
+     */
+    @Override
+    public void redraw() {
+        if (frameRenderer == null) {
+            // still being constructed
+            return;
+        }
+        // what the frame shows, taken now, as the fields keep changing
         Dimension d = getDrawingAreaDimension();
-        graph.redraw(g, currentOrigin, currentScale, d);
+        Location origin = currentOrigin;
+        double scale = currentScale;
+        TileCache tiles = tileCache;
+        Isochrone reach = isochrone;
+        List<Segment> segments = new ArrayList<>();
+        for (Road road : selectedRoad) {
+            segments.addAll(road.roadSegments);
+        }
+        segments.addAll(pathFound);
+        List<Node> nodes = new ArrayList<>();
+        if (isDisplayingArtPts) {
+            nodes.addAll(articulationPoints);
+        }
+        for (Node n : new Node[] { selectedNode, startNode, endNode }) {
+            if (n != null) {
+                nodes.add(n);
+            }
+        }
+
+        frameRenderer.request(d, g -> {
+            // the map comes from the tile cache, then the highlights are drawn on top
+            tiles.draw(g, origin, scale, d);
+            if (reach != null) {
+                reach.draw(g, origin, scale, d);
+            }
+            for (Segment seg : segments) {
+                seg.draw(g, origin, scale, d);
+            }
+            for (Node n : nodes) {
+                n.draw(g, origin, scale, d);
+            }
+        });
     }
 
     @Override
@@ -161,6 +270,8 @@ public class AucklandRoadMap extends GUI {
                 seg.setColor(Segment.DEFAULT_COLOUR);
             }
         }
+        // a path being found is not wanted any more
+        cancelSearch();
         // update this field and set the color to highlight it
         selectedNode = nodeOnClick;
         selectedNode.setColor(Node.SELECT_COLOUR);
@@ -178,7 +289,9 @@ public class AucklandRoadMap extends GUI {
                 + lineSeparator + "Roads at this intersection: " + lineSeparator);
 
         Set<String> rSet = new HashSet<>();
-        for (Segment seg : nodeOnClick.joinedSegments) {
+        CompactGraph compact = graph.compactGraph;
+        for (int arc = compact.firstArc(nodeOnClick.index); arc < compact.endArc(nodeOnClick.index); arc++) {
+            Segment seg = compact.segment(arc);
             String s = seg.road.label + ", " + seg.road.city + ", road ID: " + seg.roadID;
             if (!rSet.contains(s)) {
                 rSet.add(s);
@@ -210,6 +323,7 @@ public class AucklandRoadMap extends GUI {
         // update this field and set the color to red to highlight it
         startNode = nodeOnClick;
         startNode.setColor(Node.NAVI_COLOUR);
+        findIsochrone();
     }
 
     /**
@@ -231,7 +345,9 @@ public class AucklandRoadMap extends GUI {
     }
     
     /**
-     * This method finds the path between start node and end node.
+     * This method finds the path between start node and end node, on the path
+     * finding thread. The path is highlighted once it's found, unless another search
+     * has been started by then.
      */
     private void findPath() {
         // set the displaying navigation path to default colour
@@ -242,7 +358,36 @@ public class AucklandRoadMap extends GUI {
             pathFound.clear();
         }
         
-        pathFound = AStarUtil.findPath(startNode, endNode, graph.restrictions, distanceFirst);
+        cancelSearch();
+        int generation = searchGeneration;
+        Graph graph = this.graph;
+        Node start = startNode, end = endNode;
+        boolean distanceFirst = this.distanceFirst;
+        searching = pathFinder.submit(() -> {
+            List<Segment> path;
+            try {
+                path = graph.findPath(start, end, distanceFirst);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to find a path: " + e);
+                return;
+            }
+            // a cancelled search may have given up half way
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> onPathFound(path, generation));
+        });
+    }
+
+    /**
+     * This method highlights a path found on the path finding thread, if it's still
+     * wanted. It's called on the event thread.
+     */
+    private void onPathFound(List<Segment> path, int generation) {
+        if (generation != searchGeneration) {
+            return;
+        }
+        pathFound = path;
         // highlight the path
         if (!pathFound.isEmpty()) {
             for (Segment seg : pathFound) {
@@ -250,6 +395,18 @@ public class AucklandRoadMap extends GUI {
             }
         }
         displayNavigationInfo(pathFound);
+        redraw();
+    }
+
+    /**
+     * This method cancels the path search in progress, if any.
+     */
+    private void cancelSearch() {
+        searchGeneration++;
+        if (searching != null) {
+            searching.cancel(true);
+            searching = null;
+        }
     }
     
     /**
@@ -345,11 +502,44 @@ public class AucklandRoadMap extends GUI {
     @Override
     protected void onSearch() {
         String str = getSearchBox().getText();
-        ArrayList<Road> roadsFound = graph.searchRoad(str);
-        // if nothing found or roadsFound is empty.
-        if (roadsFound == null || roadsFound.isEmpty()) {
+        int generation = ++roadSearchGeneration;
+        ArrayList<Road> roadsFound = graph.completeRoad(str);
+        if (!roadsFound.isEmpty()) {
+            selectRoads(roadsFound);
             return;
         }
+        // nothing starts with the input, so look for it with typos, which takes
+        // longer, on the road search thread
+        Graph graph = this.graph;
+        roadSearcher.submit(() -> {
+            ArrayList<Road> found;
+            try {
+                found = graph.searchRoadWithTypos(str);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to search roads: " + e);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> onRoadsFound(found, generation));
+        });
+    }
+
+    /**
+     * This method selects the roads found with typos on the road search thread, if
+     * nothing else has been typed by then. It's called on the event thread.
+     */
+    private void onRoadsFound(ArrayList<Road> roadsFound, int generation) {
+        if (generation != roadSearchGeneration || roadsFound.isEmpty()) {
+            return;
+        }
+        selectRoads(roadsFound);
+        redraw();
+    }
+
+    /**
+     * This method highlights the given roads instead of the ones selected before,
+     * and shows them in the text area.
+     */
+    private void selectRoads(ArrayList<Road> roadsFound) {
         // set previously selected roads back to original color, black
         if (!selectedRoad.isEmpty()) {
             for (Road road : selectedRoad) {
@@ -411,6 +601,38 @@ public class AucklandRoadMap extends GUI {
 
     @Override
     protected void onLoad(File nodes, File roads, File segments, File polygons, File restrictions) {
+        // the old map stays on screen, and can still be used, until the new one is loaded
+        if (loading != null) {
+            // loading stops before its next phase, and its result is dropped
+            loading.cancel(true);
+        }
+        int generation = ++loadGeneration;
+        this.getTextOutputArea().setText("Loading...");
+        loading = loader.submit(() -> {
+            Graph loaded = new Graph();
+            try {
+                loaded.load(nodes, roads, segments, polygons, restrictions);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to load the map: " + e);
+                return;
+            }
+            // a cancelled load leaves the graph half loaded
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> onLoaded(loaded, generation));
+        });
+    }
+
+    /**
+     * This method shows a graph loaded on the loading thread, if no other load has
+     * been started by then. It's called on the event thread.
+     */
+    private void onLoaded(Graph loaded, int generation) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        loading = null;
         currentOrigin = CENTRE; // use center of Auckland as the origin.
         Dimension d = getDrawingAreaDimension();
         // after several tests, 50 is a good choice for the scale
@@ -424,14 +646,74 @@ public class AucklandRoadMap extends GUI {
         pathFound = new ArrayList<>();
         articulationPoints = new HashSet<>();
         isDisplayingArtPts = false;
+        isDisplayingIsochrone = false;
+        isochrone = null;
+        isochroneGeneration++;
+        roadSearchGeneration++;
+        cancelSearch();
         
-        graph.load(nodes, roads, segments, polygons, restrictions);
+        graph = loaded;
+        // tiles of the old graph are no use any more
+        tileCache.shutdown();
+        tileCache = newTileCache(graph);
+        this.getTextOutputArea().setText(null);
+        redraw();
     }
     
+    @Override
+    protected void switchIsochrone() {
+        isDisplayingIsochrone = !isDisplayingIsochrone;
+        if (isDisplayingIsochrone && startNode == null) {
+            this.getTextOutputArea().setText("Select a start node to see where can be reached from it");
+        }
+        findIsochrone();
+    }
+
+    /**
+     * This method finds the isochrone of the start node on the path finding thread,
+     * if it's being displayed, and shows it once it's found, unless the start node
+     * has changed by then.
+     */
+    private void findIsochrone() {
+        int generation = ++isochroneGeneration;
+        isochrone = null;
+        if (!isDisplayingIsochrone || startNode == null) {
+            return;
+        }
+        Graph graph = this.graph;
+        Node origin = startNode;
+        pathFinder.submit(() -> {
+            Isochrone found;
+            try {
+                found = graph.findIsochrone(origin, ISOCHRONE_MINUTES);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to find the isochrone: " + e);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> onIsochroneFound(found, generation));
+        });
+    }
+
+    /**
+     * This method shows an isochrone found on the path finding thread, if it's still
+     * wanted. It's called on the event thread.
+     */
+    private void onIsochroneFound(Isochrone found, int generation) {
+        if (generation != isochroneGeneration) {
+            return;
+        }
+        isochrone = found;
+        this.getTextOutputArea().setText(String.format("%d intersections within %.0f minutes of the start",
+                found.numNodes(), ISOCHRONE_MINUTES));
+        redraw();
+    }
+
     @Override
     protected void switchTimeDistance(){
         distanceFirst = !distanceFirst;
-        findPath();
+        if (startNode != null && endNode != null) {
+            findPath();
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,102 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents the biconnected structure of a graph, as found by
+ * ArticulationUtil.findBiconnectivity(): its articulation points, its bridges, and
+ * which biconnected component each segment belongs to.
+ *
+ * Everything is kept in arrays, indexed by node index or by the position of a
+ * segment in the compact graph (see CompactGraph.arcSegment), and collections are
+ * only made when asked for.
+ *
+ * @author Hector
+ *
+ */
+public class Biconnectivity {
+
+    final CompactGraph graph;
+    // whether each node is an articulation point
+    final boolean[] isArticulationPoint;
+    final int numArticulationPoints;
+    // the segments that are bridges
+    final int[] bridges;
+    // the biconnected component of each segment, or -1 for a segment from a node to
+    // itself, which is in none
+    final int[] components;
+    final int numComponents;
+
+    Biconnectivity(CompactGraph graph, boolean[] isArticulationPoint, int[] bridges, int[] components,
+            int numComponents) {
+        this.graph = graph;
+        this.isArticulationPoint = isArticulationPoint;
+        int count = 0;
+        for (boolean b : isArticulationPoint) {
+            if (b) {
+                count++;
+            }
+        }
+        this.numArticulationPoints = count;
+        this.bridges = bridges;
+        this.components = components;
+        this.numComponents = numComponents;
+    }
+
+    /**
+     * @param node    the index of a node
+     * @return    true if removing the node would disconnect its neighbours
+     */
+    public boolean isArticulationPoint(int node) {
+        return isArticulationPoint[node];
+    }
+
+    /**
+     * @return    a set of all articulation points
+     */
+    public Set<Node> articulationPoints() {
+        Set<Node> points = new HashSet<>();
+        for (int i = 0; i < isArticulationPoint.length; i++) {
+            if (isArticulationPoint[i]) {
+                points.add(graph.node(i));
+            }
+        }
+        return points;
+    }
+
+    public int numArticulationPoints() {
+        return numArticulationPoints;
+    }
+
+    /**
+     * @return    a list of all bridges, i.e. the segments whose removal would
+     *            disconnect their ends
+     */
+    public List<Segment> bridges() {
+        List<Segment> list = new ArrayList<>(bridges.length);
+        for (int seg : bridges) {
+            list.add(graph.segments[seg]);
+        }
+        return list;
+    }
+
+    public int numBridges() {
+        return bridges.length;
+    }
+
+    /**
+     * @param arc    an arc of the compact graph
+     * @return    the biconnected component of the arc's segment, from 0 to
+     *            numComponents() - 1, or -1 if the segment goes from a node to itself
+     */
+    public int component(int arc) {
+        return components[graph.arcSegment[arc]];
+    }
+
+    public int numComponents() {
+        return numComponents;
+    }
+}
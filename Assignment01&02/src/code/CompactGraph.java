@@ -0,0 +1,236 @@
+package code;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * This class represents a frozen, array-based (compressed sparse row) form of the
+ * road network. It is built once after the graph is loaded, and is what the graph
+ * algorithms run over, so that they don't need to chase Node and Segment pointers
+ * or box node IDs.
+ *
+ * Every segment becomes two directed arcs, one in each direction. The arcs leaving
+ * node u are stored at positions offsets[u] to offsets[u + 1] - 1 of the arc arrays,
+ * where u is the dense index of the node (see Node.index). Because both directions
+ * are stored, the arcs of a node also serve a backward search: arc u -> v can be
+ * driven backward (from v into u) if canDriveReversed(arc) is true.
+ *
+ * @author Hector
+ *
+ */
+public class CompactGraph {
+
+    // arc flags
+    public static final byte NOT_FOR_CAR = 1;
+    // driving this arc from its source to its target goes against a one-way road
+    public static final byte AGAINST_ONE_WAY = 2;
+    // this arc follows a one-way road, so driving it from target to source is not allowed
+    public static final byte ALONG_ONE_WAY = 4;
+
+    private static final Comparator<Segment> SEGMENT_ORDER = Comparator
+            .comparingInt((Segment seg) -> seg.start.index)
+            .thenComparingInt(seg -> seg.end.index)
+            .thenComparingInt(seg -> seg.roadID)
+            .thenComparingDouble(seg -> seg.length);
+
+    // node index -> Node, and the coordinates of each node
+    final Node[] nodes;
+    final double[] xs, ys;
+
+    // arc arrays, see class comment
+    final int[] offsets;
+    final int[] targets;
+    final double[] lengths;
+    final double[] times;
+    final byte[] flags;
+    final int[] arcSegment;
+    // twins[arc] is the arc of the same segment going the other way
+    final int[] twins;
+
+    // segment index -> Segment, as referred to by arcSegment
+    final Segment[] segments;
+
+    /**
+     * Constructor. Builds the arc arrays from the nodes and segments of a loaded graph.
+     * @param nodeCollection    all nodes, whose indices are 0 to size - 1
+     * @param segmentCollection    all segments
+     */
+    public CompactGraph(Collection<Node> nodeCollection, Collection<Segment> segmentCollection) {
+        int numNodes = nodeCollection.size();
+        nodes = new Node[numNodes];
+        xs = new double[numNodes];
+        ys = new double[numNodes];
+        for (Node node : nodeCollection) {
+            nodes[node.index] = node;
+            xs[node.index] = node.location.x;
+            ys[node.index] = node.location.y;
+        }
+
+        segments = segmentCollection.toArray(new Segment[segmentCollection.size()]);
+        // segments come from a HashSet, sort them so that arcs are laid out the
+        // same way every time the same data is loaded
+        Arrays.sort(segments, SEGMENT_ORDER);
+        int numArcs = 2 * segments.length;
+
+        // count the arcs leaving each node, then turn the counts into offsets
+        offsets = new int[numNodes + 1];
+        for (Segment seg : segments) {
+            offsets[seg.start.index + 1]++;
+            offsets[seg.end.index + 1]++;
+        }
+        for (int i = 0; i < numNodes; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        targets = new int[numArcs];
+        lengths = new double[numArcs];
+        times = new double[numArcs];
+        flags = new byte[numArcs];
+        arcSegment = new int[numArcs];
+        twins = new int[numArcs];
+
+        int[] next = new int[numNodes];
+        System.arraycopy(offsets, 0, next, 0, numNodes);
+        for (int s = 0; s < segments.length; s++) {
+            Segment seg = segments[s];
+            int forward = next[seg.start.index]++;
+            int backward = next[seg.end.index]++;
+            addArc(forward, seg.end, s, false);
+            addArc(backward, seg.start, s, true);
+            twins[forward] = backward;
+            twins[backward] = forward;
+        }
+    }
+
+    private void addArc(int arc, Node target, int segIndex, boolean reversed) {
+        Segment seg = segments[segIndex];
+        targets[arc] = target.index;
+        lengths[arc] = CostModel.edgeCost(seg, true);
+        times[arc] = CostModel.edgeCost(seg, false);
+        arcSegment[arc] = segIndex;
+        byte flag = 0;
+        if (seg.road.notForCar) {
+            flag |= NOT_FOR_CAR;
+        }
+        if (seg.road.isOneWay) {
+            flag |= reversed ? AGAINST_ONE_WAY : ALONG_ONE_WAY;
+        }
+        flags[arc] = flag;
+    }
+
+    public int numNodes() {
+        return nodes.length;
+    }
+
+    public int numSegments() {
+        return segments.length;
+    }
+
+    public int numArcs() {
+        return targets.length;
+    }
+
+    /**
+     * @param arc
+     * @return    true if a car may drive this arc from its source to its target
+     */
+    public boolean canDrive(int arc) {
+        return (flags[arc] & (NOT_FOR_CAR | AGAINST_ONE_WAY)) == 0;
+    }
+
+    /**
+     * @param arc
+     * @return    true if a car may drive this arc from its target to its source
+     */
+    public boolean canDriveReversed(int arc) {
+        return (flags[arc] & (NOT_FOR_CAR | ALONG_ONE_WAY)) == 0;
+    }
+
+    /**
+     * @param arc
+     * @param distanceFirst
+     * @return    the length of the arc if distanceFirst, otherwise the time to drive it
+     */
+    public double cost(int arc, boolean distanceFirst) {
+        return distanceFirst ? lengths[arc] : times[arc];
+    }
+
+    /**
+     * @param from    the index of one node
+     * @param to    the index of the other node
+     * @param distanceFirst
+     * @return    the heuristic cost between the two nodes
+     */
+    public double heuristicCost(int from, int to, boolean distanceFirst) {
+        return CostModel.heuristicCost(xs[from], ys[from], xs[to], ys[to], distanceFirst);
+    }
+
+    /**
+     * @param arc
+     * @return    the arc of the same segment going the other way, i.e. from the
+     *            target of the given arc to its source
+     */
+    public int twin(int arc) {
+        return twins[arc];
+    }
+
+    /**
+     * @param arc
+     * @return    the index of the node the arc leaves from
+     */
+    public int source(int arc) {
+        return targets[twins[arc]];
+    }
+
+    /**
+     * @param node    the index of a node
+     * @return    the first of the arcs leaving the node, which are firstArc(node) to
+     *            endArc(node) - 1
+     */
+    public int firstArc(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * @param node    the index of a node
+     * @return    one past the last of the arcs leaving the node
+     */
+    public int endArc(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * @param arc
+     * @return    the index of the node the arc goes to
+     */
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    public Node node(int index) {
+        return nodes[index];
+    }
+
+    public Segment segment(int arc) {
+        return segments[arcSegment[arc]];
+    }
+
+    /**
+     * @param seg
+     * @return    the index of the given segment, as referred to by arcSegment, or -1
+     *            if it's not in this graph
+     */
+    public int segmentIndex(Segment seg) {
+        int from = seg.start.index;
+        if (from < 0 || from >= nodes.length || nodes[from] != seg.start) {
+            return -1;
+        }
+        for (int arc = offsets[from]; arc < offsets[from + 1]; arc++) {
+            if (segments[arcSegment[arc]] == seg) {
+                return arcSegment[arc];
+            }
+        }
+        return -1;
+    }
+}
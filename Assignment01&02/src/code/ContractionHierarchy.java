@@ -0,0 +1,532 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a contraction hierarchy of the road network for one of the
+ * two cost models, distance-first or time-first.
+ *
+ * Preprocessing contracts nodes one by one, from the least important to the most
+ * important. When a node is contracted, a shortcut edge is added between each pair
+ * of its remaining neighbours whose shortest path goes through it, unless a witness
+ * search finds another path that is no longer. A query then runs a Dijkstra search
+ * from both ends that only ever goes up the hierarchy, which settles a tiny part of
+ * the graph, and shortcuts on the path found are unpacked back into segments.
+ *
+ * Only arcs a car may drive are used, so one-way roads and roads not for car are
+ * respected. Turn restrictions are NOT taken into account, use A* for routes that
+ * need them.
+ *
+ * @author Hector
+ *
+ */
+public class ContractionHierarchy {
+
+    // the number of nodes a witness search may settle before giving up, in which
+    // case a shortcut is added anyway. A smaller limit is used when the shortcuts
+    // are only counted to work out the priority of a node.
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SIMULATION_SETTLE_LIMIT = 50;
+
+    private final CompactGraph graph;
+    private final boolean distanceFirst;
+
+    // edges of the hierarchy, both original arcs and shortcuts
+    private int numEdges;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private double[] edgeCost;
+    // the original arc of an edge, or -1 for a shortcut
+    private int[] edgeArc;
+    // the two edges a shortcut stands for, or -1 for an original arc
+    private int[] edgeFirst;
+    private int[] edgeSecond;
+
+    // rank[node] is the order in which the node was contracted
+    private final int[] rank;
+
+    // edges going up the hierarchy, grouped by source node (for the forward search),
+    // and edges coming down the hierarchy, grouped by target node (for the backward search)
+    private int[] upOffsets, upEdges;
+    private int[] downOffsets, downEdges;
+
+    // scratch used by queries, see findPath()
+    private final double[] forwardCost, backwardCost;
+    private final int[] forwardEdge, backwardEdge;
+    private final int[] forwardStamp, backwardStamp;
+    private int queryStamp;
+    private final IndexedMinHeap forwardFringe, backwardFringe;
+
+    // state only used during preprocessing
+    private IntList[] outEdges, inEdges;
+    private boolean[] contracted;
+    private int[] deletedNeighbours;
+    private int[] neighbourStamp;
+    // the number of hierarchy levels below each node
+    private int[] level;
+    private double[] witnessCost;
+    private int[] witnessStamp;
+    private int witnessRound;
+    private IndexedMinHeap witnessFringe;
+
+    /**
+     * Constructor. Builds the hierarchy of the given graph for the given cost model.
+     * @param graph    the compact form of the graph
+     * @param distanceFirst    true for the shortest paths, false for the fastest
+     */
+    public ContractionHierarchy(CompactGraph graph, boolean distanceFirst) {
+        this.graph = graph;
+        this.distanceFirst = distanceFirst;
+        int numNodes = graph.numNodes();
+        rank = new int[numNodes];
+
+        initialise();
+        contractAll();
+        buildSearchGraph();
+
+        // release everything only needed during preprocessing
+        outEdges = null;
+        inEdges = null;
+        contracted = null;
+        deletedNeighbours = null;
+        neighbourStamp = null;
+        level = null;
+        witnessCost = null;
+        witnessStamp = null;
+        witnessFringe = null;
+
+        forwardCost = new double[numNodes];
+        backwardCost = new double[numNodes];
+        forwardEdge = new int[numNodes];
+        backwardEdge = new int[numNodes];
+        forwardStamp = new int[numNodes];
+        backwardStamp = new int[numNodes];
+        queryStamp = 0;
+        forwardFringe = new IndexedMinHeap(numNodes);
+        backwardFringe = new IndexedMinHeap(numNodes);
+    }
+
+    /**
+     * This method adds every arc a car may drive as an edge of the hierarchy.
+     */
+    private void initialise() {
+        int numNodes = graph.numNodes();
+        int capacity = graph.numArcs() * 2;
+        edgeFrom = new int[capacity];
+        edgeTo = new int[capacity];
+        edgeCost = new double[capacity];
+        edgeArc = new int[capacity];
+        edgeFirst = new int[capacity];
+        edgeSecond = new int[capacity];
+        numEdges = 0;
+
+        outEdges = new IntList[numNodes];
+        inEdges = new IntList[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            outEdges[i] = new IntList();
+            inEdges[i] = new IntList();
+        }
+        contracted = new boolean[numNodes];
+        deletedNeighbours = new int[numNodes];
+        neighbourStamp = new int[numNodes];
+        level = new int[numNodes];
+        witnessCost = new double[numNodes];
+        witnessStamp = new int[numNodes];
+        witnessRound = 0;
+        witnessFringe = new IndexedMinHeap(numNodes);
+
+        for (int u = 0; u < numNodes; u++) {
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                int v = graph.targets[arc];
+                if (v != u && graph.canDrive(arc)) {
+                    addEdge(u, v, graph.cost(arc, distanceFirst), arc, -1, -1);
+                }
+            }
+        }
+    }
+
+    private int addEdge(int from, int to, double cost, int arc, int first, int second) {
+        if (numEdges == edgeFrom.length) {
+            int capacity = numEdges * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeCost = Arrays.copyOf(edgeCost, capacity);
+            edgeArc = Arrays.copyOf(edgeArc, capacity);
+            edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+            edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+        }
+        int edge = numEdges++;
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        edgeCost[edge] = cost;
+        edgeArc[edge] = arc;
+        edgeFirst[edge] = first;
+        edgeSecond[edge] = second;
+        outEdges[from].add(edge);
+        inEdges[to].add(edge);
+        return edge;
+    }
+
+    /**
+     * This method contracts all nodes in order of priority. Priorities are kept
+     * up to date for the neighbours of each contracted node, and are checked again
+     * lazily when a node is about to be contracted.
+     */
+    private void contractAll() {
+        int numNodes = graph.numNodes();
+        IndexedMinHeap queue = new IndexedMinHeap(numNodes);
+        for (int v = 0; v < numNodes; v++) {
+            queue.insert(v, priority(v));
+        }
+
+        int order = 0;
+        while (!queue.isEmpty()) {
+            int v = queue.peek();
+            double p = priority(v);
+            if (p > queue.priorityOf(v)) {
+                // the priority has gone up since it was queued, check again later
+                queue.update(v, p);
+                continue;
+            }
+            queue.poll();
+            contract(v, true);
+            contracted[v] = true;
+            rank[v] = order++;
+
+            // the neighbours may have become more or less important
+            updateNeighbours(v, outEdges[v], true, order, queue);
+            updateNeighbours(v, inEdges[v], false, order, queue);
+        }
+    }
+
+    private void updateNeighbours(int v, IntList edges, boolean outgoing, int order, IndexedMinHeap queue) {
+        for (int i = 0; i < edges.size; i++) {
+            int edge = edges.data[i];
+            int neighbour = outgoing ? edgeTo[edge] : edgeFrom[edge];
+            // parallel edges lead to the same neighbour, only update it once
+            if (contracted[neighbour] || neighbourStamp[neighbour] == order) {
+                continue;
+            }
+            neighbourStamp[neighbour] = order;
+            deletedNeighbours[neighbour]++;
+            level[neighbour] = Math.max(level[neighbour], level[v] + 1);
+            // edges to contracted nodes are never used again
+            prune(outEdges[neighbour], true);
+            prune(inEdges[neighbour], false);
+            queue.update(neighbour, priority(neighbour));
+        }
+    }
+
+    /**
+     * This method removes the edges whose other end has been contracted from the
+     * given edge list.
+     */
+    private void prune(IntList edges, boolean outgoing) {
+        int kept = 0;
+        for (int i = 0; i < edges.size; i++) {
+            int edge = edges.data[i];
+            if (!contracted[outgoing ? edgeTo[edge] : edgeFrom[edge]]) {
+                edges.data[kept++] = edge;
+            }
+        }
+        edges.size = kept;
+    }
+
+    /**
+     * The priority of a node is twice its edge difference (shortcuts added minus
+     * edges removed by contracting it), plus the number of its neighbours contracted
+     * already, so that contraction is spread evenly over the map, plus its level,
+     * i.e. how many contractions deep in the hierarchy it would sit, which keeps
+     * query searches shallow.
+     * @param v
+     * @return    the priority, lower is contracted earlier
+     */
+    private double priority(int v) {
+        int removed = countLive(v, outEdges[v], true) + countLive(v, inEdges[v], false);
+        return 2 * (contract(v, false) - removed) + deletedNeighbours[v] + level[v];
+    }
+
+    private int countLive(int v, IntList edges, boolean outgoing) {
+        int count = 0;
+        for (int i = 0; i < edges.size; i++) {
+            int edge = edges.data[i];
+            if (!contracted[outgoing ? edgeTo[edge] : edgeFrom[edge]]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method finds the shortcuts needed to contract the given node, and
+     * adds them if asked to.
+     * @param v    the node to be contracted
+     * @param apply    true to add the shortcuts, false to only count them
+     * @return    the number of shortcuts needed
+     */
+    private int contract(int v, boolean apply) {
+        int shortcuts = 0;
+        IntList in = inEdges[v];
+        IntList out = outEdges[v];
+        for (int i = 0; i < in.size; i++) {
+            int inEdge = in.data[i];
+            int u = edgeFrom[inEdge];
+            if (contracted[u]) {
+                continue;
+            }
+
+            // the most expensive path through v that a witness needs to beat
+            double maxCost = -1;
+            for (int j = 0; j < out.size; j++) {
+                int w = edgeTo[out.data[j]];
+                if (!contracted[w] && w != u) {
+                    maxCost = Math.max(maxCost, edgeCost[inEdge] + edgeCost[out.data[j]]);
+                }
+            }
+            if (maxCost < 0) {
+                continue;
+            }
+
+            witnessSearch(u, v, maxCost, apply ? WITNESS_SETTLE_LIMIT : SIMULATION_SETTLE_LIMIT);
+            for (int j = 0; j < out.size; j++) {
+                int outEdge = out.data[j];
+                int w = edgeTo[outEdge];
+                if (contracted[w] || w == u) {
+                    continue;
+                }
+                double cost = edgeCost[inEdge] + edgeCost[outEdge];
+                if (witnessStamp[w] == witnessRound && witnessCost[w] <= cost) {
+                    continue;
+                }
+                shortcuts++;
+                if (apply) {
+                    addEdge(u, w, cost, -1, inEdge, outEdge);
+                    // the new shortcut is itself a witness for later pairs
+                    witnessStamp[w] = witnessRound;
+                    witnessCost[w] = cost;
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * This method runs a Dijkstra search from the given source over nodes not yet
+     * contracted, avoiding the node being contracted, up to the given cost.
+     * @param source
+     * @param avoid    the node being contracted
+     * @param maxCost
+     * @param settleLimit
+     */
+    private void witnessSearch(int source, int avoid, double maxCost, int settleLimit) {
+        witnessRound++;
+        witnessFringe.clear();
+        witnessStamp[source] = witnessRound;
+        witnessCost[source] = 0;
+        witnessFringe.insert(source, 0);
+
+        int settled = 0;
+        while (!witnessFringe.isEmpty() && settled < settleLimit) {
+            if (witnessFringe.peekPriority() > maxCost) {
+                break;
+            }
+            int u = witnessFringe.poll();
+            settled++;
+            IntList out = outEdges[u];
+            for (int i = 0; i < out.size; i++) {
+                int edge = out.data[i];
+                int w = edgeTo[edge];
+                if (w == avoid || contracted[w]) {
+                    continue;
+                }
+                double cost = witnessCost[u] + edgeCost[edge];
+                if (witnessStamp[w] != witnessRound) {
+                    witnessStamp[w] = witnessRound;
+                    witnessCost[w] = cost;
+                    witnessFringe.insert(w, cost);
+                } else if (cost < witnessCost[w] && witnessFringe.contains(w)) {
+                    witnessCost[w] = cost;
+                    witnessFringe.decreaseKey(w, cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method sorts every edge into the upward or the downward search graph,
+     * depending on which of its ends was contracted first.
+     */
+    private void buildSearchGraph() {
+        int numNodes = graph.numNodes();
+        upOffsets = new int[numNodes + 1];
+        downOffsets = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++) {
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+                upOffsets[edgeFrom[e] + 1]++;
+            } else {
+                downOffsets[edgeTo[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < numNodes; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+            downOffsets[i + 1] += downOffsets[i];
+        }
+        upEdges = new int[upOffsets[numNodes]];
+        downEdges = new int[downOffsets[numNodes]];
+        int[] nextUp = Arrays.copyOf(upOffsets, numNodes);
+        int[] nextDown = Arrays.copyOf(downOffsets, numNodes);
+        for (int e = 0; e < numEdges; e++) {
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+                upEdges[nextUp[edgeFrom[e]]++] = e;
+            } else {
+                downEdges[nextDown[edgeTo[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * @return    the number of shortcuts added by preprocessing
+     */
+    public int numShortcuts() {
+        int count = 0;
+        for (int e = 0; e < numEdges; e++) {
+            if (edgeArc[e] < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isDistanceFirst() {
+        return distanceFirst;
+    }
+
+    /**
+     * This method finds the shortest (or fastest) path between two nodes with a
+     * bidirectional search over the hierarchy. Queries share scratch arrays, so
+     * they are serialised.
+     * @param start    the start point
+     * @param end    the destination
+     * @return    a list of segments from start to end. Returns an empty list if
+     *               no path can be found
+     */
+    public synchronized List<Segment> findPath(Node start, Node end) {
+        int source = start.index;
+        int target = end.index;
+        if (source == target) {
+            return new ArrayList<>();
+        }
+
+        queryStamp++;
+        forwardFringe.clear();
+        backwardFringe.clear();
+        reach(source, 0, -1, forwardCost, forwardEdge, forwardStamp, forwardFringe);
+        reach(target, 0, -1, backwardCost, backwardEdge, backwardStamp, backwardFringe);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        while (!forwardFringe.isEmpty() || !backwardFringe.isEmpty()) {
+            double forwardMin = forwardFringe.isEmpty() ? Double.POSITIVE_INFINITY : forwardFringe.peekPriority();
+            double backwardMin = backwardFringe.isEmpty() ? Double.POSITIVE_INFINITY : backwardFringe.peekPriority();
+            // neither search can find anything better than the best path so far
+            if (Math.min(forwardMin, backwardMin) >= best) {
+                break;
+            }
+
+            if (forwardMin <= backwardMin) {
+                int u = forwardFringe.poll();
+                if (backwardStamp[u] == queryStamp && forwardCost[u] + backwardCost[u] < best) {
+                    best = forwardCost[u] + backwardCost[u];
+                    meeting = u;
+                }
+                for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                    int edge = upEdges[i];
+                    reach(edgeTo[edge], forwardCost[u] + edgeCost[edge], edge,
+                            forwardCost, forwardEdge, forwardStamp, forwardFringe);
+                }
+            } else {
+                int u = backwardFringe.poll();
+                if (forwardStamp[u] == queryStamp && forwardCost[u] + backwardCost[u] < best) {
+                    best = forwardCost[u] + backwardCost[u];
+                    meeting = u;
+                }
+                for (int i = downOffsets[u]; i < downOffsets[u + 1]; i++) {
+                    int edge = downEdges[i];
+                    reach(edgeFrom[edge], backwardCost[u] + edgeCost[edge], edge,
+                            backwardCost, backwardEdge, backwardStamp, backwardFringe);
+                }
+            }
+        }
+
+        if (meeting < 0) {
+            return new ArrayList<>();
+        }
+
+        // edges from start up to the meeting node, then down to the end
+        List<Segment> path = new ArrayList<>();
+        List<Integer> upward = new ArrayList<>();
+        for (int node = meeting; forwardEdge[node] >= 0; node = edgeFrom[forwardEdge[node]]) {
+            upward.add(forwardEdge[node]);
+        }
+        Collections.reverse(upward);
+        for (int edge : upward) {
+            unpack(edge, path);
+        }
+        for (int node = meeting; backwardEdge[node] >= 0; node = edgeTo[backwardEdge[node]]) {
+            unpack(backwardEdge[node], path);
+        }
+        return path;
+    }
+
+    /**
+     * This method records that a node is reached at the given cost by one of the
+     * two searches, if that is cheaper than before.
+     */
+    private void reach(int node, double cost, int edge, double[] costs, int[] edges, int[] stamps,
+            IndexedMinHeap fringe) {
+        if (stamps[node] != queryStamp) {
+            stamps[node] = queryStamp;
+            costs[node] = cost;
+            edges[node] = edge;
+            fringe.insert(node, cost);
+        } else if (cost < costs[node] && fringe.contains(node)) {
+            costs[node] = cost;
+            edges[node] = edge;
+            fringe.decreaseKey(node, cost);
+        }
+    }
+
+    /**
+     * This method replaces an edge by the segments it stands for.
+     * @param edge
+     * @param path    the list to which the segments are appended
+     */
+    private void unpack(int edge, List<Segment> path) {
+        if (edgeArc[edge] >= 0) {
+            path.add(graph.segment(edgeArc[edge]));
+        } else {
+            unpack(edgeFirst[edge], path);
+            unpack(edgeSecond[edge], path);
+        }
+    }
+
+    /**
+     * A growable list of ints, for the edges of each node during preprocessing.
+     * @author Hector
+     *
+     */
+    private static class IntList {
+        int[] data = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+}
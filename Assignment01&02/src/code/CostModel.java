@@ -0,0 +1,97 @@
+package code;
+
+/**
+ * This class holds the cost model of path finding: the cost of driving a segment,
+ * and the heuristic estimate of the cost between two locations. There are two of
+ * each, one used when the minimum distance is the top priority in path-finding,
+ * the other used when the minimum time is the top priority. The searches themselves
+ * run on the compact graph (see AStarUtil), which works out the cost of every arc
+ * with these once.
+ * 
+ * @author Hector
+ *
+ */
+public class CostModel {
+    
+    /*
+     * Location converts longitude with the same 111km per degree as latitude,
+     * while in Auckland one degree of longitude is only 88.649km (see README).
+     * So euclidean distance between Locations can be up to 111 / 88.649 times
+     * the real distance, which would make the heuristic overestimate and A*
+     * return sub-optimal paths. Scaling it down by this factor keeps it admissible.
+     */
+    public static final double HEURISTIC_SCALE = 88.649 / 111.0;
+    // the maximum driving speed assumed, in km/h
+    public static final double MAX_SPEED = 120;
+    
+    /**
+     * This method takes the speed limit and road class as factors, and 
+     * estimates the speed that a car can most likely to drive at.
+     * 
+     * Estimated speed = speed limit * roadClass factor
+     * Here the road class factor is set to be not very predominant, see table below.
+     * 
+     * road class --|-- road class factor
+     * -----------------------------------
+     *        0     |        0.80
+     *        1     |        0.85
+     *        2     |        0.90
+     *        3     |        0.95
+     *        4     |        1.00
+     * 
+     * @param edge
+     * @return
+     */
+    private static double estiVelocity(Segment edge) {
+        return edge.road.roadClass * edge.road.speedLimit;
+    }
+
+    /**
+     * A heuristic estimates the cost from a node to the target, both given by their
+     * node index. It must never overestimate, so that A* stays optimal. Two are
+     * available: the euclidean one below, and landmarks (see Landmarks class).
+     */
+    public interface Heuristic {
+        double estimate(int node, int target);
+    }
+
+    /**
+     * @param graph    the compact form of the graph
+     * @param distanceFirst
+     * @return    the euclidean heuristic for the given cost model
+     */
+    public static Heuristic euclidean(CompactGraph graph, boolean distanceFirst) {
+        return (node, target) -> graph.heuristicCost(node, target, distanceFirst);
+    }
+
+    /**
+     * This method is the cost model of an edge: its length when distance is the
+     * priority, or the estimated time to drive it when time is the priority.
+     * @param edge
+     * @param distanceFirst
+     * @return    the cost of driving the whole edge
+     */
+    public static double edgeCost(Segment edge, boolean distanceFirst) {
+        if (distanceFirst) {
+            return edge.length;
+        } else {
+            return edge.length / estiVelocity(edge);
+        }
+    }
+
+    /**
+     * This method is the heuristic of the cost model, working on raw coordinates
+     * of two locations.
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @param distanceFirst
+     * @return    the scaled euclidean distance if distanceFirst, otherwise the time
+     *            to drive it at maximum speed
+     */
+    public static double heuristicCost(double x1, double y1, double x2, double y2, boolean distanceFirst) {
+        double distance = Math.hypot(x1 - x2, y1 - y2) * HEURISTIC_SCALE;
+        return distanceFirst ? distance : distance / MAX_SPEED;
+    }
+}
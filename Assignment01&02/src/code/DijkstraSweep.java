@@ -0,0 +1,127 @@
+package code;
+
+/**
+ * This class represents a one-to-many Dijkstra sweep from a source, over the same
+ * turn-aware search states as AStarUtil: a node, or a node arrived at by an arc that
+ * some restriction starts with. Only arcs that can be driven are followed (one-way
+ * roads, roads not for cars), and turn restrictions are honoured.
+ *
+ * What is done with the sweep is up to a Visitor, which is told about each node the
+ * first time one of its states is settled, and about each arc driven from a settled
+ * state. A sweep stops when the visitor says so, when the next state would cost
+ * more than a limit, or when there is nothing left to reach.
+ *
+ * The scratch arrays are reused from one sweep to the next, for RouteMatrixUtil and
+ * IsochroneUtil to keep one per task: a state has been reached (or settled) in the
+ * current sweep only if its stamp equals the current generation, so nothing needs
+ * clearing between sweeps.
+ *
+ * @author Hector
+ *
+ */
+class DijkstraSweep {
+
+    /**
+     * What a sweep tells about what it finds, as it finds it.
+     */
+    interface Visitor {
+
+        /**
+         * This method is called the first time a state of a node is settled, in
+         * order of cost.
+         * @param node    the index of the node
+         * @param cost    the cost of the cheapest path to the node
+         * @return    false to stop the sweep here
+         */
+        boolean settled(int node, double cost);
+
+        /**
+         * This method is called for each arc that can be driven from a settled state,
+         * including arcs that would go over the limit.
+         * @param arc    the arc
+         * @param cost    the cost of the path to the start of the arc
+         */
+        void driven(int arc, double cost);
+    }
+
+    private final CompactGraph graph;
+    private final TurnRestrictions restrictions;
+    private final boolean distanceFirst;
+    private final int numNodes;
+
+    private final double[] cost;
+    private final int[] reachedAt;
+    private final int[] settledAt;
+    private final int[] nodeSettledAt;
+    private final IndexedMinHeap fringe;
+    private int generation;
+
+    /**
+     * Constructor.
+     * @param graph    the compact form of the graph
+     * @param restrictions
+     * @param distanceFirst    true to sweep by distance, false by time
+     */
+    DijkstraSweep(CompactGraph graph, TurnRestrictions restrictions, boolean distanceFirst) {
+        this.graph = graph;
+        this.restrictions = restrictions;
+        this.distanceFirst = distanceFirst;
+        numNodes = graph.numNodes();
+        int numStates = numNodes + restrictions.numRestrictedIn();
+        cost = new double[numStates];
+        reachedAt = new int[numStates];
+        settledAt = new int[numStates];
+        nodeSettledAt = new int[numNodes];
+        fringe = new IndexedMinHeap(numStates);
+        generation = 0;
+    }
+
+    /**
+     * This method sweeps from the given source.
+     * @param source    the index of the source node
+     * @param limit    the most a path may cost, or infinity
+     * @param visitor    what to tell about the nodes and arcs found
+     */
+    void run(int source, double limit, Visitor visitor) {
+        generation++;
+        cost[source] = 0;
+        reachedAt[source] = generation;
+        fringe.insert(source, 0);
+        while (!fringe.isEmpty() && fringe.peekPriority() <= limit) {
+            int state = fringe.poll();
+            settledAt[state] = generation;
+            // a state past the nodes is a node arrived at by a restricted arc
+            int arcIn = state < numNodes ? -1 : restrictions.inArc(state - numNodes);
+            int node = arcIn < 0 ? state : graph.targets[arcIn];
+
+            if (nodeSettledAt[node] != generation) {
+                nodeSettledAt[node] = generation;
+                if (!visitor.settled(node, cost[state])) {
+                    break;
+                }
+            }
+
+            for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+                if (!graph.canDrive(arc) || restrictions.isBanned(arcIn, arc)) {
+                    continue;
+                }
+                visitor.driven(arc, cost[state]);
+                double c = cost[state] + graph.cost(arc, distanceFirst);
+                if (c > limit) {
+                    continue;
+                }
+                int index = restrictions.inIndex(arc);
+                int next = index < 0 ? graph.targets[arc] : numNodes + index;
+                if (settledAt[next] == generation) {
+                    continue;
+                }
+                if (reachedAt[next] != generation || c < cost[next]) {
+                    reachedAt[next] = generation;
+                    cost[next] = c;
+                    fringe.insertOrDecrease(next, c);
+                }
+            }
+        }
+        fringe.clear();
+    }
+}
@@ -0,0 +1,679 @@
+package code;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class keeps the articulation points of a graph up to date while its segments
+ * are closed and reopened, without searching the whole graph again after each
+ * change.
+ *
+ * It keeps the block-cut tree of the open segments: which biconnected component
+ * (block) each open segment is in, the segments of each block, and how many blocks
+ * each node is in. A node is an articulation point exactly when it's in two or more
+ * blocks, so only the counts of the nodes a change touches need to be updated:
+ *
+ * - closing a bridge (a block of one segment) just removes that block;
+ * - closing any other segment can only split its own block. Usually there is a
+ *   detour close by and the block stays whole, which a local search finds out (see
+ *   hasTwoDisjointPaths()); only if it doesn't is that block searched again, with
+ *   the same Hopcroft-Tarjan search as ArticulationUtil. The rest of the graph is
+ *   left alone either way;
+ * - reopening a segment between nodes u and v merges all blocks on the path from u
+ *   to v in the block-cut tree into one, and the cut vertices inside the path lose a
+ *   block each. If there is no path, the segment is a new bridge. The path is found
+ *   by searching the tree from both ends (see findTreePath()), and the smaller
+ *   blocks are merged into the largest, so most of the graph is not touched.
+ *
+ * Nodes and segments are referred to by their indices in the compact graph. All
+ * state is kept here, in arrays, and the graph itself is never modified, so any
+ * number of these can be kept for the same graph, and queries never depend on what
+ * an earlier search left behind.
+ *
+ * A DynamicArticulation is not thread-safe.
+ *
+ * @author Hector
+ *
+ */
+public class DynamicArticulation {
+
+    // the block of a segment that is closed, or goes from a node to itself
+    private static final int NO_BLOCK = -1;
+
+    final CompactGraph graph;
+    private final boolean[] closed;
+    private int numClosed;
+
+    // the block of each segment, and the segments of each block (only the first
+    // blockSizes[b] are used; null once the block is gone), and where each segment
+    // is in its block's array. The ids of blocks that are gone are kept in freeIds
+    // and given to the next new blocks, so the arrays only grow with the number of
+    // blocks there are at once, not with the number of changes.
+    private final int[] block;
+    private final int[] segmentPosition;
+    private int[][] blockSegments;
+    private int[] blockSizes;
+    private int numBlockIds;
+    private int[] freeIds;
+    private int numFreeIds;
+
+    // how many blocks each node is in, and how many nodes are in two or more
+    private final int[] blockCount;
+    private int numArticulationPoints;
+
+    // scratch state for the searches. A node or block counts as seen in the current
+    // search if its stamp equals the current one, see SearchSpace.
+    private final int[] nodeStamp;
+    private int[] blockStamp;
+    private int stamp;
+    private final int[] nodeParent;
+    private int[] blockParent;
+    private final int[] queue;
+    private final int[] discovered, low, parentArc, nextArc, path;
+    private final int[] segmentStack;
+    // for findTreePath(): the stamps of the two ends' searches, how many blocks each
+    // has yet to open, the blocks to open, where they met, and the blocks on the path
+    private int sideU, sideV;
+    private int pendingU, pendingV;
+    private IndexedMinHeap fringe;
+    private int meetBlock, meetA, meetC;
+    private final int[] pathBlocks;
+    // for hasTwoDisjointPaths(): the nodes on the first path, and the searches for a
+    // second one from either end
+    private final int[] flowStamp;
+    private final SecondPath forward, backward;
+
+    /**
+     * Constructor. Starts with all segments open.
+     * @param graph    the compact form of the graph
+     */
+    public DynamicArticulation(CompactGraph graph) {
+        this.graph = graph;
+        int numNodes = graph.numNodes();
+        int numSegments = graph.segments.length;
+        closed = new boolean[numSegments];
+        block = new int[numSegments];
+        segmentPosition = new int[numSegments];
+        blockCount = new int[numNodes];
+        nodeStamp = new int[numNodes];
+        nodeParent = new int[numNodes];
+        queue = new int[numNodes];
+        discovered = new int[numNodes];
+        low = new int[numNodes];
+        parentArc = new int[numNodes];
+        nextArc = new int[numNodes];
+        path = new int[numNodes];
+        segmentStack = new int[numSegments];
+        pathBlocks = new int[numNodes];
+        flowStamp = new int[numNodes];
+        forward = new SecondPath(numNodes);
+        backward = new SecondPath(numNodes);
+
+        Biconnectivity initial = ArticulationUtil.findBiconnectivity(graph);
+        int numComponents = initial.numComponents();
+        int capacity = Math.max(numComponents, 16);
+        blockSizes = new int[capacity];
+        blockSegments = new int[capacity][];
+        blockStamp = new int[capacity];
+        blockParent = new int[capacity];
+        fringe = new IndexedMinHeap(capacity);
+        freeIds = new int[capacity];
+        int[] sizes = new int[numComponents];
+        for (int s = 0; s < numSegments; s++) {
+            block[s] = initial.components[s];
+            if (block[s] != NO_BLOCK) {
+                sizes[block[s]]++;
+            }
+        }
+        for (int b = 0; b < numComponents; b++) {
+            blockSegments[b] = new int[sizes[b]];
+        }
+        for (int s = 0; s < numSegments; s++) {
+            if (block[s] != NO_BLOCK) {
+                addSegment(block[s], s);
+            }
+        }
+        numBlockIds = numComponents;
+        for (int b = 0; b < numComponents; b++) {
+            countBlock(b, 1);
+        }
+    }
+
+    /**
+     * This method closes the given segment.
+     * @param seg    the index of a segment, see CompactGraph.segmentIndex()
+     * @return    true if the segment was open
+     */
+    public boolean close(int seg) {
+        if (closed[seg]) {
+            return false;
+        }
+        closed[seg] = true;
+        numClosed++;
+        int b = block[seg];
+        if (b == NO_BLOCK) {
+            return true;
+        }
+        int u = graph.segments[seg].start.index;
+        int v = graph.segments[seg].end.index;
+
+        if (blockSizes[b] == 1) {
+            // a bridge, its ends just lose a block
+            block[seg] = NO_BLOCK;
+            removeBlock(b);
+            changeBlockCount(u, -1);
+            changeBlockCount(v, -1);
+            return true;
+        }
+
+        block[seg] = NO_BLOCK;
+        if (hasTwoDisjointPaths(b, u, v)) {
+            // still one block, see hasTwoDisjointPaths()
+            removeSegment(b, seg);
+            return true;
+        }
+
+        // the rest of the block falls apart into smaller blocks. It's still
+        // connected, as a block with more than one segment has no bridge, so one
+        // search from either end finds all of it. The search tells the block's
+        // segments by their id, so the id is only given up once it's done.
+        splitBlock(b, u);
+        removeBlock(b);
+        return true;
+    }
+
+    public boolean close(Segment seg) {
+        int index = graph.segmentIndex(seg);
+        return index >= 0 && close(index);
+    }
+
+    /**
+     * This method reopens the given segment.
+     * @param seg    the index of a segment, see CompactGraph.segmentIndex()
+     * @return    true if the segment was closed
+     */
+    public boolean open(int seg) {
+        if (!closed[seg]) {
+            return false;
+        }
+        closed[seg] = false;
+        numClosed--;
+        int u = graph.segments[seg].start.index;
+        int v = graph.segments[seg].end.index;
+        if (u == v) {
+            return true;
+        }
+
+        int numPathBlocks = findTreePath(u, v);
+        if (numPathBlocks < 0) {
+            // the ends were not connected, so it's a bridge
+            int nb = newBlock(1);
+            addSegment(nb, seg);
+            changeBlockCount(u, 1);
+            changeBlockCount(v, 1);
+            return true;
+        }
+
+        // merge the blocks on the path into the largest of them
+        int largest = pathBlocks[0];
+        for (int i = 1; i < numPathBlocks; i++) {
+            if (blockSizes[pathBlocks[i]] > blockSizes[largest]) {
+                largest = pathBlocks[i];
+            }
+        }
+        for (int i = 0; i < numPathBlocks; i++) {
+            int b = pathBlocks[i];
+            if (b != largest) {
+                for (int j = 0; j < blockSizes[b]; j++) {
+                    addSegment(largest, blockSegments[b][j]);
+                }
+                removeBlock(b);
+            }
+        }
+        addSegment(largest, seg);
+        return true;
+    }
+
+    public boolean open(Segment seg) {
+        int index = graph.segmentIndex(seg);
+        return index >= 0 && open(index);
+    }
+
+    public boolean isClosed(int seg) {
+        return closed[seg];
+    }
+
+    public int numClosed() {
+        return numClosed;
+    }
+
+    /**
+     * @param node    the index of a node
+     * @return    true if removing the node would disconnect its neighbours, given the
+     *            segments now open
+     */
+    public boolean isArticulationPoint(int node) {
+        return blockCount[node] >= 2;
+    }
+
+    public boolean isArticulationPoint(Node node) {
+        return isArticulationPoint(node.index);
+    }
+
+    /**
+     * @return    a set of all articulation points, given the segments now open
+     */
+    public Set<Node> articulationPoints() {
+        Set<Node> points = new HashSet<>();
+        for (int i = 0; i < blockCount.length; i++) {
+            if (blockCount[i] >= 2) {
+                points.add(graph.node(i));
+            }
+        }
+        return points;
+    }
+
+    public int numArticulationPoints() {
+        return numArticulationPoints;
+    }
+
+    /**
+     * @param seg    the index of a segment
+     * @return    true if the segment is open and closing it would disconnect its ends
+     */
+    public boolean isBridge(int seg) {
+        return block[seg] != NO_BLOCK && blockSizes[block[seg]] == 1;
+    }
+
+    /**
+     * This method finds the path from u to v in the block-cut tree, puts the blocks
+     * on it into pathBlocks, and takes a block off each cut vertex inside it, as
+     * these blocks are about to be merged.
+     *
+     * The tree is searched from both ends at once, and the blocks reached are opened
+     * (i.e. their segments are looked at to find their cut vertices) smallest first,
+     * from whichever end. The searches meet as soon as either reaches a node or
+     * block the other has reached, so a large block on the path is met from both
+     * sides rather than opened, and if u and v are not connected, the search of the
+     * smaller side runs out first.
+     *
+     * @return    the number of blocks on the path, or -1 if there is none
+     */
+    private int findTreePath(int u, int v) {
+        sideU = nextStamp();
+        sideV = nextStamp();
+        pendingU = pendingV = 0;
+        fringe.clear();
+        if (reachNode(u, sideU, NO_BLOCK) || reachNode(v, sideV, NO_BLOCK)) {
+            return collectPath(u, v);
+        }
+        while (pendingU > 0 && pendingV > 0) {
+            int b = fringe.poll();
+            int side = blockStamp[b];
+            if (side == sideU) {
+                pendingU--;
+            } else {
+                pendingV--;
+            }
+            for (int i = 0; i < blockSizes[b]; i++) {
+                Segment seg = graph.segments[blockSegments[b][i]];
+                if (reachNode(seg.start.index, side, b) || reachNode(seg.end.index, side, b)) {
+                    return collectPath(u, v);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method marks the given node as reached by the search from one side, and
+     * the blocks it's in, unless the search from the other side has been there.
+     * @return    true if the two searches have met
+     */
+    private boolean reachNode(int node, int side, int via) {
+        if (nodeStamp[node] == side) {
+            return false;
+        }
+        if (nodeStamp[node] == sideU || nodeStamp[node] == sideV) {
+            meet(via, blockParent[via], node);
+            return true;
+        }
+        nodeStamp[node] = side;
+        nodeParent[node] = via;
+        for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+            int b = block[graph.arcSegment[arc]];
+            if (b == NO_BLOCK || b == via || blockStamp[b] == side) {
+                continue;
+            }
+            if (blockStamp[b] == sideU || blockStamp[b] == sideV) {
+                meet(b, node, blockParent[b]);
+                return true;
+            }
+            blockStamp[b] = side;
+            blockParent[b] = node;
+            fringe.insert(b, blockSizes[b]);
+            if (side == sideU) {
+                pendingU++;
+            } else {
+                pendingV++;
+            }
+        }
+        return false;
+    }
+
+    // the searches met at the given block, which one of them reached from node a,
+    // and the other from node c
+    private void meet(int b, int a, int c) {
+        meetBlock = b;
+        meetA = a;
+        meetC = c;
+    }
+
+    private int collectPath(int u, int v) {
+        pathBlocks[0] = meetBlock;
+        int numPathBlocks = walkToRoot(meetA, nodeStamp[meetA] == sideU ? u : v, 1);
+        return walkToRoot(meetC, nodeStamp[meetC] == sideU ? u : v, numPathBlocks);
+    }
+
+    // follows the tree from the given node back to the end its search started from
+    private int walkToRoot(int node, int root, int numPathBlocks) {
+        while (node != root) {
+            changeBlockCount(node, -1);
+            int b = nodeParent[node];
+            pathBlocks[numPathBlocks++] = b;
+            node = blockParent[b];
+        }
+        return numPathBlocks;
+    }
+
+    /**
+     * This method checks whether block b is still a block without the segment from u
+     * to v just taken out of it. It is if and only if there are still two paths from
+     * u to v within the block that share no node but u and v: any cut vertex of what
+     * is left must separate u from v, or the segment would not have joined its
+     * parts into one block.
+     *
+     * The two paths are found as a flow of two from u to v where each other node can
+     * carry one: a shortest path first, then a path in what is left of the flow
+     * network (see SecondPath). Both are breadth-first searches, so they stay near
+     * the segment when there is a detour close by, and the second is run from both
+     * ends, so that when there is no detour, only the smaller side of the cut
+     * vertex is searched.
+     */
+    private boolean hasTwoDisjointPaths(int b, int u, int v) {
+        int current = nextStamp();
+        int head = 0, tail = 0;
+        nodeStamp[u] = current;
+        queue[tail++] = u;
+        boolean found = false;
+        while (head < tail && !found) {
+            int node = queue[head++];
+            for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+                int next = graph.targets[arc];
+                if (block[graph.arcSegment[arc]] != b || nodeStamp[next] == current) {
+                    continue;
+                }
+                nodeStamp[next] = current;
+                parentArc[next] = arc;
+                if (next == v) {
+                    found = true;
+                    break;
+                }
+                queue[tail++] = next;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        // the first path carries a flow of one, in either direction
+        for (int node = v; node != u;) {
+            int arc = parentArc[node];
+            int prev = graph.source(arc);
+            forward.flowIn[node] = arc;
+            backward.flowIn[prev] = graph.twins[arc];
+            flowStamp[node] = current;
+            flowStamp[prev] = current;
+            node = prev;
+        }
+
+        // look for a second path from both ends at once: there is one if either
+        // finds it, and none as soon as either runs out
+        forward.start(b, u, v, current);
+        backward.start(b, v, u, current);
+        while (forward.step() && backward.step()) {
+        }
+        return forward.found || backward.found;
+    }
+
+    /**
+     * This method runs the Hopcroft-Tarjan search (see ArticulationUtil) over the
+     * segments still in block b, from the given root, and puts them into new blocks.
+     * Each node was in block b and is now in one new block, plus one more for each
+     * new block found hanging off it, so only the nodes that new blocks hang off
+     * need their counts changed.
+     */
+    private void splitBlock(int b, int root) {
+        int current = nextStamp();
+        int time = 0;
+        nodeStamp[root] = current;
+        discovered[root] = low[root] = ++time;
+        parentArc[root] = -1;
+        nextArc[root] = graph.offsets[root];
+        int pathLength = 0, stackSize = 0, rootBlocks = 0;
+        path[pathLength++] = root;
+
+        while (pathLength > 0) {
+            int node = path[pathLength - 1];
+            if (nextArc[node] < graph.offsets[node + 1]) {
+                int arc = nextArc[node]++;
+                int seg = graph.arcSegment[arc];
+                if (block[seg] != b || (parentArc[node] >= 0 && arc == graph.twins[parentArc[node]])) {
+                    continue;
+                }
+                int neighbour = graph.targets[arc];
+                if (nodeStamp[neighbour] != current) {
+                    segmentStack[stackSize++] = seg;
+                    nodeStamp[neighbour] = current;
+                    discovered[neighbour] = low[neighbour] = ++time;
+                    parentArc[neighbour] = arc;
+                    nextArc[neighbour] = graph.offsets[neighbour];
+                    path[pathLength++] = neighbour;
+                } else if (discovered[neighbour] < discovered[node]) {
+                    segmentStack[stackSize++] = seg;
+                    low[node] = Math.min(low[node], discovered[neighbour]);
+                }
+                continue;
+            }
+
+            pathLength--;
+            if (node == root) {
+                break;
+            }
+            int parent = path[pathLength - 1];
+            low[parent] = Math.min(low[parent], low[node]);
+            if (low[node] >= discovered[parent]) {
+                // the segments pushed since the tree segment form a new block
+                int treeSegment = graph.arcSegment[parentArc[node]];
+                int bottom = stackSize - 1;
+                while (segmentStack[bottom] != treeSegment) {
+                    bottom--;
+                }
+                int nb = newBlock(stackSize - bottom);
+                for (int i = bottom; i < stackSize; i++) {
+                    addSegment(nb, segmentStack[i]);
+                }
+                stackSize = bottom;
+                if (parent == root) {
+                    rootBlocks++;
+                } else {
+                    changeBlockCount(parent, 1);
+                }
+            }
+        }
+        changeBlockCount(root, rootBlocks - 1);
+    }
+
+    /**
+     * This method adds delta to the block count of every node of block b.
+     */
+    private void countBlock(int b, int delta) {
+        int current = nextStamp();
+        for (int i = 0; i < blockSizes[b]; i++) {
+            Segment seg = graph.segments[blockSegments[b][i]];
+            if (nodeStamp[seg.start.index] != current) {
+                nodeStamp[seg.start.index] = current;
+                changeBlockCount(seg.start.index, delta);
+            }
+            if (nodeStamp[seg.end.index] != current) {
+                nodeStamp[seg.end.index] = current;
+                changeBlockCount(seg.end.index, delta);
+            }
+        }
+    }
+
+    private void changeBlockCount(int node, int delta) {
+        boolean was = blockCount[node] >= 2;
+        blockCount[node] += delta;
+        boolean is = blockCount[node] >= 2;
+        if (was != is) {
+            numArticulationPoints += is ? 1 : -1;
+        }
+    }
+
+    private int newBlock(int capacity) {
+        int b;
+        if (numFreeIds > 0) {
+            b = freeIds[--numFreeIds];
+        } else {
+            if (numBlockIds == blockSizes.length) {
+                int length = blockSizes.length * 2;
+                blockSegments = Arrays.copyOf(blockSegments, length);
+                blockSizes = Arrays.copyOf(blockSizes, length);
+                blockStamp = Arrays.copyOf(blockStamp, length);
+                blockParent = Arrays.copyOf(blockParent, length);
+                freeIds = Arrays.copyOf(freeIds, length);
+                fringe = new IndexedMinHeap(length);
+            }
+            b = numBlockIds++;
+        }
+        blockSegments[b] = new int[capacity];
+        blockSizes[b] = 0;
+        return b;
+    }
+
+    private void addSegment(int b, int seg) {
+        if (blockSizes[b] == blockSegments[b].length) {
+            blockSegments[b] = Arrays.copyOf(blockSegments[b], blockSizes[b] * 2);
+        }
+        segmentPosition[seg] = blockSizes[b];
+        blockSegments[b][blockSizes[b]++] = seg;
+        block[seg] = b;
+    }
+
+    // takes the given segment out of block b, moving the last one into its place
+    private void removeSegment(int b, int seg) {
+        int last = blockSegments[b][--blockSizes[b]];
+        blockSegments[b][segmentPosition[seg]] = last;
+        segmentPosition[last] = segmentPosition[seg];
+    }
+
+    private void removeBlock(int b) {
+        blockSegments[b] = null;
+        blockSizes[b] = 0;
+        freeIds[numFreeIds++] = b;
+    }
+
+    private int nextStamp() {
+        stamp++;
+        if (stamp == 0) {
+            // the stamps have wrapped around, so they must be cleared for real
+            Arrays.fill(nodeStamp, 0);
+            Arrays.fill(blockStamp, 0);
+            Arrays.fill(flowStamp, 0);
+            Arrays.fill(forward.stateStamp, 0);
+            Arrays.fill(backward.stateStamp, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * A breadth-first search for a second path from source to sink in block b, given
+     * a first one that carries a flow of one, i.e. for an augmenting path in the flow
+     * network where each node but the ends is split into an entry and an exit joined
+     * by an arc of capacity one. The search moves:
+     *
+     * - from the exit of a node along any arc of the block that the flow doesn't use,
+     *   to the entry of the next node;
+     * - from the entry of a node the flow doesn't go through, to its exit;
+     * - against the flow: from the entry of a node on the first path back to the exit
+     *   of the node before it, and from the exit of a node on it to its entry.
+     *
+     * States are 2 * node for the entry of a node, and 2 * node + 1 for its exit.
+     */
+    private class SecondPath {
+        // the arc the flow enters each node on the first path by
+        final int[] flowIn;
+        final int[] stateStamp;
+        final int[] queue;
+        int b, source, sink, current, head, tail;
+        boolean found;
+
+        SecondPath(int numNodes) {
+            flowIn = new int[numNodes];
+            stateStamp = new int[2 * numNodes];
+            queue = new int[2 * numNodes];
+        }
+
+        void start(int b, int source, int sink, int current) {
+            this.b = b;
+            this.source = source;
+            this.sink = sink;
+            this.current = current;
+            found = false;
+            head = tail = 0;
+            visit(2 * source + 1);
+        }
+
+        /**
+         * This method moves on from one state.
+         * @return    false if the search is over, either way
+         */
+        boolean step() {
+            if (head == tail) {
+                return false;
+            }
+            int state = queue[head++];
+            int node = state >> 1;
+            boolean onPath = node != source && flowStamp[node] == current;
+            if ((state & 1) == 0) {
+                visit(onPath ? 2 * graph.source(flowIn[node]) + 1 : state + 1);
+                return true;
+            }
+            if (onPath) {
+                visit(state - 1);
+            }
+            for (int arc = graph.offsets[node]; arc < graph.offsets[node + 1]; arc++) {
+                int next = graph.targets[arc];
+                if (block[graph.arcSegment[arc]] != b || next == source
+                        || (flowStamp[next] == current && flowIn[next] == arc)) {
+                    continue;
+                }
+                if (next == sink) {
+                    found = true;
+                    return false;
+                }
+                visit(2 * next);
+            }
+            return true;
+        }
+
+        private void visit(int state) {
+            if (stateStamp[state] != current) {
+                stateStamp[state] = current;
+                queue[tail++] = state;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package code;
+
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * This class draws frames of the map on a background thread, into off-screen
+ * images, so that the event thread only has to copy the latest finished frame onto
+ * the screen and never waits for the drawing itself.
+ *
+ * A frame is requested with a painter that draws it. The painter runs on the render
+ * thread, so it must only use what it was given when it was made, not state the
+ * event thread keeps changing. Requests made while a frame is being drawn are not
+ * queued up: only the newest one is drawn next, so the render thread never falls
+ * behind.
+ *
+ * Two images are used in turn. The render thread draws into the spare one, and
+ * swaps it with the latest frame once it's finished, so a frame is never shown half
+ * drawn.
+ *
+ * @author Hector
+ *
+ */
+public class FrameRenderer {
+
+    private final Runnable onFrameReady;
+    private final Thread thread;
+
+    // the newest frame requested and not yet drawn, if any
+    private Dimension requestedSize;
+    private Consumer<Graphics2D> requestedPainter;
+
+    // the latest finished frame, guarded by itself; and the image the next frame is
+    // drawn into, only touched by the render thread
+    private final Object frameLock = new Object();
+    private BufferedImage latest;
+    private BufferedImage spare;
+
+    /**
+     * Constructor. Starts the render thread.
+     * @param onFrameReady    called (on the render thread) when a frame is finished
+     */
+    public FrameRenderer(Runnable onFrameReady) {
+        this.onFrameReady = onFrameReady;
+        this.thread = new Thread(this::run, "frame renderer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * This method asks for a frame to be drawn. It returns at once.
+     * @param size    the size of the frame
+     * @param painter    draws the frame, on a transparent image of the given size
+     */
+    public synchronized void request(Dimension size, Consumer<Graphics2D> painter) {
+        requestedSize = new Dimension(size);
+        requestedPainter = painter;
+        notifyAll();
+    }
+
+    /**
+     * This method copies the latest finished frame onto the given Graphics object.
+     * @param g     the passed Graphics object
+     * @param d    the current dimension of the display panel
+     * @return    true if the frame copied is of the current dimension, false if it's
+     *            of an old one, or if there is no frame yet
+     */
+    public boolean paintLatest(Graphics g, Dimension d) {
+        synchronized (frameLock) {
+            if (latest == null) {
+                return false;
+            }
+            g.drawImage(latest, 0, 0, null);
+            return latest.getWidth() == d.width && latest.getHeight() == d.height;
+        }
+    }
+
+    /**
+     * This method stops the render thread.
+     */
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Dimension size;
+            Consumer<Graphics2D> painter;
+            synchronized (this) {
+                while (requestedPainter == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                size = requestedSize;
+                painter = requestedPainter;
+                requestedPainter = null;
+            }
+            if (size.width <= 0 || size.height <= 0) {
+                continue;
+            }
+
+            BufferedImage image = spare;
+            if (image == null || image.getWidth() != size.width || image.getHeight() != size.height) {
+                image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+            }
+            Graphics2D g = image.createGraphics();
+            try {
+                // clear what the image had from two frames ago
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, size.width, size.height);
+                g.setComposite(AlphaComposite.SrcOver);
+                painter.accept(g);
+            } catch (RuntimeException e) {
+                // keep showing the last good frame rather than losing the thread
+                System.out.println("Failed to draw the map: " + e);
+                continue;
+            } finally {
+                g.dispose();
+            }
+            synchronized (frameLock) {
+                spare = latest;
+                latest = image;
+            }
+            onFrameReady.run();
+        }
+    }
+}
@@ -116,6 +116,12 @@ public abstract class GUI {
      */
     protected abstract void findArticulationPoints();
     
+    /**
+     * Show or hide everything that can be driven to from the start node within a
+     * few minutes.
+     */
+    protected abstract void switchIsochrone();
+    
     /**
      * Switch between distance-first and time-first navigation.
      */
@@ -362,6 +368,14 @@ public abstract class GUI {
             }
         });
         
+        JButton isochrone = new JButton ("Isochrone");
+        isochrone.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent ev) {
+                switchIsochrone();
+                redraw();
+            }
+        });
+        
         JButton speedOrDistance = new JButton ("Distance \u2191");
         speedOrDistance.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent ev) {
@@ -434,13 +448,14 @@ public abstract class GUI {
         controls.add(Box.createRigidArea(new Dimension(15, 0)));
 
         JPanel navigation = new JPanel();
-        navigation.setMaximumSize(new Dimension(500, 60));
-        navigation.setLayout(new GridLayout(2, 5));
+        navigation.setMaximumSize(new Dimension(600, 60));
+        navigation.setLayout(new GridLayout(2, 6));
         navigation.add(out);
         navigation.add(north);
         navigation.add(in);
         navigation.add(selectStartNode);
         navigation.add(articulPoint);
+        navigation.add(isochrone);
         navigation.add(west);
         navigation.add(south);
         navigation.add(east);
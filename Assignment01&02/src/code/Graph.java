@@ -8,11 +8,17 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class represents the graph of intersections and road segments of Auckland.
@@ -27,25 +33,66 @@ public class Graph {
     Set<Segment> segmentSet;
     Set<Polygon> polygonSet;
     
-    // a trie structure of roads
-    RoadTrie roadTries;
+    // a radix tree of roads, by label and city; and where the last search of it
+    // ended, for the next one to go on from
+    RadixRoadTrie roadTries;
+    private RadixRoadTrie.Prefix lastSearch;
     
     // Restriction nodes
     Set<Restriction> restrictions;
+    // the restrictions indexed by arc of compactGraph, for the searches
+    TurnRestrictions turnRestrictions;
+    
+    // the frozen, array-based form of nodes and segments, built after loading
+    CompactGraph compactGraph;
+    
+    // landmarks for the time-first heuristic, loaded from (or saved to) a file
+    // next to the data files
+    Landmarks timeLandmarks;
+    public static final String LANDMARKS_FILENAME = "landmarks-time.bin";
+    
+    // the paths found by findPath() lately, dropped when the restrictions change
+    RouteCache routeCache;
+    
+    // contraction hierarchies for both cost models, only built on request
+    ContractionHierarchy distanceHierarchy;
+    ContractionHierarchy timeHierarchy;
+    
+    // the most roads searchRoad() returns, and how long the input must be for a typo
+    // to be allowed
+    public static final int SEARCH_LIMIT = 100;
+    public static final int TYPO_LENGTH = 4;
     
     // how far away from a node you can click before it isn't counted.
     public static final double MAX_CLICKED_DISTANCE = 0.15;
     
-    // quad-tree of nodes to be implemented
-    // QuadTree nodeQuadTree;
+    // the data files are big, so read them in big chunks
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    // how long each file read by the last load took, in nanoseconds; the files are
+    // read at the same time, so this is filled in from several threads
+    private Map<File, Long> loadTimes;
+    
+    // quad-tree of nodes, for finding nodes by location
+    QuadTree<Node> nodeQuadTree;
+    // grids of segments and polygons, for drawing only what is on screen
+    GridIndex<Segment> segmentIndex;
+    GridIndex<Polygon> polygonIndex;
+    // how many pixels beyond the edges of the panel are drawn, so that the nodes and
+    // lines right on the edges are drawn in full
+    private static final int DRAW_MARGIN = 10;
 
     public Graph() {
         nodeMap = new HashMap<>();
         roadMap = new HashMap<>();
         polygonSet = new HashSet<>();
         segmentSet = new HashSet<>();
-        roadTries = new RoadTrie();
+        roadTries = new RadixRoadTrie();
         restrictions = new HashSet<>();
+        compactGraph = new CompactGraph(nodeMap.values(), segmentSet);
+        turnRestrictions = new TurnRestrictions(compactGraph, restrictions);
+        routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        loadTimes = new ConcurrentHashMap<>();
+        buildSpatialIndices();
     }
 
     /**
@@ -54,27 +101,146 @@ public class Graph {
      * @param roads    the file contains information of roads
      * @param segments    the file contains information of segments
      * @param polygons    the file contains information of polygons
+     * 
+     * If there is an up-to-date snapshot (see GraphSnapshot) next to the data files, 
+     * it is read instead, which is much faster.
+     * 
+     * If the calling thread is interrupted, e.g. because another map is to be loaded 
+     * instead, loading stops before the next phase starts and this graph is left 
+     * half loaded, with the interrupt flag still set for the caller to check.
      */
     public void load(File nodes, File roads, File segments, File polygons, File restrfile) {
+        File snapshot = new File(nodes.getParentFile(), GraphSnapshot.FILENAME);
+        long start = System.nanoTime();
+        if (!GraphSnapshot.isUpToDate(snapshot, nodes, roads, segments, polygons, restrfile)
+                || !GraphSnapshot.load(snapshot, this, polygons != null, restrfile != null)) {
+            parse(nodes, roads, segments, polygons, restrfile);
+        } else {
+            loadTimes = new ConcurrentHashMap<>();
+            loadTimes.put(snapshot, System.nanoTime() - start);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        build();
+        // landmarks may have to be worked out, which takes a while
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        timeLandmarks = Landmarks.loadOrCompute(new File(nodes.getParentFile(), LANDMARKS_FILENAME),
+                compactGraph, false);
+    }
+
+    /**
+     * This method parses the data files into nodes, roads, segments, polygons and
+     * restrictions, never reading a snapshot. build() must be called after it. If
+     * the calling thread is interrupted, it stops as load() does.
+     * @param polygons    may be null
+     * @param restrfile    may be null
+     */
+    void parse(File nodes, File roads, File segments, File polygons, File restrfile) {
         nodeMap = new HashMap<>();
         roadMap = new HashMap<>();
         polygonSet = new HashSet<>();
         segmentSet = new HashSet<>();
-        roadTries = new RoadTrie();
+        roadTries = new RadixRoadTrie();
         restrictions = new HashSet<>();
+        loadTimes = new ConcurrentHashMap<>();
 
-        // delegate to several dedicated methods to load file
-        loadNodes(nodes);
-        loadRoads(roads);
-        loadSegments(segments);
+        /*
+         * delegate to several dedicated methods to load file. Nodes, roads and
+         * polygons don't depend on each other, so they are loaded at the same 
+         * time; segments and restrictions are loaded once nodes and roads are 
+         * there. Each method only fills in its own collection (segments also 
+         * join nodes and roads, which restrictions don't look at), so they 
+         * don't need to lock anything.
+         */
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Void> nodesLoaded = loadAsync(nodes, caller, () -> loadNodes(nodes));
+        CompletableFuture<Void> roadsLoaded = loadAsync(roads, caller, () -> loadRoads(roads));
+        CompletableFuture<Void> nodesAndRoadsLoaded = CompletableFuture.allOf(nodesLoaded, roadsLoaded);
+        List<CompletableFuture<Void>> loaded = new ArrayList<>();
+        loaded.add(nodesAndRoadsLoaded.thenCompose(
+                v -> loadAsync(segments, caller, () -> loadSegments(segments))));
         if (polygons != null) {
-            loadPolygons(polygons);
+            loaded.add(loadAsync(polygons, caller, () -> loadPolygons(polygons)));
         }
-        if (restrictions != null) {
-            loadRestrictions(restrfile);            
+        if (restrfile != null) {
+            loaded.add(nodesAndRoadsLoaded.thenCompose(
+                    v -> loadAsync(restrfile, caller, () -> loadRestrictions(restrfile))));
+        }
+        try {
+            CompletableFuture.allOf(loaded.toArray(new CompletableFuture<?>[loaded.size()])).get();
+        } catch (InterruptedException e) {
+            // the phases running now finish on their own, and no more are started
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause()
+                    : e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CompletionException(cause);
         }
     }
 
+    /**
+     * This method builds everything worked out from the nodes, roads, segments and
+     * restrictions once they are parsed or read from a snapshot: the compact graph,
+     * the spatial indices and the ranks of the road trie. Landmarks are left out, as
+     * load() reads them from a file if it can.
+     */
+    void build() {
+        // freeze nodes and segments into the compact form used by graph algorithms
+        compactGraph = new CompactGraph(nodeMap.values(), segmentSet);
+        turnRestrictions = new TurnRestrictions(compactGraph, restrictions);
+        routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        buildSpatialIndices();
+        // now that roads have their segments, their lengths are known
+        roadTries.rank();
+        timeLandmarks = null;
+        distanceHierarchy = null;
+        timeHierarchy = null;
+    }
+
+    /**
+     * This method indexes nodes, segments and polygons by location.
+     */
+    private void buildSpatialIndices() {
+        nodeQuadTree = new QuadTree<>(nodeMap.values(), node -> node.location);
+        segmentIndex = new GridIndex<>(segmentSet, Segment::bounds);
+        polygonIndex = new GridIndex<>(polygonSet, Polygon::bounds);
+    }
+
+    /**
+     * This method runs one of the load methods below on the common fork-join pool,
+     * and records how long it took in loadTimes.
+     * @param file    the file the load method reads
+     * @param caller    the thread loading the graph; if it's interrupted by the time
+     *                the load method would start, it is skipped
+     * @param loader    the load method
+     * @return    a future that completes when it's loaded
+     */
+    private CompletableFuture<Void> loadAsync(File file, Thread caller, Runnable loader) {
+        Map<File, Long> times = loadTimes;
+        return CompletableFuture.runAsync(() -> {
+            if (!caller.isInterrupted()) {
+                long start = System.nanoTime();
+                loader.run();
+                times.put(file, System.nanoTime() - start);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return    how long each file read by the last load took, in nanoseconds. If
+     *               the graph was read from a snapshot, this is only the snapshot
+     *               file. Files skipped because the load was cancelled are left out
+     */
+    public Map<File, Long> getLoadTimes() {
+        return Collections.unmodifiableMap(loadTimes);
+    }
+
     /**
      * This method reads from the node file, creates Node objects and store them in
      * a HashMap, where the key is nodeID, and the value is the Node object. 
@@ -83,14 +249,11 @@ public class Graph {
     private void loadNodes(File file) {
         BufferedReader bfReader;
         try {
-            bfReader = new BufferedReader(new FileReader(file));
+            bfReader = new BufferedReader(new FileReader(file), READ_BUFFER_SIZE);
             String line = bfReader.readLine();
             while (line != null) {
-                Node node = new Node(line);
+                Node node = new Node(line, nodeMap.size());
                 nodeMap.put(node.nodeID, node);
-                
-                // TODO load it into Quad tree
-                
                 line = bfReader.readLine();
             }
             bfReader.close();
@@ -110,7 +273,7 @@ public class Graph {
     private void loadRoads(File file) {
         BufferedReader bfReader;
         try {
-            bfReader = new BufferedReader(new FileReader(file));
+            bfReader = new BufferedReader(new FileReader(file), READ_BUFFER_SIZE);
             bfReader.readLine();   // throw away the first line, labels
             String line = bfReader.readLine();
             while (line != null) {
@@ -139,16 +302,12 @@ public class Graph {
     private void loadSegments(File file) {
         BufferedReader bfReader;
         try {
-            bfReader = new BufferedReader(new FileReader(file));
+            bfReader = new BufferedReader(new FileReader(file), READ_BUFFER_SIZE);
             bfReader.readLine();   // throw away the first line
             String line = bfReader.readLine(); 
             while (line != null) {
                 Segment seg = new Segment(line, nodeMap, roadMap);
                 segmentSet.add(seg);
-                // add the road that this segment belongs to into the
-                // appropriate node objects
-                seg.start.joinedSegments.add(seg);
-                seg.end.joinedSegments.add(seg);
                 // add this segment into the appropriate road object
                 roadMap.get(seg.roadID).roadSegments.add(seg);
                 line = bfReader.readLine();
@@ -169,7 +328,7 @@ public class Graph {
     private void loadPolygons(File file) {
         BufferedReader bfReader;
         try {
-            bfReader = new BufferedReader(new FileReader(file));
+            bfReader = new BufferedReader(new FileReader(file), READ_BUFFER_SIZE);
             String line = bfReader.readLine();
             while (line != null) {
                 if (line.equals("[POLYGON]")) {
@@ -189,12 +348,12 @@ public class Graph {
                         } else if (line.startsWith("CityIdx")) {
                             cityIdx = Integer.parseInt(line.substring(8));
                         } else if (line.startsWith("Data")) {
-                            // remove brackets, split the line and convert it to a String array
-                            String[] dots = line.substring(6).replace("(", "").replace(")", "").split(",");
+                            // read the (lat,lon) pairs after "Data0="
+                            LineScanner dots = new LineScanner(line, ',', line.indexOf('=') + 1);
                             ArrayList<Location> list = new ArrayList<>();
-                            for (int index = 0; index < dots.length;) {
-                                double lat = Double.parseDouble(dots[index++]);
-                                double lon = Double.parseDouble(dots[index++]);
+                            while (dots.hasNext()) {
+                                double lat = dots.nextDouble();
+                                double lon = dots.nextDouble();
                                 list.add(Location.newFromLatLon(lat, lon));
                             }
                             locations.add(list);
@@ -224,7 +383,7 @@ public class Graph {
     private void loadRestrictions(File file) {
         BufferedReader bfReader;
         try {
-            bfReader = new BufferedReader(new FileReader(file));
+            bfReader = new BufferedReader(new FileReader(file), READ_BUFFER_SIZE);
             bfReader.readLine(); // throw away the first line
             String line = bfReader.readLine();
             while (line != null) {
@@ -241,51 +400,69 @@ public class Graph {
     }
     
     /**
-     * This method draws all polygons, road segments, and intersections
-     * in this graph by delegating to each polygon, road segment, and node
-     * to do so.
+     * This method draws the polygons, road segments, and intersections on
+     * screen by delegating to each polygon, road segment, and node to do so.
+     * Only those whose bounding box overlaps the visible area are looked up
+     * (in the spatial indices) and drawn.
      * @param g     the passed Graphics object
      * @param currentOrigin    the current origin Location
      * @param currentScale     the current scale
      * @param d    the current dimension of the display panel
      */
     public void redraw(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
-        // draw all polygons
-        if (!polygonSet.isEmpty()) {
-            for (Polygon p : polygonSet) {
-                p.draw(g, currentOrigin, currentScale, d);
+        redraw(g, currentOrigin, currentScale, d, false);
+    }
+
+    /**
+     * Same as redraw(), but draws all road segments and intersections in their
+     * default colours, leaving out any highlight. This can be called from any 
+     * thread.
+     * @param g     the passed Graphics object
+     * @param currentOrigin    the current origin Location
+     * @param currentScale     the current scale
+     * @param d    the current dimension of the display panel
+     */
+    public void redrawBase(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
+        redraw(g, currentOrigin, currentScale, d, true);
+    }
+
+    private void redraw(Graphics g, Location currentOrigin, double currentScale, Dimension d,
+            boolean base) {
+        // the visible area: the panel centre is at currentOrigin, see Node.draw()
+        double halfWidth = (d.getWidth() / 2 + DRAW_MARGIN) / currentScale;
+        double halfHeight = (d.getHeight() / 2 + DRAW_MARGIN) / currentScale;
+        double minX = currentOrigin.x - halfWidth, maxX = currentOrigin.x + halfWidth;
+        double minY = currentOrigin.y - halfHeight, maxY = currentOrigin.y + halfHeight;
+
+        // draw visible polygons, segments, and nodes, as the indices find them rather 
+        // than collecting them first, so that a frame makes as little garbage as possible
+        polygonIndex.forEach(minX, minY, maxX, maxY, p -> p.draw(g, currentOrigin, currentScale, d));
+        segmentIndex.forEach(minX, minY, maxX, maxY, seg -> {
+            if (base) {
+                seg.draw(g, currentOrigin, currentScale, d, Segment.DEFAULT_COLOUR);
+            } else {
+                seg.draw(g, currentOrigin, currentScale, d);
             }
-        }
-        // draw all segments
-        for (Segment seg : segmentSet) {
-            seg.draw(g, currentOrigin, currentScale, d);
-        }
-        // draw all nodes
-        for (Node n : nodeMap.values()) {
-            n.draw(g, currentOrigin, currentScale, d);
-        }
+        });
+        nodeQuadTree.forEachWithin(minX, minY, maxX, maxY, n -> {
+            if (base) {
+                n.draw(g, currentOrigin, currentScale, d, Node.DEFAULT_COLOUR);
+            } else {
+                n.draw(g, currentOrigin, currentScale, d);
+            }
+        });
     }
 
     /**
-     * This method implements a linear search to finds the intersection 
-     * being clicked. 
+     * This method finds the intersection being clicked, by looking up the 
+     * closest one in the quad-tree of nodes. 
      * Note: when the scale is big, i.e. when many intersections are drew 
      * overlapped, this method may not work.
      * @param location    the location being clicked
      * @return    the intersection selected. Returns null if no node can be found
      */
     public Node findNode(Location location) {
-        
-        double bestDist = Double.MAX_VALUE;
-        Node closest = null;
-
-        for (Node n : nodeMap.values()) {
-            double distance = location.distance(n.location);
-            if (distance < bestDist) {
-                bestDist = distance;
-                closest = n;
-            }
-        }
+        Node closest = nodeQuadTree.nearest(location);
         
         // if it's close enough, highlight it and show some information.
         if (closest != null && location.distance(closest.location) < MAX_CLICKED_DISTANCE) {
@@ -293,28 +470,276 @@ public class Graph {
         } else {
             return null;
         }
-        
-        // Quad-tree version
-        
+    }
+
+    /**
+     * This method finds all intersections within the given distance of a location.
+     * @param location
+     * @param radius
+     * @return    a list of all intersections within the distance
+     */
+    public List<Node> findNodesNear(Location location, double radius) {
+        return nodeQuadTree.within(location, radius);
     }
 
     /**
      * This method takes the user input from the search box, and search through
-     * the trie to find possible matches with same prefix.
+     * the trie to find possible matches with same prefix. Typos are allowed: one
+     * from TYPO_LENGTH characters on, and two from twice that on.
+     * 
+     * As the input is typed a char at a time, the prefix is found from where the
+     * last search ended, and the best roads under it are kept in the tree, so a 
+     * keystroke costs the same however many roads match. Typos are only looked for 
+     * when no road matches exactly, as that takes a walk over much of the tree.
      * @param str    the user input in search box
-     * @return    a list of Road(s). The road in this list all have the same prefix
-     *               that matches the user input. Returns null if no road can be found
+     * @return    a list of at most SEARCH_LIMIT Road(s): the most important roads 
+     *               matching exactly, or if there is none, the closest matches first.
+     *               Returns an empty list if no road can be found
      */
     public ArrayList<Road> searchRoad(String str) {
-        return roadTries.find(str);
+        ArrayList<Road> found = completeRoad(str);
+        if (found.isEmpty()) {
+            found = searchRoadWithTypos(str);
+        }
+        return found;
     }
 
     /**
-     * 
-     * @return
+     * This method finds the roads starting with the given string, from where the 
+     * last one ended if the string goes on from it. It takes well under a 
+     * millisecond, so it can be run on every keystroke.
+     * @return    a list of at most SEARCH_LIMIT of the most important roads matching 
+     *               exactly, or an empty list if none does
+     */
+    public ArrayList<Road> completeRoad(String str) {
+        lastSearch = roadTries.locate(str, lastSearch);
+        return roadTries.complete(lastSearch, SEARCH_LIMIT);
+    }
+
+    /**
+     * This method finds the roads starting with something a typo or two away from 
+     * the given string, if it's long enough for typos to be allowed. This can take 
+     * a few milliseconds on long strings, so the GUI runs it off the event thread; 
+     * it only reads the road trie, so it can run alongside completeRoad().
+     * @return    a list of at most SEARCH_LIMIT Road(s), the closest matches first, or 
+     *               an empty list if none is close enough
+     */
+    public ArrayList<Road> searchRoadWithTypos(String str) {
+        int length = str.trim().length();
+        int maxEdits = length < TYPO_LENGTH ? 0 : (length < 2 * TYPO_LENGTH ? 1 : 2);
+        if (maxEdits == 0) {
+            return new ArrayList<>();
+        }
+        return roadTries.search(str, maxEdits, SEARCH_LIMIT);
+    }
+
+    /**
+     * This method finds the shortest (or fastest) path between two intersections.
+     * Paths found lately are cached, so asking for one of them again doesn't search.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    a list of segments from start to end. Returns an empty list if
+     *               no path can be found
+     */
+    public List<Segment> findPath(Node start, Node end, boolean distanceFirst) {
+        RouteCache cache = routeCache;
+        int version = cache.version();
+        List<Segment> path = cache.get(start, end, distanceFirst);
+        if (path != null) {
+            return path;
+        }
+        // landmarks give a much better estimate of time than euclidean distance
+        if (!distanceFirst && timeLandmarks != null) {
+            path = AStarUtil.findPath(compactGraph, start, end, turnRestrictions, false, timeLandmarks);
+        } else {
+            path = AStarUtil.findPath(compactGraph, start, end, turnRestrictions, distanceFirst);
+        }
+        // a cancelled search may have given up half way
+        if (!Thread.currentThread().isInterrupted()) {
+            cache.put(start, end, distanceFirst, version, path);
+        }
+        return path;
+    }
+
+    /**
+     * This method replaces the turn restrictions, and drops the cached paths found
+     * under the old ones.
+     * @param restrictions    the new restrictions
+     */
+    public void setRestrictions(Set<Restriction> restrictions) {
+        this.restrictions = restrictions;
+        turnRestrictions = new TurnRestrictions(compactGraph, restrictions);
+        invalidateRoutes();
+    }
+
+    /**
+     * This method drops the cached paths, so that the next routes are searched for
+     * again. setRestrictions() already calls it. Roads can't be changed once loaded,
+     * and the costs of the compact graph are fixed by build(), which starts a new
+     * cache anyway, so there is nothing else to call it for but timing the search.
+     */
+    public void invalidateRoutes() {
+        routeCache.invalidate();
+    }
+
+    /**
+     * @return    the cache of paths found by findPath(), e.g. for its hit and miss
+     *               counts. Each load or build() starts a new one
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Same as findPath(), but searches from both ends at once with bidirectional A*,
+     * which explores fewer nodes on long routes.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    a list of segments from start to end. Returns an empty list if
+     *               no path can be found
+     */
+    public List<Segment> findPathBidirectional(Node start, Node end, boolean distanceFirst) {
+        CostModel.Heuristic heuristic = !distanceFirst && timeLandmarks != null ? timeLandmarks
+                : CostModel.euclidean(compactGraph, distanceFirst);
+        return AStarUtil.findPathBidirectional(compactGraph, start, end, turnRestrictions, distanceFirst, 
+                heuristic);
+    }
+
+    /**
+     * This method builds the contraction hierarchies of this graph for both cost
+     * models, so that findPathCH() can be used. This takes a while, and only pays
+     * off when many routes are queried on the same graph.
+     */
+    public void prepareContractionHierarchies() {
+        distanceHierarchy = new ContractionHierarchy(compactGraph, true);
+        timeHierarchy = new ContractionHierarchy(compactGraph, false);
+    }
+
+    /**
+     * This method finds the shortest (or fastest) path between two intersections
+     * using the contraction hierarchies. Note that turn restrictions are not taken
+     * into account.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    a list of segments from start to end. Returns an empty list if
+     *               no path can be found
+     */
+    public List<Segment> findPathCH(Node start, Node end, boolean distanceFirst) {
+        if (distanceHierarchy == null || timeHierarchy == null) {
+            throw new IllegalStateException("Contraction hierarchies are not prepared");
+        }
+        return (distanceFirst ? distanceHierarchy : timeHierarchy).findPath(start, end);
+    }
+
+    /**
+     * This method works out the cost of the shortest (or fastest) path from every
+     * source to every target, running one sweep per source in parallel on the
+     * common fork-join pool.
+     * @param sources    the start intersections
+     * @param targets    the destinations
+     * @param distanceFirst    true for distances, false for times
+     * @return    matrix[i][j] is the cost from sources[i] to targets[j], or infinity
+     *               if there is no path
+     */
+    public double[][] findCostMatrix(List<Node> sources, List<Node> targets, boolean distanceFirst) {
+        return RouteMatrixUtil.computeMatrix(compactGraph, turnRestrictions, toIndices(sources),
+                toIndices(targets), distanceFirst, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * This method finds everything that can be driven to from the given intersection
+     * within the given time, honouring one-way roads, roads not for cars and turn
+     * restrictions.
+     * @param origin    the start intersection
+     * @param minutes    the time budget
+     * @return    the nodes reached, and a polygon around them
+     */
+    public Isochrone findIsochrone(Node origin, double minutes) {
+        return IsochroneUtil.computeIsochrone(compactGraph, turnRestrictions, origin.index, minutes / 60);
+    }
+
+    /**
+     * Same as findIsochrone(), for many origins at once, in parallel on the common
+     * fork-join pool.
+     * @param origins    the start intersections
+     * @param minutes    the time budget
+     * @return    the isochrone of each origin, in the same order
+     */
+    public Isochrone[] findIsochrones(List<Node> origins, double minutes) {
+        return IsochroneUtil.computeIsochrones(compactGraph, turnRestrictions, toIndices(origins), minutes / 60,
+                ForkJoinPool.commonPool());
+    }
+
+    private static int[] toIndices(List<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = nodes.get(i).index;
+        }
+        return indices;
+    }
+
+    /**
+     * @return    the roads of this graph, by road ID
+     */
+    public Map<Integer, Road> getRoads() {
+        return Collections.unmodifiableMap(roadMap);
+    }
+
+    public Set<Polygon> getPolygons() {
+        return Collections.unmodifiableSet(polygonSet);
+    }
+
+    /**
+     * @return    the turn restrictions of this graph, as loaded or last set
+     */
+    public Set<Restriction> getRestrictions() {
+        return Collections.unmodifiableSet(restrictions);
+    }
+
+    /**
+     * @return    the compact form of this graph, as built after the last load
+     */
+    public CompactGraph getCompactGraph() {
+        return compactGraph;
+    }
+
+    /**
+     * This method finds all articulation points in this graph.
+     * @return    a set of all articulation points
      */
     public Set<Node> findArticulationPoints() {
-        return ArticulationUtil.findArticulationPoints(this.nodeMap.values());
+        return ArticulationUtil.findArticulationPoints(compactGraph);
     }
-    
+
+    /**
+     * This method finds all articulation points, bridges and biconnected components
+     * in this graph.
+     * @return    the biconnected structure of this graph
+     */
+    public Biconnectivity findBiconnectivity() {
+        return ArticulationUtil.findBiconnectivity(compactGraph);
+    }
+
+    /**
+     * This method finds the connected components of this graph, in parallel on the
+     * common fork-join pool, and its articulation points, bridges and biconnected
+     * components.
+     * @return    the analysis of this graph
+     */
+    public NetworkAnalysis analyseNetwork() {
+        return NetworkAnalysisUtil.analyse(compactGraph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * This method starts keeping track of the articulation points of this graph
+     * while segments are closed and reopened, see DynamicArticulation.
+     * @return    a new tracker, with all segments open
+     */
+    public DynamicArticulation trackArticulationPoints() {
+        return new DynamicArticulation(compactGraph);
+    }
+
 }
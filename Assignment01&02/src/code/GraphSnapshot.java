@@ -0,0 +1,355 @@
+package code;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class reads and writes a binary snapshot of a loaded graph: its nodes, roads,
+ * segments with their coordinates, polygons and restrictions. Reading a snapshot is
+ * much faster than parsing the tab-separated data files, as the file is memory-mapped
+ * and numbers are read as they are stored rather than parsed from text. Coordinates
+ * are stored as Locations, so they don't need converting from latitude and longitude
+ * either.
+ *
+ * Nodes are stored in the order of their dense indices, and everything else refers
+ * to nodes by index, so the graph read back is laid out the same way as the one
+ * written (and saved landmarks still fit it). The road trie is rebuilt from the roads.
+ *
+ * A snapshot is written by running this class once on a data directory. Graph.load()
+ * then reads it instead of the data files, as long as it is newer than them and was
+ * made from the same optional files: the header records whether polygons and
+ * restrictions were loaded, so that a load without them doesn't get them from the
+ * snapshot.
+ *
+ * @author Hector
+ *
+ */
+public class GraphSnapshot {
+
+    // the name of the snapshot file, next to the data files
+    public static final String FILENAME = "graph-snapshot.bin";
+
+    // the file format, at the beginning of a snapshot
+    private static final int MAGIC = 0x474d5032;  // "GMP2"
+    // which optional data files a snapshot was made from, after the format
+    private static final int WITH_POLYGONS = 1;
+    private static final int WITH_RESTRICTIONS = 2;
+
+    /**
+     * This method writes a snapshot of the given graph to the given file.
+     * @param graph    a loaded graph
+     * @param file
+     * @param withPolygons    true if the graph was loaded with a polygon file
+     * @param withRestrictions    true if the graph was loaded with a restriction file
+     * @throws IOException
+     */
+    public static void save(Graph graph, File file, boolean withPolygons, boolean withRestrictions)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(inputs(withPolygons, withRestrictions));
+
+            // nodes, in index order
+            Node[] nodes = graph.nodeMap.values().toArray(new Node[graph.nodeMap.size()]);
+            Arrays.sort(nodes, Comparator.comparingInt(node -> node.index));
+            out.writeInt(nodes.length);
+            for (Node node : nodes) {
+                out.writeInt(node.nodeID);
+                out.writeDouble(node.location.x);
+                out.writeDouble(node.location.y);
+            }
+
+            out.writeInt(graph.roadMap.size());
+            for (Road road : graph.roadMap.values()) {
+                out.writeInt(road.roadID);
+                out.writeInt(road.type);
+                writeString(out, road.label);
+                writeString(out, road.city);
+                out.writeBoolean(road.isOneWay);
+                out.writeInt(road.speedLimit);
+                out.writeDouble(road.roadClass);
+                out.writeBoolean(road.notForCar);
+                out.writeBoolean(road.notForPedestrian);
+                out.writeBoolean(road.notForBicycle);
+            }
+
+            // segments, with the coordinates between the two ends
+            out.writeInt(graph.segmentSet.size());
+            for (Segment seg : graph.segmentSet) {
+                out.writeInt(seg.roadID);
+                out.writeDouble(seg.length);
+                out.writeInt(seg.start.index);
+                out.writeInt(seg.end.index);
+                out.writeInt(seg.coords.size() - 2);
+                for (int i = 1; i < seg.coords.size() - 1; i++) {
+                    out.writeDouble(seg.coords.get(i).x);
+                    out.writeDouble(seg.coords.get(i).y);
+                }
+            }
+
+            out.writeInt(graph.polygonSet.size());
+            for (Polygon polygon : graph.polygonSet) {
+                writeInteger(out, polygon.type);
+                writeString(out, polygon.label);
+                writeInteger(out, polygon.endLevel);
+                writeInteger(out, polygon.cityIdx);
+                out.writeInt(polygon.locations.size());
+                for (List<Location> list : polygon.locations) {
+                    out.writeInt(list.size());
+                    for (Location location : list) {
+                        out.writeDouble(location.x);
+                        out.writeDouble(location.y);
+                    }
+                }
+            }
+
+            // restrictions, by node index and road ID, -1 for what wasn't found
+            out.writeInt(graph.restrictions.size());
+            for (Restriction restriction : graph.restrictions) {
+                out.writeInt(restriction.nodeFrom == null ? -1 : restriction.nodeFrom.index);
+                out.writeInt(restriction.roadFrom == null ? -1 : restriction.roadFrom.roadID);
+                out.writeInt(restriction.rstrNode == null ? -1 : restriction.rstrNode.index);
+                out.writeInt(restriction.roadTo == null ? -1 : restriction.roadTo.roadID);
+                out.writeInt(restriction.nodeTo == null ? -1 : restriction.nodeTo.index);
+            }
+        }
+    }
+
+    /**
+     * This method reads a snapshot written by save() into the given graph, replacing
+     * its nodes, roads, segments, polygons, restrictions and road trie. The graph is
+     * left as it was if the snapshot can't be read.
+     * @param file
+     * @param graph
+     * @param withPolygons    true if polygons are to be loaded
+     * @param withRestrictions    true if restrictions are to be loaded
+     * @return    true if the snapshot was read, false if the file can't be read, is
+     *            not a snapshot, is corrupted, or was made from other optional files
+     */
+    public static boolean load(File file, Graph graph, boolean withPolygons, boolean withRestrictions) {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            System.out.println("Cannot read snapshot from " + file);
+            return false;
+        }
+
+        try {
+            if (in.getInt() != MAGIC) {
+                return false;
+            }
+            if (in.getInt() != inputs(withPolygons, withRestrictions)) {
+                System.out.println("Snapshot " + file + " was made from other data files");
+                return false;
+            }
+
+            int numNodes = readCount(in);
+            Node[] nodes = new Node[numNodes];
+            Map<Integer, Node> nodeMap = new HashMap<>(2 * numNodes);
+            for (int i = 0; i < numNodes; i++) {
+                int nodeID = in.getInt();
+                nodes[i] = new Node(nodeID, i, new Location(in.getDouble(), in.getDouble()));
+                nodeMap.put(nodeID, nodes[i]);
+            }
+
+            int numRoads = readCount(in);
+            Map<Integer, Road> roadMap = new HashMap<>(2 * numRoads);
+            RadixRoadTrie roadTries = new RadixRoadTrie();
+            for (int i = 0; i < numRoads; i++) {
+                Road road = new Road(in.getInt(), in.getInt(), readString(in), readString(in),
+                        in.get() != 0, in.getInt(), in.getDouble(), in.get() != 0, in.get() != 0,
+                        in.get() != 0);
+                roadMap.put(road.roadID, road);
+                roadTries.add(road.label + ", " + road.city, road);
+            }
+
+            int numSegments = readCount(in);
+            Set<Segment> segmentSet = new HashSet<>(2 * numSegments);
+            for (int i = 0; i < numSegments; i++) {
+                int roadID = in.getInt();
+                double length = in.getDouble();
+                Node start = nodes[in.getInt()];
+                Node end = nodes[in.getInt()];
+                int numCoords = readCount(in);
+                List<Location> coords = new ArrayList<>(numCoords + 2);
+                coords.add(start.location);
+                for (int j = 0; j < numCoords; j++) {
+                    coords.add(new Location(in.getDouble(), in.getDouble()));
+                }
+                coords.add(end.location);
+                Road road = roadMap.get(roadID);
+                if (road == null) {
+                    System.out.println("Snapshot " + file + " is corrupted: no road " + roadID);
+                    return false;
+                }
+                Segment seg = new Segment(roadID, road, length, start, end, coords);
+                segmentSet.add(seg);
+                road.roadSegments.add(seg);
+            }
+
+            int numPolygons = readCount(in);
+            Set<Polygon> polygonSet = new HashSet<>(2 * numPolygons);
+            for (int i = 0; i < numPolygons; i++) {
+                Integer type = readInteger(in);
+                String label = readString(in);
+                Integer endLevel = readInteger(in);
+                Integer cityIdx = readInteger(in);
+                int numLists = readCount(in);
+                Set<ArrayList<Location>> locations = new HashSet<>();
+                for (int j = 0; j < numLists; j++) {
+                    int size = readCount(in);
+                    ArrayList<Location> list = new ArrayList<>(size);
+                    for (int k = 0; k < size; k++) {
+                        list.add(new Location(in.getDouble(), in.getDouble()));
+                    }
+                    locations.add(list);
+                }
+                polygonSet.add(new Polygon(type, label, endLevel, cityIdx, locations));
+            }
+
+            int numRestrictions = readCount(in);
+            Set<Restriction> restrictions = new HashSet<>(2 * numRestrictions);
+            for (int i = 0; i < numRestrictions; i++) {
+                restrictions.add(new Restriction(nodeAt(nodes, in.getInt()), roadMap.get(in.getInt()),
+                        nodeAt(nodes, in.getInt()), roadMap.get(in.getInt()), nodeAt(nodes, in.getInt())));
+            }
+
+            graph.nodeMap = nodeMap;
+            graph.roadMap = roadMap;
+            graph.segmentSet = segmentSet;
+            graph.polygonSet = polygonSet;
+            graph.restrictions = restrictions;
+            graph.roadTries = roadTries;
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            System.out.println("Snapshot " + file + " is corrupted");
+            return false;
+        }
+    }
+
+    /**
+     * @param snapshot
+     * @param dataFiles    the data files the snapshot was made from, some may be null
+     * @return    true if the snapshot exists and is not older than any of the data files
+     */
+    public static boolean isUpToDate(File snapshot, File... dataFiles) {
+        if (!snapshot.exists()) {
+            return false;
+        }
+        for (File file : dataFiles) {
+            if (file != null && file.lastModified() > snapshot.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method converts the data files in a directory into a snapshot, saved in
+     * the same directory.
+     * @param args    the directory of the data files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: GraphSnapshot <data directory>");
+            return;
+        }
+        File dir = new File(args[0]);
+        File polygons = new File(dir, "polygon-shapes.mp");
+        File restrictions = new File(dir, "restrictions.tab");
+        File snapshot = new File(dir, FILENAME);
+        // make sure the data files are parsed, not an older snapshot
+        snapshot.delete();
+
+        File[] files = { new File(dir, "nodeID-lat-lon.tab"), new File(dir, "roadID-roadInfo.tab"),
+                new File(dir, "roadSeg-roadID-length-nodeID-nodeID-coords.tab"),
+                polygons.exists() ? polygons : null, restrictions.exists() ? restrictions : null };
+
+        long start = System.nanoTime();
+        Graph graph = new Graph();
+        graph.load(files[0], files[1], files[2], files[3], files[4]);
+        long parsed = System.nanoTime();
+        save(graph, snapshot, files[3] != null, files[4] != null);
+        System.out.printf("Wrote %s (%d bytes)%n", snapshot, snapshot.length());
+
+        // the same load again, now from the snapshot
+        long read = System.nanoTime();
+        new Graph().load(files[0], files[1], files[2], files[3], files[4]);
+        long end = System.nanoTime();
+        System.out.printf("Loading from the data files: %.0f ms, from the snapshot: %.0f ms%n",
+                (parsed - start) / 1e6, (end - read) / 1e6);
+    }
+
+    private static int inputs(boolean withPolygons, boolean withRestrictions) {
+        return (withPolygons ? WITH_POLYGONS : 0) | (withRestrictions ? WITH_RESTRICTIONS : 0);
+    }
+
+    /**
+     * @return    the number of items or bytes that follow, which can't be more than
+     *            there are bytes left
+     * @throws BufferUnderflowException    if the number is corrupted
+     */
+    private static int readCount(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static Node nodeAt(Node[] nodes, int index) {
+        return index < 0 ? null : nodes[index];
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(ByteBuffer in) {
+        return in.get() != 0 ? in.getInt() : null;
+    }
+}
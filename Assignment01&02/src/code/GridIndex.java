@@ -0,0 +1,212 @@
+package code;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This class represents a uniform grid index of items with a bounding box, such as
+ * segments and polygons, for finding the items that may overlap a rectangle, e.g.
+ * what is on screen.
+ *
+ * The bounding box of all items is cut into about as many cells as there are items,
+ * and each item is listed in every cell its box overlaps. A query only looks at the
+ * cells the rectangle overlaps, so it takes time in proportion to the size of the
+ * rectangle and what is in it, not to the number of items.
+ *
+ * An item overlapping several cells is only returned once: each query stamps the
+ * items it has returned with its own generation, as SearchSpace does. Each thread
+ * has its own stamps (see Scratch), like ScreenPoints, so queries from many threads,
+ * e.g. the tile renderers, run at the same time without locking.
+ *
+ * @param <T> the type of the items
+ * @author Hector
+ *
+ */
+public class GridIndex<T> {
+
+    // cells on each side, at most
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+
+    private final List<T> items;
+    private final double minX, minY, cellWidth, cellHeight;
+    private final int columns, rows;
+    // the items (by their position in items) in each cell, row by row
+    private final int[][] cells;
+    private final int[] cellSizes;
+    // the stamps and found items of each thread querying this index
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Constructor.
+     * @param items    the items to be indexed
+     * @param boundsOf    gives the bounding box of an item
+     */
+    public GridIndex(Collection<T> items, Function<T, Rectangle2D> boundsOf) {
+        this.items = new ArrayList<>(items);
+        int n = this.items.size();
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            bounds[i] = boundsOf.apply(this.items.get(i));
+            minX = Math.min(minX, bounds[i].getMinX());
+            minY = Math.min(minY, bounds[i].getMinY());
+            maxX = Math.max(maxX, bounds[i].getMaxX());
+            maxY = Math.max(maxY, bounds[i].getMaxY());
+        }
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        int side = (int) Math.min(MAX_CELLS_PER_SIDE, Math.max(1, Math.ceil(Math.sqrt(n))));
+        columns = side;
+        rows = side;
+        // a degenerate box still gets cells of some size
+        cellWidth = Math.max(maxX - minX, Double.MIN_NORMAL) / columns;
+        cellHeight = Math.max(maxY - minY, Double.MIN_NORMAL) / rows;
+
+        // count the items of each cell, then fill them in
+        cellSizes = new int[columns * rows];
+        for (int i = 0; i < n; i++) {
+            forEachCell(bounds[i], cell -> cellSizes[cell]++);
+        }
+        cells = new int[columns * rows][];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = new int[cellSizes[cell]];
+            cellSizes[cell] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            int item = i;
+            forEachCell(bounds[i], cell -> cells[cell][cellSizes[cell]++] = item);
+        }
+        scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+    }
+
+    /**
+     * This method finds all items whose bounding box may overlap the given rectangle.
+     * Items a bit outside of it may be returned too, but none overlapping it is left out.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return    a list of the items, in the order they were given to the constructor
+     */
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        forEach(minX, minY, maxX, maxY, result::add);
+        return result;
+    }
+
+    /**
+     * Same as query(), but hands the items to the given action one by one instead
+     * of making a list of them. Once the index has answered a query as big as this
+     * one on the calling thread, it allocates nothing.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param action    what to do with each item
+     */
+    public void forEach(double minX, double minY, double maxX, double maxY,
+            Consumer<? super T> action) {
+        int fromColumn = Math.max(0, column(minX)), toColumn = Math.min(columns - 1, column(maxX));
+        int fromRow = Math.max(0, row(minY)), toRow = Math.min(rows - 1, row(maxY));
+        if (fromColumn == 0 && fromRow == 0 && toColumn == columns - 1 && toRow == rows - 1) {
+            // every cell is overlapped, so there is nothing to look up
+            for (int i = 0; i < items.size(); i++) {
+                action.accept(items.get(i));
+            }
+            return;
+        }
+        Scratch own = scratch.get();
+        int[] stamps = own.stamps;
+        int generation = ++own.generation;
+        if (generation == 0) {
+            // the stamps have wrapped around, so they must be cleared for real
+            Arrays.fill(stamps, 0);
+            generation = own.generation = 1;
+        }
+        int[] found = own.found;
+        int numFound = 0;
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int cell = row * columns + column;
+                int[] cellItems = cells[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    int item = cellItems[i];
+                    if (stamps[item] != generation) {
+                        stamps[item] = generation;
+                        if (numFound == found.length) {
+                            found = own.found = Arrays.copyOf(found, 2 * numFound);
+                        }
+                        found[numFound++] = item;
+                    }
+                }
+            }
+        }
+        // keep the drawing order the same wherever the view is
+        Arrays.sort(found, 0, numFound);
+        for (int i = 0; i < numFound; i++) {
+            action.accept(items.get(found[i]));
+        }
+    }
+
+    /**
+     * @return    the number of items in the index
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * The scratch state of the queries of one thread. An action must not query the
+     * same index again, as that would overwrite the items still being handed out.
+     */
+    private static class Scratch {
+
+        final int[] stamps;
+        int generation;
+        // the items found by the current query, reused by the next ones
+        int[] found = new int[16];
+
+        Scratch(int numItems) {
+            stamps = new int[numItems];
+        }
+    }
+
+    private interface CellVisitor {
+        void visit(int cell);
+    }
+
+    private void forEachCell(Rectangle2D bounds, CellVisitor visitor) {
+        int fromColumn = clamp(column(bounds.getMinX()), columns);
+        int toColumn = clamp(column(bounds.getMaxX()), columns);
+        int fromRow = clamp(row(bounds.getMinY()), rows);
+        int toRow = clamp(row(bounds.getMaxY()), rows);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                visitor.visit(row * columns + column);
+            }
+        }
+    }
+
+    private int column(double x) {
+        double column = Math.floor((x - minX) / cellWidth);
+        return (int) Math.max(-1, Math.min(columns, column));
+    }
+
+    private int row(double y) {
+        double row = Math.floor((y - minY) / cellHeight);
+        return (int) Math.max(-1, Math.min(rows, row));
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+}
@@ -0,0 +1,210 @@
+package code;
+
+/**
+ * This class represents a binary min-heap of int indices (e.g. node indices),
+ * each of which is queued with a double priority. Unlike PriorityQueue, the heap
+ * remembers where every index sits, so that an index already in the heap can be
+ * found in O(1) and have its priority lowered in place (decrease-key) in O(log n).
+ *
+ * Indices must be in the range [0, capacity).
+ *
+ * @author Hector
+ *
+ */
+public class IndexedMinHeap {
+
+    // heap[i] is the index stored at heap position i
+    private final int[] heap;
+    // position[index] is the heap position of the index, or -1 if not in the heap
+    private final int[] position;
+    // priority[index] is the current priority of the index
+    private final double[] priority;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param capacity    the number of distinct indices this heap can hold
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        priority = new double[capacity];
+        for (int i = 0; i < capacity; i++) {
+            position[i] = -1;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return heap.length;
+    }
+
+    /**
+     * @param index
+     * @return    true if the given index is currently in the heap
+     */
+    public boolean contains(int index) {
+        return position[index] >= 0;
+    }
+
+    /**
+     * @param index    an index that is currently in the heap
+     * @return    the priority the index is queued with
+     */
+    public double priorityOf(int index) {
+        return priority[index];
+    }
+
+    /**
+     * This method adds an index that is not yet in the heap.
+     * @param index
+     * @param p    the priority of the index
+     */
+    public void insert(int index, double p) {
+        if (position[index] >= 0) {
+            throw new IllegalArgumentException("Index " + index + " is already in the heap");
+        }
+        priority[index] = p;
+        heap[size] = index;
+        position[index] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * This method lowers the priority of an index already in the heap. A priority
+     * that is not lower than the current one is ignored.
+     * @param index
+     * @param p    the new priority
+     */
+    public void decreaseKey(int index, double p) {
+        if (position[index] < 0) {
+            throw new IllegalArgumentException("Index " + index + " is not in the heap");
+        }
+        if (p < priority[index]) {
+            priority[index] = p;
+            siftUp(position[index]);
+        }
+    }
+
+    /**
+     * This method changes the priority of an index already in the heap, which
+     * may be either raised or lowered.
+     * @param index
+     * @param p    the new priority
+     */
+    public void update(int index, double p) {
+        if (position[index] < 0) {
+            throw new IllegalArgumentException("Index " + index + " is not in the heap");
+        }
+        double old = priority[index];
+        priority[index] = p;
+        if (p < old) {
+            siftUp(position[index]);
+        } else if (p > old) {
+            siftDown(position[index]);
+        }
+    }
+
+    /**
+     * This method inserts the index if it is not in the heap, or otherwise lowers
+     * its priority if the given one is lower.
+     * @param index
+     * @param p
+     */
+    public void insertOrDecrease(int index, double p) {
+        if (position[index] < 0) {
+            insert(index, p);
+        } else {
+            decreaseKey(index, p);
+        }
+    }
+
+    /**
+     * @return    the index with the lowest priority, without removing it
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * @return    the lowest priority in the heap
+     */
+    public double peekPriority() {
+        return priority[heap[0]];
+    }
+
+    /**
+     * This method removes and returns the index with the lowest priority.
+     * @return    the index with the lowest priority
+     */
+    public int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * This method empties the heap. It only touches the indices still queued,
+     * so it costs O(size) rather than O(capacity).
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int index = heap[pos];
+        double p = priority[index];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (priority[parent] <= p) {
+                break;
+            }
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = index;
+        position[index] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int index = heap[pos];
+        double p = priority[index];
+        int half = size >>> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && priority[heap[rightPos]] < priority[child]) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (p <= priority[child]) {
+                break;
+            }
+            heap[pos] = child;
+            position[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = index;
+        position[index] = pos;
+    }
+}
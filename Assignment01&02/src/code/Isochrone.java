@@ -0,0 +1,119 @@
+package code;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents an isochrone: everything that can be driven to from an
+ * origin within a time budget, as found by IsochroneUtil. It holds the nodes reached
+ * with the time to each, fastest first, and an outline around the roads reached.
+ *
+ * @author Hector
+ *
+ */
+public class Isochrone {
+
+    // translucent, so that the map can be seen through it
+    public static final Color FILL_COLOUR = new Color(255, 140, 0, 60);
+    public static final Color BOUNDARY_COLOUR = new Color(255, 140, 0);
+
+    final CompactGraph graph;
+    final int origin;
+    // the budget, in the time units of the cost model (hours)
+    final double budget;
+    // the indices of the nodes reached, and the time to each, fastest first
+    final int[] nodes;
+    final double[] times;
+    // the rings of the outline of the grid cells the roads reached run through,
+    // counter-clockwise around cells and clockwise around holes
+    final List<List<Location>> boundary;
+
+    Isochrone(CompactGraph graph, int origin, double budget, int[] nodes, double[] times,
+            List<List<Location>> boundary) {
+        this.graph = graph;
+        this.origin = origin;
+        this.budget = budget;
+        this.nodes = nodes;
+        this.times = times;
+        this.boundary = boundary;
+    }
+
+    public Node origin() {
+        return graph.node(origin);
+    }
+
+    public int numNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @param i    from 0 to numNodes() - 1
+     * @return    the index of the i-th fastest node to reach
+     */
+    public int node(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * @param i    from 0 to numNodes() - 1
+     * @return    the time to drive to the i-th fastest node to reach, in hours
+     */
+    public double time(int i) {
+        return times[i];
+    }
+
+    /**
+     * @return    a set of all nodes reached
+     */
+    public Set<Node> reachedNodes() {
+        Set<Node> reached = new HashSet<>();
+        for (int node : nodes) {
+            reached.add(graph.node(node));
+        }
+        return reached;
+    }
+
+    /**
+     * @return    the rings of the outline around everything reached, each a list
+     *            of vertices in order; the area inside an odd number of rings is in
+     */
+    public List<List<Location>> boundary() {
+        return boundary;
+    }
+
+    /**
+     * This method draws the outline of the isochrone, filled, leaving out its holes.
+     * @param g    the passed Graphics object
+     * @param currentOrigin    the current origin Location
+     * @param currentScale    the current scale
+     * @param d    the current dimension of the display panel
+     */
+    public void draw(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
+        int centrXCoord = (int) (d.getWidth() / 2);
+        int centrYCoord = (int) (d.getHeight() / 2);
+        Path2D.Double outline = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        for (List<Location> ring : boundary) {
+            ScreenPoints points = ScreenPoints.forThread().project(ring, currentOrigin, currentScale,
+                    centrXCoord, centrYCoord);
+            if (points.size < 3 || points.isOffScreen(d.width, d.height)) {
+                continue;
+            }
+            outline.moveTo(points.xs[0], points.ys[0]);
+            for (int i = 1; i < points.size; i++) {
+                outline.lineTo(points.xs[i], points.ys[i]);
+            }
+            outline.closePath();
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(FILL_COLOUR);
+        g2.fill(outline);
+        g2.setColor(BOUNDARY_COLOUR);
+        g2.draw(outline);
+    }
+}
@@ -0,0 +1,271 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This utility class provides methods to find isochrones: everything that can be
+ * driven to from an origin within a time budget.
+ *
+ * An isochrone comes from one DijkstraSweep from its origin over the time costs of
+ * CostModel (speed limit and road class), limited to the budget, so one-way roads,
+ * roads not for cars and turn restrictions are all honoured.
+ *
+ * The outline is the union of the cells of a grid that the reached part of the
+ * network runs through: every arc driven from a node reached, up to the point along
+ * it where the budget runs out if it's too long. Unlike a convex hull, this follows
+ * the roads, so it leaves out the sea, and land with no road that gets there in
+ * time. The cells are packed into longs and sorted, and the sides between a cell
+ * that is in and one that is not are linked into rings, so working out the outline
+ * makes no object per cell.
+ *
+ * Isochrones from many origins are independent of each other, so they are found in
+ * parallel on a fork-join pool with a RangeTask, as RouteMatrixUtil does: the origins
+ * are split in halves until a task is small enough, and each task keeps one sweep,
+ * and one set of arrays for the nodes and cells reached, for all its origins.
+ *
+ * @author Hector
+ *
+ */
+public class IsochroneUtil {
+
+    // the fewest origins a task is cut down to
+    private static final int MIN_ORIGINS_PER_TASK = 2;
+    // the side of a grid cell, in kilometres
+    private static final double CELL_SIZE = 0.2;
+    // how far apart the points looked at along an arc are, so that no cell it runs
+    // through is missed but at a corner
+    private static final double STEP = CELL_SIZE / 4;
+    // the directions of the sides of a cell, counter-clockwise from east, as x and y
+    // steps
+    private static final int[] DX = { 1, 0, -1, 0 };
+    private static final int[] DY = { 0, 1, 0, -1 };
+    // the turns an outline tries at a corner, left first, as changes of direction
+    private static final int[] TURNS = { 1, 0, 3 };
+
+    /**
+     * This method finds everything reachable from the given origin within the given
+     * time.
+     * @param graph    the compact form of the graph
+     * @param restrictions
+     * @param origin    the index of the origin node
+     * @param budget    the time budget, in hours
+     * @return    the isochrone of the origin
+     */
+    public static Isochrone computeIsochrone(CompactGraph graph, TurnRestrictions restrictions, int origin,
+            double budget) {
+        return new Reach(graph, restrictions).run(origin, budget);
+    }
+
+    /**
+     * This method finds everything reachable from each of the given origins within
+     * the given time.
+     * @param graph    the compact form of the graph
+     * @param restrictions
+     * @param origins    the indices of the origin nodes
+     * @param budget    the time budget, in hours
+     * @param pool    the pool to run the sweeps on
+     * @return    the isochrone of each origin
+     */
+    public static Isochrone[] computeIsochrones(CompactGraph graph, TurnRestrictions restrictions,
+            int[] origins, double budget, ForkJoinPool pool) {
+        Isochrone[] isochrones = new Isochrone[origins.length];
+        if (origins.length == 0) {
+            return isochrones;
+        }
+        int grain = Math.max(MIN_ORIGINS_PER_TASK, origins.length / (4 * pool.getParallelism()));
+        pool.invoke(new RangeTask(0, origins.length, grain, (from, to) -> {
+            Reach reach = new Reach(graph, restrictions);
+            for (int i = from; i < to; i++) {
+                isochrones[i] = reach.run(origins[i], budget);
+            }
+        }));
+        return isochrones;
+    }
+
+    /**
+     * What a sweep from an origin has reached so far: the nodes, in order of time,
+     * and the cells of the outline. Its arrays are reused from one origin to the
+     * next.
+     */
+    private static class Reach implements DijkstraSweep.Visitor {
+
+        private final CompactGraph graph;
+        private final DijkstraSweep sweep;
+
+        // the nodes reached so far and their times, and the cells of the outline,
+        // possibly more than once each
+        private final int[] nodes;
+        private final double[] times;
+        private int numReached;
+        private long[] cells;
+        private int numCells;
+        private double budget;
+
+        Reach(CompactGraph graph, TurnRestrictions restrictions) {
+            this.graph = graph;
+            sweep = new DijkstraSweep(graph, restrictions, false);
+            nodes = new int[graph.numNodes()];
+            times = new double[graph.numNodes()];
+            cells = new long[64];
+        }
+
+        Isochrone run(int origin, double budget) {
+            this.budget = budget;
+            numReached = 0;
+            numCells = 0;
+            sweep.run(origin, budget, this);
+            return new Isochrone(graph, origin, budget, Arrays.copyOf(nodes, numReached),
+                    Arrays.copyOf(times, numReached), outline());
+        }
+
+        @Override
+        public boolean settled(int node, double cost) {
+            nodes[numReached] = node;
+            times[numReached++] = cost;
+            addCell(graph.xs[node], graph.ys[node]);
+            return true;
+        }
+
+        @Override
+        public void driven(int arc, double cost) {
+            int node = graph.source(arc), target = graph.targets[arc];
+            // the budget may run out part of the way along the arc
+            double c = graph.cost(arc, false);
+            double t = cost + c <= budget ? 1 : (budget - cost) / c;
+            addArc(graph.xs[node], graph.ys[node], graph.xs[target], graph.ys[target], t);
+        }
+
+        /**
+         * This method adds the cells that the first t of the way from (x0, y0) to
+         * (x1, y1) runs through.
+         */
+        private void addArc(double x0, double y0, double x1, double y1, double t) {
+            double dx = t * (x1 - x0), dy = t * (y1 - y0);
+            int steps = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / STEP);
+            for (int i = 1; i <= steps; i++) {
+                addCell(x0 + dx * i / steps, y0 + dy * i / steps);
+            }
+        }
+
+        private void addCell(double x, double y) {
+            long cell = cell((int) Math.floor(x / CELL_SIZE), (int) Math.floor(y / CELL_SIZE));
+            // points along an arc are mostly in the cell of the point before
+            if (numCells > 0 && cells[numCells - 1] == cell) {
+                return;
+            }
+            if (numCells == cells.length) {
+                cells = Arrays.copyOf(cells, 2 * numCells);
+            }
+            cells[numCells++] = cell;
+        }
+
+        /**
+         * This method works out the outline of the cells added. Each side of a cell
+         * that has no cell beyond it is a step along the outline, going
+         * counter-clockwise around the cell; steps are linked end to start into
+         * rings, turning left where two cells only touch at a corner, so that rings
+         * never cross.
+         * @return    the rings of the outline: counter-clockwise around the cells,
+         *            clockwise around holes
+         */
+        private List<List<Location>> outline() {
+            Arrays.sort(cells, 0, numCells);
+            int size = 0;
+            for (int i = 0; i < numCells; i++) {
+                if (size == 0 || cells[i] != cells[size - 1]) {
+                    cells[size++] = cells[i];
+                }
+            }
+            numCells = size;
+            if (numCells == 0) {
+                return new ArrayList<>();
+            }
+
+            // the corners of cells are numbered across a box around them
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < numCells; i++) {
+                minX = Math.min(minX, cellX(cells[i]));
+                minY = Math.min(minY, cellY(cells[i]));
+                maxY = Math.max(maxY, cellY(cells[i]));
+            }
+            long height = maxY - minY + 2L;
+
+            // a step is the corner it starts from and its direction, as corner * 4 +
+            // direction, so that sorting puts the steps from a corner together
+            long[] steps = new long[4 * numCells];
+            int numSteps = 0;
+            for (int i = 0; i < numCells; i++) {
+                int x = cellX(cells[i]), y = cellY(cells[i]);
+                for (int dir = 0; dir < 4; dir++) {
+                    // the side going dir has the cell on its left, and the cell beyond
+                    // it to its right
+                    int right = (dir + 3) % 4;
+                    if (!hasCell(x + DX[right], y + DY[right])) {
+                        // the corner the side starts from, counter-clockwise
+                        int cornerX = x + (dir == 1 || dir == 2 ? 1 : 0);
+                        int cornerY = y + (dir >= 2 ? 1 : 0);
+                        steps[numSteps++] = ((cornerX - minX) * height + cornerY - minY) << 2 | dir;
+                    }
+                }
+            }
+            Arrays.sort(steps, 0, numSteps);
+
+            List<List<Location>> rings = new ArrayList<>();
+            boolean[] used = new boolean[numSteps];
+            int[] ringSteps = new int[numSteps];
+            for (int first = 0; first < numSteps; first++) {
+                if (used[first]) {
+                    continue;
+                }
+                int length = 0;
+                for (int step = first; !used[step];) {
+                    used[step] = true;
+                    ringSteps[length++] = step;
+                    long corner = steps[step] >>> 2;
+                    int dir = (int) (steps[step] & 3);
+                    long next = corner + DX[dir] * height + DY[dir];
+                    // a ring can't go back the way it came
+                    for (int turn : TURNS) {
+                        int found = Arrays.binarySearch(steps, 0, numSteps, next << 2 | (dir + turn) % 4);
+                        if (found >= 0) {
+                            step = found;
+                            break;
+                        }
+                    }
+                }
+                // only the corners where the ring turns are kept
+                List<Location> ring = new ArrayList<>();
+                for (int i = 0; i < length; i++) {
+                    long step = steps[ringSteps[i]];
+                    if ((step & 3) != (steps[ringSteps[(i + length - 1) % length]] & 3)) {
+                        long corner = step >>> 2;
+                        ring.add(new Location((minX + corner / height) * CELL_SIZE,
+                                (minY + corner % height) * CELL_SIZE));
+                    }
+                }
+                rings.add(ring);
+            }
+            return rings;
+        }
+
+        private boolean hasCell(int x, int y) {
+            return Arrays.binarySearch(cells, 0, numCells, cell(x, y)) >= 0;
+        }
+
+        // packs a cell into a long; y is masked so that a negative y can't spill into x
+        private static long cell(int x, int y) {
+            return (long) x << 32 | (y & 0xffffffffL);
+        }
+
+        private static int cellX(long cell) {
+            return (int) (cell >> 32);
+        }
+
+        private static int cellY(long cell) {
+            return (int) cell;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * This class represents a landmark (ALT) heuristic for A*. A few landmark nodes are
+ * picked far apart from each other, and the cost from each landmark to every node
+ * and from every node to each landmark is worked out in advance. By the triangle
+ * inequality, for any landmark L:
+ *
+ *     cost(v, t) >= cost(L, t) - cost(L, v)
+ *     cost(v, t) >= cost(v, L) - cost(t, L)
+ *
+ * so the biggest of these differences is a lower bound of the cost from v to t,
+ * which is usually much tighter than the euclidean one, especially for time.
+ *
+ * Turn restrictions only make paths more expensive, so the bounds still hold
+ * when they are honoured.
+ *
+ * The tables can be saved to and loaded from a file, so that they don't need to
+ * be worked out at every startup.
+ *
+ * @author Hector
+ *
+ */
+public class Landmarks implements CostModel.Heuristic {
+
+    // the default number of landmarks
+    public static final int DEFAULT_NUM_LANDMARKS = 8;
+
+    // the file format, at the beginning of a saved file
+    private static final int MAGIC = 0x4c4d4b31;  // "LMK1"
+
+    private final CompactGraph graph;
+    private final boolean distanceFirst;
+    private final int[] landmarks;
+    // fromLandmark[i][v] is the cost from landmark i to node v,
+    // toLandmark[i][v] is the cost from node v to landmark i
+    private final double[][] fromLandmark;
+    private final double[][] toLandmark;
+
+    /**
+     * Constructor. Picks the landmarks and works out the tables.
+     * @param graph    the compact form of the graph
+     * @param numLandmarks    the number of landmarks to pick
+     * @param distanceFirst    true for the distance cost model, false for time
+     */
+    public Landmarks(CompactGraph graph, int numLandmarks, boolean distanceFirst) {
+        this.graph = graph;
+        this.distanceFirst = distanceFirst;
+        int k = Math.min(numLandmarks, graph.numNodes());
+        landmarks = new int[k];
+        fromLandmark = new double[k][];
+        toLandmark = new double[k][];
+
+        /*
+         * Farthest selection: the first landmark is the node farthest from a node
+         * of the biggest component, and each next one is the node whose cost from
+         * its nearest landmark is the biggest.
+         */
+        if (k == 0) {
+            return;
+        }
+        double[] nearest = dijkstra(largestComponentNode(), false);
+        for (int i = 0; i < k; i++) {
+            int farthest = 0;
+            for (int v = 0; v < nearest.length; v++) {
+                if (nearest[v] != Double.POSITIVE_INFINITY
+                        && (nearest[farthest] == Double.POSITIVE_INFINITY || nearest[v] > nearest[farthest])) {
+                    farthest = v;
+                }
+            }
+            landmarks[i] = farthest;
+            fromLandmark[i] = dijkstra(farthest, false);
+            toLandmark[i] = dijkstra(farthest, true);
+            if (i == 0) {
+                nearest = fromLandmark[0].clone();
+            } else {
+                for (int v = 0; v < nearest.length; v++) {
+                    nearest[v] = Math.min(nearest[v], fromLandmark[i][v]);
+                }
+            }
+        }
+    }
+
+    private Landmarks(CompactGraph graph, boolean distanceFirst, int[] landmarks, double[][] fromLandmark,
+            double[][] toLandmark) {
+        this.graph = graph;
+        this.distanceFirst = distanceFirst;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * @return    a node of the biggest set of connected nodes, ignoring directions
+     */
+    private int largestComponentNode() {
+        int numNodes = graph.numNodes();
+        int[] component = new int[numNodes];
+        int[] queue = new int[numNodes];
+        int best = 0, bestSize = 0, label = 0;
+        for (int start = 0; start < numNodes; start++) {
+            if (component[start] != 0) {
+                continue;
+            }
+            label++;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            component[start] = label;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                    int v = graph.targets[arc];
+                    if (component[v] == 0) {
+                        component[v] = label;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            if (tail > bestSize) {
+                bestSize = tail;
+                best = start;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This method works out the cost from the source to every node, or from every
+     * node to the source if backward is true.
+     * @param source
+     * @param backward
+     * @return    costs indexed by node index, infinity for nodes that can't be reached
+     */
+    private double[] dijkstra(int source, boolean backward) {
+        int numNodes = graph.numNodes();
+        double[] cost = new double[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            cost[i] = Double.POSITIVE_INFINITY;
+        }
+        IndexedMinHeap fringe = new IndexedMinHeap(numNodes);
+        cost[source] = 0;
+        fringe.insert(source, 0);
+        while (!fringe.isEmpty()) {
+            int u = fringe.poll();
+            for (int arc = graph.offsets[u]; arc < graph.offsets[u + 1]; arc++) {
+                if (backward ? !graph.canDriveReversed(arc) : !graph.canDrive(arc)) {
+                    continue;
+                }
+                int v = graph.targets[arc];
+                double c = cost[u] + graph.cost(arc, distanceFirst);
+                if (c < cost[v]) {
+                    cost[v] = c;
+                    fringe.insertOrDecrease(v, c);
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * The estimate is the best of the landmark bounds and the euclidean heuristic.
+     */
+    @Override
+    public double estimate(int node, int target) {
+        double best = graph.heuristicCost(node, target, distanceFirst);
+        for (int i = 0; i < landmarks.length; i++) {
+            double[] from = fromLandmark[i];
+            double[] to = toLandmark[i];
+            // a landmark that can't reach (or be reached from) either node tells nothing
+            if (from[node] != Double.POSITIVE_INFINITY && from[target] != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, from[target] - from[node]);
+            }
+            if (to[node] != Double.POSITIVE_INFINITY && to[target] != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, to[node] - to[target]);
+            }
+        }
+        return best;
+    }
+
+    public int numLandmarks() {
+        return landmarks.length;
+    }
+
+    /**
+     * This method saves the landmarks and their tables to the given file.
+     * @param file
+     */
+    public void save(File file) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint(graph));
+            out.writeBoolean(distanceFirst);
+            out.writeInt(graph.numNodes());
+            out.writeInt(landmarks.length);
+            for (int i = 0; i < landmarks.length; i++) {
+                out.writeInt(landmarks[i]);
+                for (double c : fromLandmark[i]) {
+                    out.writeDouble(c);
+                }
+                for (double c : toLandmark[i]) {
+                    out.writeDouble(c);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot save landmarks to " + file);
+        }
+    }
+
+    /**
+     * This method loads landmarks saved by save().
+     * @param file
+     * @param graph    the compact form of the graph the landmarks are for
+     * @param distanceFirst    the cost model the landmarks are for
+     * @return    the landmarks, or null if the file doesn't exist, can't be read,
+     *            or was saved for another graph or cost model
+     */
+    public static Landmarks load(File file, CompactGraph graph, boolean distanceFirst) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != fingerprint(graph)
+                    || in.readBoolean() != distanceFirst || in.readInt() != graph.numNodes()) {
+                return null;
+            }
+            int k = in.readInt();
+            int numNodes = graph.numNodes();
+            int[] landmarks = new int[k];
+            double[][] fromLandmark = new double[k][numNodes];
+            double[][] toLandmark = new double[k][numNodes];
+            for (int i = 0; i < k; i++) {
+                landmarks[i] = in.readInt();
+                for (int v = 0; v < numNodes; v++) {
+                    fromLandmark[i][v] = in.readDouble();
+                }
+                for (int v = 0; v < numNodes; v++) {
+                    toLandmark[i][v] = in.readDouble();
+                }
+            }
+            return new Landmarks(graph, distanceFirst, landmarks, fromLandmark, toLandmark);
+        } catch (FileNotFoundException e) {
+            System.out.println("File " + file + " Not Found");
+        } catch (IOException e) {
+            System.out.println("Cannot read landmarks from " + file);
+        }
+        return null;
+    }
+
+    /**
+     * This method loads the landmarks from the given file if it was saved for this
+     * graph, or otherwise works them out and saves them to the file.
+     * @param file
+     * @param graph
+     * @param distanceFirst
+     * @return    the landmarks
+     */
+    public static Landmarks loadOrCompute(File file, CompactGraph graph, boolean distanceFirst) {
+        Landmarks landmarks = load(file, graph, distanceFirst);
+        if (landmarks == null) {
+            landmarks = new Landmarks(graph, DEFAULT_NUM_LANDMARKS, distanceFirst);
+            landmarks.save(file);
+        }
+        return landmarks;
+    }
+
+    /**
+     * @param graph
+     * @return    a hash of node IDs, arc targets and arc costs, to tell whether a
+     *            saved file was made for the same graph
+     */
+    private static long fingerprint(CompactGraph graph) {
+        long hash = graph.numArcs();
+        for (int v = 0; v < graph.numNodes(); v++) {
+            hash = 31 * hash + graph.nodes[v].nodeID;
+            for (int arc = graph.offsets[v]; arc < graph.offsets[v + 1]; arc++) {
+                hash = 31 * hash + graph.targets[arc];
+                hash = 31 * hash + graph.flags[arc];
+                hash = 31 * hash + Double.doubleToLongBits(graph.times[arc]);
+                hash = 31 * hash + Double.doubleToLongBits(graph.lengths[arc]);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,159 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This utility class provides simplified geometry for drawing zoomed-out views.
+ *
+ * The scales are split into zoom bands. For each band, a line is simplified with the
+ * Douglas-Peucker algorithm, keeping the points that are needed to stay within half a
+ * pixel of the real line at the biggest scale of the band, so the simplified line
+ * looks the same on screen but has far fewer points to convert and draw. From
+ * EXACT_SCALE on, the real geometry is drawn.
+ *
+ * Below MINOR_FEATURE_SCALE, minor features aren't drawn at all (unless highlighted):
+ * residential streets, unpaved roads and walkways (by the Polish map format road
+ * types), the polygons that are only meant for the most detailed levels (EndLevel 1
+ * or less), and intersections.
+ *
+ * @author Hector
+ *
+ */
+public class LevelOfDetailUtil {
+
+    // the biggest scale (exclusive) of each zoom band
+    private static final double[] BAND_SCALES = { 10, 40, 160 };
+    public static final int NUM_BANDS = BAND_SCALES.length;
+    public static final double EXACT_SCALE = BAND_SCALES[NUM_BANDS - 1];
+    // how far, in pixels, a simplified line may be from the real one
+    private static final double PIXEL_TOLERANCE = 0.5;
+
+    public static final double MINOR_FEATURE_SCALE = BAND_SCALES[0];
+    // road types of residential streets, alleys, unpaved roads and walkways
+    private static final int[] MINOR_ROAD_TYPES = { 0x06, 0x07, 0x0a, 0x16 };
+    // polygons whose end level is at most this are only shown when zoomed in
+    private static final int MINOR_POLYGON_END_LEVEL = 1;
+
+    /**
+     * @param scale    the current scale
+     * @return    the zoom band of the scale, or -1 if the real geometry should be drawn
+     */
+    public static int band(double scale) {
+        for (int i = 0; i < NUM_BANDS; i++) {
+            if (scale < BAND_SCALES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method simplifies a line for every zoom band.
+     * @param line
+     * @return    a list of NUM_BANDS lines, the i-th being the line simplified for
+     *            band i. A band whose simplified line would be the same as the one of
+     *            the next band (or the real one) shares it, rather than having a copy
+     */
+    public static List<List<Location>> simplifyForBands(List<Location> line) {
+        List<List<Location>> bands = new ArrayList<>(NUM_BANDS);
+        for (int i = 0; i < NUM_BANDS; i++) {
+            bands.add(null);
+        }
+        // from the most detailed band down, so that equal lines can be shared
+        List<Location> finer = line;
+        for (int i = NUM_BANDS - 1; i >= 0; i--) {
+            List<Location> simplified = simplify(line, PIXEL_TOLERANCE / BAND_SCALES[i]);
+            finer = simplified.size() == finer.size() ? finer : simplified;
+            bands.set(i, finer);
+        }
+        return bands;
+    }
+
+    /**
+     * This method simplifies a line with the Douglas-Peucker algorithm. Both ends of
+     * the line are always kept.
+     * @param line
+     * @param tolerance    how far the simplified line may be from the real one
+     * @return    the points of the line that are kept, in order
+     */
+    public static List<Location> simplify(List<Location> line, double tolerance) {
+        int n = line.size();
+        if (n <= 2) {
+            return line;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        // stack of ranges to be looked at, instead of recursion, as lines can be long
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double toleranceSq = tolerance * tolerance;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthestSq = toleranceSq;
+            for (int i = first + 1; i < last; i++) {
+                double distanceSq = distanceSq(line.get(i), line.get(first), line.get(last));
+                if (distanceSq > farthestSq) {
+                    farthestSq = distanceSq;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        List<Location> simplified = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                simplified.add(line.get(i));
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * @param road
+     * @return    true if the road is too minor to be drawn when zoomed out
+     */
+    public static boolean isMinor(Road road) {
+        if (road == null) {
+            return false;
+        }
+        for (int type : MINOR_ROAD_TYPES) {
+            if (road.type == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param polygon
+     * @return    true if the polygon is too minor to be drawn when zoomed out
+     */
+    public static boolean isMinor(Polygon polygon) {
+        return polygon.endLevel != null && polygon.endLevel <= MINOR_POLYGON_END_LEVEL;
+    }
+
+    /**
+     * @return    the squared distance from p to the line segment from a to b
+     */
+    private static double distanceSq(Location p, Location a, Location b) {
+        double dx = b.x - a.x, dy = b.y - a.y;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((p.x - a.x) * dx + (p.y - a.y) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = a.x + t * dx - p.x, ey = a.y + t * dy - p.y;
+        return ex * ex + ey * ey;
+    }
+}
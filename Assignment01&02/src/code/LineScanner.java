@@ -0,0 +1,202 @@
+package code;
+
+/**
+ * This class reads the fields of one line of a data file, one after another, without
+ * splitting the line into an array of strings. Numbers are parsed straight from the
+ * characters of the line.
+ *
+ * Fields are separated by a single separator character, so an empty field between
+ * two separators still counts. Round brackets around a number are skipped, so that
+ * the "(lat,lon),(lat,lon)" points of the polygon file can be read with ',' as the
+ * separator.
+ *
+ * @author Hector
+ *
+ */
+public class LineScanner {
+
+    // 10^0 to 10^22, all exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    // the biggest integer up to which every long is exactly a double
+    private static final long MAX_EXACT = 1L << 53;
+
+    private final String line;
+    private final char separator;
+    private int pos;
+
+    /**
+     * Constructor.
+     * @param line    the line to be read
+     * @param separator    the character between fields
+     */
+    public LineScanner(String line, char separator) {
+        this(line, separator, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param line    the line to be read
+     * @param separator    the character between fields
+     * @param from    the position of the first field
+     */
+    public LineScanner(String line, char separator, int from) {
+        this.line = line;
+        this.separator = separator;
+        this.pos = from;
+    }
+
+    /**
+     * @return    true if there is at least one more field
+     */
+    public boolean hasNext() {
+        return pos < line.length();
+    }
+
+    /**
+     * This method reads the next field as a string.
+     * @return    the next field
+     */
+    public String nextString() {
+        int end = line.indexOf(separator, pos);
+        if (end < 0) {
+            end = line.length();
+        }
+        String field = line.substring(pos, end);
+        pos = end + 1;
+        return field;
+    }
+
+    /**
+     * This method skips the next field.
+     */
+    public void skip() {
+        int end = line.indexOf(separator, pos);
+        pos = end < 0 ? line.length() : end + 1;
+    }
+
+    /**
+     * This method reads the next field as an int.
+     * @return    the next field
+     * @throws NumberFormatException    if the field is not an int
+     */
+    public int nextInt() {
+        skipBracket('(');
+        int start = pos;
+        int length = line.length();
+        boolean negative = false;
+        if (pos < length && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < length) {
+            int digit = line.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = 10 * value + digit;
+            digits++;
+            pos++;
+        }
+        if (digits == 0 || digits > 10 || value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+            throw new NumberFormatException("For input string: \"" + fieldFrom(start) + "\"");
+        }
+        endField(start);
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * This method reads the next field as a double. Plain decimals, which is all the
+     * data files have, are parsed here; anything else (an exponent, or more digits
+     * than a double holds exactly) falls back to Double.parseDouble(), so the result
+     * is always the same as Double.parseDouble() would give.
+     * @return    the next field
+     * @throws NumberFormatException    if the field is not a number
+     */
+    public double nextDouble() {
+        skipBracket('(');
+        int start = pos;
+        int length = line.length();
+        boolean negative = false;
+        if (pos < length && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean exact = true;
+        boolean point = false;
+        while (pos < length) {
+            char c = line.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (mantissa < MAX_EXACT) {
+                    mantissa = 10 * mantissa + (c - '0');
+                } else {
+                    exact = false;
+                }
+                digits++;
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (pos < length && line.charAt(pos) != separator && line.charAt(pos) != ')') {
+            // an exponent, or something that is not a number at all
+            exact = false;
+            while (pos < length && line.charAt(pos) != separator && line.charAt(pos) != ')') {
+                pos++;
+            }
+        }
+
+        double value;
+        if (digits > 0 && exact && mantissa <= MAX_EXACT && fractionDigits < POWERS_OF_TEN.length) {
+            // both are exact, so the division is correctly rounded, like parseDouble
+            value = mantissa / POWERS_OF_TEN[fractionDigits];
+            if (negative) {
+                value = -value;
+            }
+        } else {
+            value = Double.parseDouble(line.substring(start, pos));
+        }
+        endField(start);
+        return value;
+    }
+
+    /**
+     * This method moves past the end of the field that started at start, which
+     * must end right here (after an optional closing bracket).
+     */
+    private void endField(int start) {
+        skipBracket(')');
+        if (pos < line.length()) {
+            if (line.charAt(pos) != separator) {
+                throw new NumberFormatException("For input string: \"" + fieldFrom(start) + "\"");
+            }
+            pos++;
+        }
+    }
+
+    private void skipBracket(char bracket) {
+        if (pos < line.length() && line.charAt(pos) == bracket) {
+            pos++;
+        }
+    }
+
+    private String fieldFrom(int start) {
+        int end = line.indexOf(separator, start);
+        return line.substring(start, end < 0 ? line.length() : end);
+    }
+}
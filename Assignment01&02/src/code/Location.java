@@ -60,9 +60,21 @@ public class Location {
      *            scale
      */
     public Point asPoint(Location origin, double scale) {
-        int u = (int) ((x - origin.x) * scale);
-        int v = (int) ((origin.y - y) * scale);
-        return new Point(u, v);
+        return new Point(screenX(origin, scale), screenY(origin, scale));
+    }
+
+    /**
+     * Returns the x of the Point asPoint() would make, without making it.
+     */
+    public int screenX(Location origin, double scale) {
+        return (int) ((x - origin.x) * scale);
+    }
+
+    /**
+     * Returns the y of the Point asPoint() would make, without making it.
+     */
+    public int screenY(Location origin, double scale) {
+        return (int) ((origin.y - y) * scale);
     }
 
     /**
@@ -0,0 +1,278 @@
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class measures the main operations on a map: parsing its data files, reading
+ * it from a snapshot, finding routes by distance and by time, finding routes again
+ * from the route cache, searching roads by prefix, finding the node clicked on, and
+ * finding articulation points. For each one it reports the throughput, the latency
+ * at several percentiles, and how much memory is allocated per operation.
+ * After parsing, it also reports how long the last parse spent on each file.
+ *
+ * The queries come from a fixed seed, so that two runs (say before and after a
+ * change) replay exactly the same ones. Every operation is run for a while before
+ * it's measured, so that the JIT has compiled it. Nothing depends on files left next
+ * to the data files by earlier runs: the data files are always parsed, the snapshot
+ * read is one written to a temporary file first, and the landmarks are worked out
+ * afresh rather than read from a file.
+ *
+ * Every operation gives back a digest of its result, made from ids rather than
+ * hash codes, and the digests of each batch are added up and printed with it, so
+ * that the JIT can't drop work whose result isn't used, and so that two runs can be
+ * checked to have found the same things.
+ *
+ * The data directory of the large map doesn't come with its segment file
+ * (roadSeg-roadID-length-nodeID-nodeID-coords.tab), as it is too big for the
+ * repository; copy it there from the full data set before measuring it.
+ *
+ * @author Hector
+ *
+ */
+public class MapBenchmark {
+
+    private static final long SEED = 261;
+    private static final int LOADS = 3;
+    private static final int ROUTES = 500;
+    private static final int PREFIXES = 5000;
+    private static final int CLICKS = 20000;
+    private static final int ARTICULATIONS = 10;
+    // how far from a node a click lands, in kilometres
+    private static final double CLICK_JITTER = 0.05;
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    /**
+     * An operation to measure; i is the number of the run, from 0. It returns a
+     * digest of its result.
+     */
+    private interface Operation {
+        int run(int i);
+    }
+
+    private static com.sun.management.ThreadMXBean allocations;
+
+    private static final String NODES_FILENAME = "nodeID-lat-lon.tab";
+    private static final String ROADS_FILENAME = "roadID-roadInfo.tab";
+    private static final String SEGMENTS_FILENAME = "roadSeg-roadID-length-nodeID-nodeID-coords.tab";
+
+    /**
+     * @param args    the directories of the data files, e.g. data/small data/large,
+     *                and optionally, last, how many times to repeat each batch of
+     *                operations
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: MapBenchmark <data directory>... [repeats]");
+            System.out.println("The large map needs " + SEGMENTS_FILENAME
+                    + " copied into its directory from the full data set.");
+            System.exit(1);
+        }
+        int repeats = 1;
+        int numDirs = args.length;
+        if (args[args.length - 1].matches("\\d+")) {
+            repeats = Integer.parseInt(args[args.length - 1]);
+            numDirs--;
+        }
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // allocation counting is only offered by some JVMs
+        allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+
+        // check every directory first, so that a long run doesn't fail half way
+        for (int d = 0; d < numDirs; d++) {
+            File dir = new File(args[d]);
+            for (String name : new String[] { NODES_FILENAME, ROADS_FILENAME, SEGMENTS_FILENAME }) {
+                if (!new File(dir, name).isFile()) {
+                    fail("Missing " + new File(dir, name)
+                            + (name.equals(SEGMENTS_FILENAME) ? "; copy it from the full data set" : ""));
+                }
+            }
+        }
+        for (int d = 0; d < numDirs; d++) {
+            File dir = new File(args[d]);
+            System.out.println(dir + ":");
+            run(dir, repeats);
+        }
+    }
+
+    private static void run(File dir, int repeats) throws IOException {
+        File nodeFile = new File(dir, NODES_FILENAME), roadFile = new File(dir, ROADS_FILENAME);
+        File segmentFile = new File(dir, SEGMENTS_FILENAME);
+        File polygons = new File(dir, "polygon-shapes.mp");
+        File restrictions = new File(dir, "restrictions.tab");
+        File polygonFile = polygons.exists() ? polygons : null;
+        File restrictionFile = restrictions.exists() ? restrictions : null;
+
+        Graph[] loaded = new Graph[1];
+        measure("parse", 1, LOADS, i -> {
+            Graph graph = new Graph();
+            graph.parse(nodeFile, roadFile, segmentFile, polygonFile, restrictionFile);
+            graph.build();
+            loaded[0] = graph;
+            return graph.nodeMap.size();
+        });
+        Graph graph = loaded[0];
+        if (graph.nodeMap.isEmpty() || graph.segmentSet.isEmpty()) {
+            fail("Cannot load the map in " + dir);
+        }
+        // how long the last parse spent on each file; they are read at the same time,
+        // so these overlap rather than add up to the parse
+        Map<File, Long> loadTimes = graph.getLoadTimes();
+        for (File file : new File[] { nodeFile, roadFile, segmentFile, polygonFile, restrictionFile }) {
+            if (file != null && loadTimes.containsKey(file)) {
+                System.out.println(String.format("    %-48s %8.1f ms", file.getName(),
+                        loadTimes.get(file) / 1e6));
+            }
+        }
+
+        File snapshot = File.createTempFile("map-benchmark", ".bin");
+        snapshot.deleteOnExit();
+        GraphSnapshot.save(graph, snapshot, polygonFile != null, restrictionFile != null);
+        measure("snapshot load", 1, LOADS, i -> {
+            Graph read = new Graph();
+            if (!GraphSnapshot.load(snapshot, read, polygonFile != null, restrictionFile != null)) {
+                fail("Cannot read the snapshot of " + dir);
+            }
+            read.build();
+            return read.nodeMap.size();
+        });
+        snapshot.delete();
+
+        // worked out here rather than read from a file, so that routes by time are
+        // always found with the same landmarks
+        graph.timeLandmarks = new Landmarks(graph.compactGraph, Landmarks.DEFAULT_NUM_LANDMARKS, false);
+
+        Random random = new Random(SEED);
+        List<Node> nodes = new ArrayList<>(graph.nodeMap.values());
+        // the nodes come out of a hash map, so sort them to get the same ones each run
+        nodes.sort((a, b) -> Integer.compare(a.nodeID, b.nodeID));
+        // roads with no name can't be searched for by prefix
+        List<Road> roads = new ArrayList<>();
+        for (Road road : graph.roadMap.values()) {
+            if (!road.label.isEmpty()) {
+                roads.add(road);
+            }
+        }
+        roads.sort((a, b) -> Integer.compare(a.roadID, b.roadID));
+        if (roads.isEmpty()) {
+            fail("No named roads in " + dir);
+        }
+
+        Node[] starts = new Node[ROUTES], ends = new Node[ROUTES];
+        for (int i = 0; i < ROUTES; i++) {
+            starts[i] = nodes.get(random.nextInt(nodes.size()));
+            ends[i] = nodes.get(random.nextInt(nodes.size()));
+        }
+        String[] prefixes = new String[PREFIXES];
+        for (int i = 0; i < PREFIXES; i++) {
+            String label = roads.get(random.nextInt(roads.size())).label;
+            prefixes[i] = label.substring(0, 1 + random.nextInt(label.length()));
+        }
+        Location[] clicks = new Location[CLICKS];
+        for (int i = 0; i < CLICKS; i++) {
+            Location near = nodes.get(random.nextInt(nodes.size())).location;
+            clicks[i] = near.moveBy((2 * random.nextDouble() - 1) * CLICK_JITTER,
+                    (2 * random.nextDouble() - 1) * CLICK_JITTER);
+        }
+
+        // the route cache would answer every query after the first round, so it is
+        // emptied before each one to measure the search itself
+        measure("route by distance", repeats, ROUTES, i -> {
+            graph.invalidateRoutes();
+            return digest(graph.findPath(starts[i], ends[i], true), seg -> seg.roadID);
+        });
+        measure("route by time", repeats, ROUTES, i -> {
+            graph.invalidateRoutes();
+            return digest(graph.findPath(starts[i], ends[i], false), seg -> seg.roadID);
+        });
+        // the same routes again, this time left in the cache, which holds them all; the
+        // warm-up round misses and fills it, so the measured rounds only hit
+        RouteCache cache = graph.getRouteCache();
+        long hits = cache.hits(), misses = cache.misses();
+        measure("cached route by time", repeats, ROUTES,
+                i -> digest(graph.findPath(starts[i], ends[i], false), seg -> seg.roadID));
+        hits = cache.hits() - hits;
+        misses = cache.misses() - misses;
+        System.out.println(String.format("    %d hits, %d misses with the warm-up, hit rate %.1f%%", hits, misses,
+                100.0 * hits / Math.max(1, hits + misses)));
+        // each prefix is looked up from the root, not from where the one before ended
+        measure("road prefix search", repeats, PREFIXES, i -> digest(
+                graph.roadTries.complete(graph.roadTries.locate(prefixes[i], null), Graph.SEARCH_LIMIT),
+                road -> road.roadID));
+        measure("click lookup", repeats, CLICKS, i -> {
+            Node node = graph.findNode(clicks[i]);
+            return node == null ? -1 : node.nodeID;
+        });
+        measure("articulation points", repeats, ARTICULATIONS,
+                i -> digest(graph.findArticulationPoints(), node -> node.nodeID));
+    }
+
+    /**
+     * @return    a digest of the ids of the given items, which doesn't depend on
+     *            their order, as sets of nodes come out in a different order each
+     *            run
+     */
+    private static <T> int digest(Collection<T> items, ToIntFunction<T> id) {
+        int sum = 0;
+        for (T item : items) {
+            sum += id.applyAsInt(item);
+        }
+        return 31 * items.size() + sum;
+    }
+
+    private static void fail(String message) {
+        System.out.println(message);
+        System.exit(1);
+    }
+
+    /**
+     * This method runs the given operation count times to warm up, then count times
+     * for each repeat while timing each run, and prints what it measured, with the
+     * sum of the digests of the measured runs.
+     * @param name    the name of the operation
+     * @param repeats    how many measured batches to run
+     * @param count    how many runs a batch has
+     * @param operation    the operation
+     */
+    private static void measure(String name, int repeats, int count, Operation operation) {
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < count; i++) {
+            operation.run(i);
+        }
+
+        long[] latencies = new long[repeats * count];
+        long bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int r = 0, n = 0; r < repeats; r++) {
+            for (int i = 0; i < count; i++) {
+                long before = System.nanoTime();
+                sink += operation.run(i);
+                latencies[n++] = System.nanoTime() - before;
+            }
+        }
+        long time = System.nanoTime() - start;
+        bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) - bytes : -1;
+
+        Arrays.sort(latencies);
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("  %-20s %10.1f ops/s", name, latencies.length * 1e9 / time));
+        for (double p : PERCENTILES) {
+            int index = (int) Math.ceil(p / 100 * latencies.length) - 1;
+            line.append(String.format(", p%.0f %.1f us", p, latencies[Math.max(0, index)] / 1e3));
+        }
+        line.append(String.format(", max %.1f us", latencies[latencies.length - 1] / 1e3));
+        line.append(String.format(", %d bytes allocated/op", bytes < 0 ? -1 : bytes / latencies.length));
+        line.append(String.format(", results %08x", sink));
+        System.out.println(line);
+    }
+}
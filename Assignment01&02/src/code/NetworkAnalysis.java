@@ -0,0 +1,70 @@
+package code;
+
+/**
+ * This class represents the result of NetworkAnalysisUtil.analyse(): which connected
+ * component each node is in, how big each component is, and the biconnected
+ * structure (articulation points, bridges and blocks) of the whole graph.
+ *
+ * Components are numbered from 0, largest first.
+ *
+ * @author Hector
+ *
+ */
+public class NetworkAnalysis {
+
+    final CompactGraph graph;
+    // the connected component of each node
+    final int[] componentOf;
+    // the number of nodes and of segments in each component
+    final int[] componentSizes;
+    final int[] componentSegments;
+    final Biconnectivity biconnectivity;
+
+    NetworkAnalysis(CompactGraph graph, int[] componentOf, int[] componentSizes, int[] componentSegments,
+            Biconnectivity biconnectivity) {
+        this.graph = graph;
+        this.componentOf = componentOf;
+        this.componentSizes = componentSizes;
+        this.componentSegments = componentSegments;
+        this.biconnectivity = biconnectivity;
+    }
+
+    public int numComponents() {
+        return componentSizes.length;
+    }
+
+    /**
+     * @param node    the index of a node
+     * @return    the connected component the node is in
+     */
+    public int component(int node) {
+        return componentOf[node];
+    }
+
+    public int component(Node node) {
+        return componentOf[node.index];
+    }
+
+    /**
+     * @param component
+     * @return    the number of nodes in the given component
+     */
+    public int componentSize(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * @param component
+     * @return    the number of segments in the given component
+     */
+    public int componentSegments(int component) {
+        return componentSegments[component];
+    }
+
+    /**
+     * @return    the articulation points, bridges and blocks of the whole graph
+     */
+    public Biconnectivity biconnectivity() {
+        return biconnectivity;
+    }
+}
@@ -0,0 +1,154 @@
+package code;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This utility class provides a method to analyse the whole road network at once:
+ * its connected components and their sizes, and its articulation points, bridges and
+ * biconnected components.
+ *
+ * The connected components are found with a union-find over all segments, run in
+ * parallel on a fork-join pool. The union-find needs no locks: each link is made
+ * with a compare-and-set on the parent array, from the root with the larger index
+ * to the one with the smaller, so links always point down and can never form a
+ * cycle, and if another thread got there first, the link is just tried again from
+ * the new roots. Paths are halved on the way up, also with compare-and-set.
+ *
+ * The biconnected structure is found sequentially, by the Hopcroft-Tarjan search of
+ * ArticulationUtil. A component's search can't be split up, and on the Auckland map
+ * the largest component holds about two thirds of the nodes, so searching the
+ * components at the same time could never take less than that one search.
+ *
+ * @author Hector
+ *
+ */
+public class NetworkAnalysisUtil {
+
+    // a task over nodes won't be split into pieces of fewer nodes than this
+    private static final int MIN_NODES_PER_TASK = 4096;
+
+    /**
+     * This method analyses the given graph.
+     * @param graph    the compact form of the graph
+     * @param pool    the pool to find the connected components on
+     * @return    the components and the biconnected structure of the graph
+     */
+    public static NetworkAnalysis analyse(CompactGraph graph, ForkJoinPool pool) {
+        int numNodes = graph.numNodes();
+        int[] offsets = graph.offsets, targets = graph.targets, twins = graph.twins;
+        int grain = Math.max(MIN_NODES_PER_TASK, numNodes / (4 * pool.getParallelism()));
+        // with one thread, tasks are only overhead
+        boolean sequential = pool.getParallelism() == 1;
+
+        // connected components. Each segment is looked at once, from the arc of it
+        // that comes first.
+        AtomicIntegerArray parent = new AtomicIntegerArray(numNodes);
+        run(pool, sequential, 0, numNodes, grain, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                parent.set(i, i);
+            }
+        });
+        run(pool, sequential, 0, numNodes, grain, (from, to) -> {
+            for (int u = from; u < to; u++) {
+                for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+                    if (arc < twins[arc]) {
+                        union(parent, u, targets[arc]);
+                    }
+                }
+            }
+        });
+        int[] roots = new int[numNodes];
+        run(pool, sequential, 0, numNodes, grain, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                roots[i] = find(parent, i);
+            }
+        });
+
+        // number the components largest first, by sorting size and root together
+        int[] rootSizes = new int[numNodes];
+        int numComponents = 0;
+        for (int i = 0; i < numNodes; i++) {
+            if (rootSizes[roots[i]]++ == 0) {
+                numComponents++;
+            }
+        }
+        long[] order = new long[numComponents];
+        for (int i = 0, c = 0; i < numNodes; i++) {
+            if (roots[i] == i) {
+                order[c++] = (long) (numNodes - rootSizes[i]) << 32 | i;
+            }
+        }
+        Arrays.sort(order);
+        int[] componentSizes = new int[numComponents];
+        // reused as the component of each root
+        int[] componentOfRoot = rootSizes;
+        for (int c = 0; c < numComponents; c++) {
+            componentSizes[c] = numNodes - (int) (order[c] >>> 32);
+            componentOfRoot[(int) order[c]] = c;
+        }
+        int[] componentOf = new int[numNodes];
+        int[] componentSegments = new int[numComponents];
+        for (int i = 0; i < numNodes; i++) {
+            componentOf[i] = componentOfRoot[roots[i]];
+            // each segment has two arcs in its component
+            componentSegments[componentOf[i]] += offsets[i + 1] - offsets[i];
+        }
+        for (int c = 0; c < numComponents; c++) {
+            componentSegments[c] /= 2;
+        }
+
+        return new NetworkAnalysis(graph, componentOf, componentSizes, componentSegments,
+                ArticulationUtil.findBiconnectivity(graph));
+    }
+
+    /**
+     * This method runs the given action on from..to - 1, on the pool, or all at
+     * once on the calling thread if sequential.
+     */
+    private static void run(ForkJoinPool pool, boolean sequential, int from, int to, int grain,
+            RangeTask.Action action) {
+        if (sequential) {
+            action.run(from, to);
+        } else {
+            pool.invoke(new RangeTask(from, to, grain, action));
+        }
+    }
+
+    /**
+     * @return    the root of the set x is in, halving the path to it on the way
+     */
+    private static int find(AtomicIntegerArray parent, int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                parent.compareAndSet(x, p, grandparent);
+            }
+            x = grandparent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b) {
+                return;
+            }
+            if (a < b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            // fails if a is no longer a root, then try again
+            if (parent.compareAndSet(a, a, b)) {
+                return;
+            }
+        }
+    }
+}
@@ -3,9 +3,12 @@ package code;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Point;
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class represents the intersection of two roads.
@@ -15,18 +18,17 @@ import java.util.Set;
 public class Node {
 
     public final int nodeID;
+    // a dense index in [0, number of nodes), used by search algorithms to keep
+    // per-node state in arrays rather than in hash maps
+    public final int index;
     public final Location location;
-    public final Set<Segment> joinedSegments;
-    private Color color;
+    // set on the event thread, read by the render thread
+    private volatile Color color;
     // some colors
     public static final Color DEFAULT_COLOUR = new Color(83, 141, 213);  // default: light blue
     public static final Color SELECT_COLOUR = new Color(255, 192, 0);  // selected: orange
     public static final Color NAVI_COLOUR = new Color(255, 0, 0);  // navigation: red
     public static final Color ARTICULATION_COLOUR = new Color(204, 0, 255);   // articulation: purple
-    // for articulation points
-    public int depth;
-    public Set<Node> neighbours;
-    public static final int MAX_DEPTH = Integer.MAX_VALUE;
     /*
      * these two constants define the size of the node squares at different zoom
      * levels; the equation used is node size = NODE_INTERCEPT + NODE_GRADIENT *
@@ -34,50 +36,112 @@ public class Node {
      */
     public static final int NODE_INTERCEPT = 1;
     public static final double NODE_GRADIENT = 0.8;
+    /*
+     * filled ovals already drawn, by size and colour. Copying one of them gives
+     * the same pixels as filling the oval, but is faster and makes no garbage
+     */
+    private static final List<Map<Color, BufferedImage>> DOTS = new ArrayList<>();
+    static {
+        for (int size = 0; size <= 32; size++) {
+            DOTS.add(new ConcurrentHashMap<>());
+        }
+    }
     
     /**
-     * Constructor. Note that the field joinedSegments is empty when
-     * an object is constructed
+     * Constructor. The segments joining this node are not kept here, but in the
+     * arcs of the compact graph (see CompactGraph)
+     * @param line    a line from the node file
+     * @param index    the dense index of this node
      */
-    public Node(String line) {
-        String[] values = line.split("\t");
-        this.nodeID = Integer.parseInt(values[0]);
+    public Node(String line, int index) {
+        LineScanner values = new LineScanner(line, '\t');
+        this.nodeID = values.nextInt();
+        this.index = index;
         // translate latitude and longitude to location
-        double lat = Double.parseDouble(values[1]);
-        double lon = Double.parseDouble(values[2]);
+        double lat = values.nextDouble();
+        double lon = values.nextDouble();
         this.location = Location.newFromLatLon(lat, lon);
         this.color = DEFAULT_COLOUR;  // default colour for nodes
-        joinedSegments = new HashSet<>();
-        // for articulation points
-        this.depth = MAX_DEPTH;
-        neighbours = new HashSet<Node>();
     }
 
     /**
-     * This method draws the node.
+     * Constructor, for a node whose values are already known, e.g. read from a
+     * snapshot.
+     * @param nodeID
+     * @param index    the dense index of this node
+     * @param location
+     */
+    public Node(int nodeID, int index, Location location) {
+        this.nodeID = nodeID;
+        this.index = index;
+        this.location = location;
+        this.color = DEFAULT_COLOUR;
+    }
+
+    /**
+     * This method draws the node. When zoomed out, intersections are too small
+     * and too many to be told apart, so only highlighted ones are drawn.
      * @param g    the passed Graphics object
      * @param currentOrigin    the current origin Location
      * @param currentScale    the current scale
      * @param d    the current dimension of the display panel
      */
     public void draw(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
+        draw(g, currentOrigin, currentScale, d, color);
+    }
+
+    /**
+     * Same as above, but draws the node in the given colour rather than its own.
+     * @param g    the passed Graphics object
+     * @param currentOrigin    the current origin Location
+     * @param currentScale    the current scale
+     * @param d    the current dimension of the display panel
+     * @param color    the colour to draw in
+     */
+    public void draw(Graphics g, Location currentOrigin, double currentScale, Dimension d, Color color) {
+        if (currentScale < LevelOfDetailUtil.MINOR_FEATURE_SCALE && color == DEFAULT_COLOUR) {
+            return;
+        }
       
         // the coordinate of display panel center
         int centrXCoord = (int) (d.getWidth() / 2);
         int centrYCoord = (int) (d.getHeight() / 2);
-        // location -> point
-        Point p = this.location.asPoint(currentOrigin, currentScale);
-        // move the point towards right-bottom, so that zoom-in and out is nicer
-        Point newP = new Point(p.x + centrXCoord, p.y + centrYCoord);
+        // location -> point, moved towards right-bottom, so that zoom-in and out is nicer
+        int x = location.screenX(currentOrigin, currentScale) + centrXCoord;
+        int y = location.screenY(currentOrigin, currentScale) + centrYCoord;
         
         // for efficiency, don't render nodes that are off-screen.
-        if (newP.x < 0 || newP.x > d.width || newP.y < 0 || newP.y > d.height) {
+        if (x < 0 || x > d.width || y < 0 || y > d.height) {
             return;
         }
         
         int size = (int) (NODE_GRADIENT * Math.log(currentScale) + NODE_INTERCEPT);
-        g.setColor(this.color);
-        g.fillOval(newP.x - size / 2, newP.y - size / 2, size, size);
+        if (size <= 0) {
+            return;
+        }
+        if (size < DOTS.size()) {
+            g.drawImage(dot(size, color), x - size / 2, y - size / 2, null);
+        } else {
+            g.setColor(color);
+            g.fillOval(x - size / 2, y - size / 2, size, size);
+        }
+    }
+
+    /**
+     * @return    a filled oval of the given size and colour, on a transparent image
+     */
+    private static BufferedImage dot(int size, Color color) {
+        Map<Color, BufferedImage> dots = DOTS.get(size);
+        BufferedImage dot = dots.get(color);
+        if (dot == null) {
+            dot = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = dot.createGraphics();
+            g.setColor(color);
+            g.fillOval(0, 0, size, size);
+            g.dispose();
+            dots.putIfAbsent(color, dot);
+        }
+        return dot;
     }
 
     /**
@@ -89,27 +153,8 @@ public class Node {
     	this.color = color;
     }
 
-    /**
-     * This method adds all neighbour nodes into this node, make connections
-     * between this node and its neighbours.
-     * === for articulation point feature ===
-     */
-    public void setNeighbours() {
-        for (Segment seg : this.joinedSegments) {
-            Node theOtherEnd = seg.theOtherEnd(this);
-            neighbours.add(theOtherEnd);
-        }
-    }
-
     @Override
     public String toString() {
-        String nbrs = "";
-        int i = 1;
-        for (Node n : neighbours) {
-            nbrs += i + "): " + n.nodeID + ". ";
-            i++;
-        }
-        
-        return "Node [nodeID=" + nodeID + ", neighbours=" + nbrs + "]";
+        return "Node [nodeID=" + nodeID + ", index=" + index + ", location=" + location + "]";
     }
 }
@@ -3,8 +3,9 @@ package code;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Point;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -24,6 +25,8 @@ public class Polygon {
      * Therefore, here I used a set of ArrayList<Location>, to cope with this case. 
      */
     public final Set<ArrayList<Location>> locations;
+    // the lists of locations simplified for each zoom band, see LevelOfDetailUtil
+    private final List<List<List<Location>>> simplifiedLocations;
     private final Color color;
 
     /**
@@ -40,6 +43,16 @@ public class Polygon {
         this.endLevel = endLevel;
         this.cityIdx = cityIdx;
         this.locations = locations;
+        this.simplifiedLocations = new ArrayList<>(LevelOfDetailUtil.NUM_BANDS);
+        for (int band = 0; band < LevelOfDetailUtil.NUM_BANDS; band++) {
+            simplifiedLocations.add(new ArrayList<>(locations.size()));
+        }
+        for (ArrayList<Location> list : locations) {
+            List<List<Location>> bands = LevelOfDetailUtil.simplifyForBands(list);
+            for (int band = 0; band < LevelOfDetailUtil.NUM_BANDS; band++) {
+                simplifiedLocations.get(band).add(bands.get(band));
+            }
+        }
 
         /*
          * I didn't take much time to figure out which color should be
@@ -105,7 +118,8 @@ public class Polygon {
     }
 
     /**
-     * This method draws the polygon.
+     * This method draws the polygon. When zoomed out, it draws the polygon
+     * simplified for the zoom band, and nothing at all if it's a minor one.
      * @param g    the passed Graphics object
      * @param currentOrigin    the current origin Location
      * @param currentScale    the current scale
@@ -116,20 +130,41 @@ public class Polygon {
         int centrXCoord = (int) (d.getWidth() / 2);
         int centrYCoord = (int) (d.getHeight() / 2);
         
-        for (ArrayList<Location> list : locations) {
-            // two arrays for polygon vertices
-            int size = list.size();
-            int[] xPoints = new int[size];
-            int[] yPoints = new int[size];
-            for (int i = 0; i < size; i++) {
-                Point point = list.get(i).asPoint(currentOrigin, currentScale);
-                // move the point towards right-bottom, so that zoom in is nicer
-                Point newP = new Point(point.x + centrXCoord, point.y + centrYCoord);
-                xPoints[i] = (int) newP.getX();
-                yPoints[i] = (int) newP.getY();
+        if (currentScale < LevelOfDetailUtil.MINOR_FEATURE_SCALE && LevelOfDetailUtil.isMinor(this)) {
+            return;
+        }
+        int band = LevelOfDetailUtil.band(currentScale);
+        Iterable<? extends List<Location>> lists = band < 0 ? locations : simplifiedLocations.get(band);
+        
+        for (List<Location> list : lists) {
+            // the polygon vertices, moved towards right-bottom so that zoom in is nicer,
+            // in the thread's reusable buffer
+            ScreenPoints points = ScreenPoints.forThread().project(list, currentOrigin, currentScale,
+                    centrXCoord, centrYCoord);
+            // for efficiency, don't render polygons that are off-screen.
+            if (points.isOffScreen(d.width, d.height)) {
+                continue;
             }
             g.setColor(this.color);
-            g.fillPolygon(xPoints, yPoints, size);
+            g.fillPolygon(points.xs, points.ys, points.size);
+        }
+    }
+
+    /**
+     * @return    the bounding box of all vertices of this polygon, or an empty box
+     *            at the origin if it has none
+     */
+    public Rectangle2D bounds() {
+        Rectangle2D bounds = null;
+        for (ArrayList<Location> list : locations) {
+            for (Location location : list) {
+                if (bounds == null) {
+                    bounds = new Rectangle2D.Double(location.x, location.y, 0, 0);
+                } else {
+                    bounds.add(location.x, location.y);
+                }
+            }
         }
+        return bounds != null ? bounds : new Rectangle2D.Double();
     }
 }
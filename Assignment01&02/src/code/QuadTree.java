@@ -0,0 +1,276 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This class represents a point quad-tree: a spatial index of items that each have a
+ * Location, supporting nearest-neighbour and range queries.
+ *
+ * Each cell of the tree covers a rectangle. A cell keeps up to CAPACITY items itself;
+ * once it has more, it is split into four equal quadrants and the items are passed
+ * down to them. Queries only look into the cells whose rectangle can hold an answer,
+ * so on evenly spread data they take logarithmic time rather than linear.
+ *
+ * The tree covers the bounding box of the items it is built with. Items added later
+ * may lie outside of it; they are kept in the nearest cell on the border, and queries
+ * still find them, since cells are checked against the box of what they really hold.
+ *
+ * @param <T> the type of the items
+ * @author Hector
+ *
+ */
+public class QuadTree<T> {
+
+    // the number of items a cell holds before it is split
+    private static final int CAPACITY = 8;
+    // cells this deep are not split any more, so that many items at the same location
+    // don't split cells forever
+    private static final int MAX_DEPTH = 24;
+
+    private final Function<T, Location> locationOf;
+    private final Cell root;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param items    the items to be indexed
+     * @param locationOf    gives the location of an item
+     */
+    public QuadTree(Collection<T> items, Function<T, Location> locationOf) {
+        this.locationOf = locationOf;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (T item : items) {
+            Location location = locationOf.apply(item);
+            minX = Math.min(minX, location.x);
+            minY = Math.min(minY, location.y);
+            maxX = Math.max(maxX, location.x);
+            maxY = Math.max(maxY, location.y);
+        }
+        if (items.isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        }
+        root = new Cell(minX, minY, maxX, maxY, 0);
+        for (T item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * This method adds an item into the tree.
+     * @param item
+     */
+    public void add(T item) {
+        Location location = locationOf.apply(item);
+        Cell cell = root;
+        while (true) {
+            cell.include(location);
+            if (cell.children == null) {
+                break;
+            }
+            cell = cell.childFor(location);
+        }
+        cell.items.add(item);
+        cell.locations.add(location);
+        if (cell.items.size() > CAPACITY && cell.depth < MAX_DEPTH) {
+            cell.split();
+        }
+        size++;
+    }
+
+    /**
+     * @return    the number of items in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method finds the item closest to the given location.
+     * @param location
+     * @return    the closest item, or null if the tree is empty
+     */
+    public T nearest(Location location) {
+        Nearest nearest = new Nearest();
+        nearest(root, location.x, location.y, nearest);
+        return nearest.item;
+    }
+
+    /**
+     * This method finds all items within the given rectangle, borders included.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return    a list of all items within the rectangle
+     */
+    public List<T> within(double minX, double minY, double maxX, double maxY) {
+        List<T> found = new ArrayList<>();
+        forEachWithin(minX, minY, maxX, maxY, found::add);
+        return found;
+    }
+
+    /**
+     * Same as within(), but hands the items to the given action one by one instead
+     * of making a list of them.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param action    what to do with each item
+     */
+    public void forEachWithin(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        within(root, minX, minY, maxX, maxY, action);
+    }
+
+    /**
+     * This method finds all items within the given distance of the given location.
+     * @param location
+     * @param radius
+     * @return    a list of all items within the distance
+     */
+    public List<T> within(Location location, double radius) {
+        List<T> found = new ArrayList<>();
+        for (T item : within(location.x - radius, location.y - radius, location.x + radius,
+                location.y + radius)) {
+            if (location.distance(locationOf.apply(item)) <= radius) {
+                found.add(item);
+            }
+        }
+        return found;
+    }
+
+    private void nearest(Cell cell, double x, double y, Nearest nearest) {
+        if (cell.isEmpty() || cell.distanceSq(x, y) >= nearest.distanceSq) {
+            return;
+        }
+        for (int i = 0; i < cell.items.size(); i++) {
+            Location location = cell.locations.get(i);
+            double dx = location.x - x, dy = location.y - y;
+            double distanceSq = dx * dx + dy * dy;
+            if (distanceSq < nearest.distanceSq) {
+                nearest.distanceSq = distanceSq;
+                nearest.item = cell.items.get(i);
+            }
+        }
+        if (cell.children == null) {
+            return;
+        }
+        // the quadrant holding the location first, as it most likely has the closest item
+        Cell first = cell.childFor(x, y);
+        nearest(first, x, y, nearest);
+        for (Cell child : cell.children) {
+            if (child != first) {
+                nearest(child, x, y, nearest);
+            }
+        }
+    }
+
+    private void within(Cell cell, double minX, double minY, double maxX, double maxY,
+            Consumer<? super T> action) {
+        if (cell.isEmpty() || cell.minX > maxX || cell.maxX < minX || cell.minY > maxY || cell.maxY < minY) {
+            return;
+        }
+        for (int i = 0; i < cell.items.size(); i++) {
+            Location location = cell.locations.get(i);
+            if (location.x >= minX && location.x <= maxX && location.y >= minY && location.y <= maxY) {
+                action.accept(cell.items.get(i));
+            }
+        }
+        if (cell.children != null) {
+            for (int i = 0; i < cell.children.size(); i++) {
+                within(cell.children.get(i), minX, minY, maxX, maxY, action);
+            }
+        }
+    }
+
+    /**
+     * The best item found so far by a nearest-neighbour search.
+     */
+    private class Nearest {
+        T item;
+        double distanceSq = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * A cell of the tree. Its quadrants split the rectangle it was made for at the
+     * middle; minX to maxY is the box of the items it (and its quadrants) really hold.
+     */
+    private class Cell {
+        final double midX, midY;
+        final int depth;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        final double left, bottom, right, top;
+        List<T> items = new ArrayList<>();
+        List<Location> locations = new ArrayList<>();
+        // south-west, south-east, north-west, north-east, or null if not split
+        List<Cell> children;
+
+        Cell(double left, double bottom, double right, double top, int depth) {
+            this.left = left;
+            this.bottom = bottom;
+            this.right = right;
+            this.top = top;
+            this.midX = (left + right) / 2;
+            this.midY = (bottom + top) / 2;
+            this.depth = depth;
+        }
+
+        boolean isEmpty() {
+            return minX > maxX;
+        }
+
+        void include(Location location) {
+            minX = Math.min(minX, location.x);
+            minY = Math.min(minY, location.y);
+            maxX = Math.max(maxX, location.x);
+            maxY = Math.max(maxY, location.y);
+        }
+
+        Cell childFor(Location location) {
+            return childFor(location.x, location.y);
+        }
+
+        Cell childFor(double x, double y) {
+            return children.get((x < midX ? 0 : 1) + (y < midY ? 0 : 2));
+        }
+
+        /**
+         * @return    the squared distance from the given point to the box of this
+         *            cell's items, 0 if it's inside
+         */
+        double distanceSq(double x, double y) {
+            double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+            double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+            return dx * dx + dy * dy;
+        }
+
+        void split() {
+            children = new ArrayList<>(4);
+            children.add(new Cell(left, bottom, midX, midY, depth + 1));
+            children.add(new Cell(midX, bottom, right, midY, depth + 1));
+            children.add(new Cell(left, midY, midX, top, depth + 1));
+            children.add(new Cell(midX, midY, right, top, depth + 1));
+            for (int i = 0; i < items.size(); i++) {
+                Location location = locations.get(i);
+                Cell child = childFor(location);
+                child.include(location);
+                child.items.add(items.get(i));
+                child.locations.add(location);
+            }
+            items = new ArrayList<>(0);
+            locations = new ArrayList<>(0);
+            // all items may have gone into one quadrant
+            for (Cell child : children) {
+                if (child.items.size() > CAPACITY && child.depth < MAX_DEPTH) {
+                    child.split();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This class represents the roads indexed by their label + city, like RoadTrie and
+ * with the same methods, but as a radix tree packed into a few arrays: a chain of
+ * nodes with one child each is merged into one node whose label is the whole
+ * chain, and there is no object per node at all.
+ *
+ * Node i has the label chars[labelStart[i]] to chars[labelStart[i + 1] - 1], the
+ * children firstChild[i] to firstChild[i + 1] - 1 (in the order of their first
+ * char), and the roads roads[firstRoad[i]] to roads[firstRoad[i + 1] - 1] (best
+ * ranked first), whose ranks are in roadRanks. The nodes are numbered breadth
+ * first, so the children of a node are next to each other, and the root is 0.
+ *
+ * Roads added are kept aside until the tree is packed again, which rank() does
+ * (search() calls it if needed); the tree is packed from all keys at once, in
+ * sorted order, as that is much simpler than inserting into packed arrays.
+ *
+ * For typing in a search box, each node also has the ranks of the best TOP_K roads
+ * under it, worked out bottom-up when the tree is packed, and a Prefix remembers
+ * where the last prefix looked up ended, so that the next one, typed by adding a
+ * char to it, is found from there (see locate()). A keystroke then costs the same
+ * however many roads share the prefix.
+ *
+ * @author Hector
+ *
+ */
+public class RadixRoadTrie {
+
+    // the rank of a node without any road under it
+    private static final int NO_RANK = Integer.MAX_VALUE;
+    // how many of the best roads under each node are kept, as many as searchRoad()
+    // returns
+    public static final int TOP_K = Graph.SEARCH_LIMIT;
+
+    // the packed tree, see above
+    private char[] chars;
+    private int[] labelStart;
+    private int[] firstChild;
+    private Road[] roads;
+    private int[] roadRanks;
+    private int[] firstRoad;
+    // the best rank in the subtree of each node
+    private int[] bestRank;
+    private int numNodes;
+    // the ranks of the best TOP_K roads under node i are topRanks[firstTop[i]] to
+    // topRanks[firstTop[i + 1] - 1], best first; and the road of each rank
+    private int[] topRanks;
+    private int[] firstTop;
+    private Road[] rankedRoads;
+    // bumped each time the tree is packed, so that old Prefixes can be told apart
+    private int version;
+
+    // roads added since the tree was last packed, and their keys
+    private List<String> addedKeys;
+    private List<Road> addedRoads;
+
+    public RadixRoadTrie() {
+        addedKeys = new ArrayList<>();
+        addedRoads = new ArrayList<>();
+        pack(new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Add a Road object according to its label and city.
+     * @param word    a String with road name stored inside; it is stored in lower
+     *                case, as queries are looked up in lower case
+     * @param road    the corresponding road object
+     */
+    public void add(String word, Road road) {
+        addedKeys.add(word.trim().toLowerCase());
+        addedRoads.add(road);
+    }
+
+    /**
+     * This method finds all roads that match the given prefix.
+     * @param word    the prefix to be searched
+     * @return    an ArrayList of Road objects that match the given prefix,
+     *            best ranked first, or null if none does.
+     */
+    public ArrayList<Road> find(String word) {
+        ArrayList<Road> found = search(word, 0, Integer.MAX_VALUE);
+        return found.isEmpty() ? null : found;
+    }
+
+    /**
+     * This method finds the best roads whose label + city starts with something
+     * within the given number of edits from the given query, the same way as
+     * RoadTrie.search(). The row of the edit distance table is moved on one char
+     * of a label at a time, so a node matches if any prefix of its key within its
+     * label does.
+     * @param query    the prefix to be searched, case doesn't matter
+     * @param maxEdits    how many edits a match may be away from the query
+     * @param limit    how many roads to return at most
+     * @return    an ArrayList of the roads found, those needing fewer edits first,
+     *            then best ranked first
+     */
+    public ArrayList<Road> search(String query, int maxEdits, int limit) {
+        if (!addedRoads.isEmpty()) {
+            rank();
+        }
+        query = query.trim().toLowerCase();
+        PriorityQueue<long[]> candidates = new PriorityQueue<>(CANDIDATE_ORDER);
+        int[] row = new int[query.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        match(0, row, query, maxEdits, Integer.MAX_VALUE, candidates);
+
+        // a road can be under more than one match, it counts with the fewest edits
+        ArrayList<Road> found = new ArrayList<>();
+        Set<Road> seen = new HashSet<>();
+        while (!candidates.isEmpty() && found.size() < limit) {
+            long[] candidate = candidates.poll();
+            int edits = (int) candidate[0];
+            int item = (int) candidate[2];
+            if (item < 0) {
+                // a single road, by its position in roads
+                Road road = roads[~item];
+                if (seen.add(road)) {
+                    found.add(road);
+                }
+                continue;
+            }
+            for (int i = firstRoad[item]; i < firstRoad[item + 1]; i++) {
+                candidates.add(new long[] { edits, roadRanks[i], ~i });
+            }
+            for (int child = firstChild[item]; child < firstChild[item + 1]; child++) {
+                if (bestRank[child] != NO_RANK) {
+                    candidates.add(new long[] { edits, bestRank[child], child });
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * This method finds where the given prefix ends in the tree. If the given Prefix
+     * was found for a start of the query, the rest of the query is found from
+     * there, rather than from the root.
+     * @param query    the prefix to be found, case doesn't matter
+     * @param from    the Prefix of an earlier query, or null
+     * @return    the Prefix of the query
+     */
+    public Prefix locate(String query, Prefix from) {
+        if (!addedRoads.isEmpty()) {
+            rank();
+        }
+        query = query.trim().toLowerCase();
+        if (from == null || from.trie != this || from.version != version || !query.startsWith(from.key)) {
+            from = new Prefix(this, "", 0, 0);
+        }
+        int node = from.node, matched = from.matched;
+        for (int i = from.key.length(); i < query.length() && node >= 0; i++) {
+            char c = query.charAt(i);
+            if (labelStart[node] + matched < labelStart[node + 1]) {
+                // still in the label of the node
+                node = chars[labelStart[node] + matched] == c ? node : -1;
+                matched++;
+            } else {
+                // on to the child starting with c, if any
+                int next = -1;
+                for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                    if (chars[labelStart[child]] == c) {
+                        next = child;
+                        break;
+                    }
+                }
+                node = next;
+                matched = 1;
+            }
+        }
+        return new Prefix(this, query, node, matched);
+    }
+
+    /**
+     * This method finds the best roads starting with the given prefix, from the best
+     * roads kept for its node if there are enough of them.
+     * @param prefix    a Prefix found by locate() since the tree was last packed
+     * @param limit    how many roads to return at most
+     * @return    an ArrayList of the roads found, best ranked first
+     */
+    public ArrayList<Road> complete(Prefix prefix, int limit) {
+        if (prefix.trie != this || prefix.version != version) {
+            throw new IllegalArgumentException("The prefix is not of this tree as it is now");
+        }
+        ArrayList<Road> found = new ArrayList<>();
+        if (prefix.node < 0) {
+            return found;
+        }
+        int from = firstTop[prefix.node], to = firstTop[prefix.node + 1];
+        if (limit > to - from && to - from == TOP_K) {
+            // there may be more roads than are kept
+            return search(prefix.key, 0, limit);
+        }
+        for (int i = from; i < to && found.size() < limit; i++) {
+            found.add(rankedRoads[topRanks[i]]);
+        }
+        return found;
+    }
+
+    /**
+     * Where a prefix ends in the tree, found by locate(): in the label of a node,
+     * after some chars of it.
+     */
+    public static class Prefix {
+        // the tree, and the version of it, this is of
+        final RadixRoadTrie trie;
+        final int version;
+        // the prefix, trimmed and in lower case
+        final String key;
+        // the node, or -1 if no key starts with the prefix; and how many chars of
+        // its label the prefix takes
+        final int node, matched;
+
+        Prefix(RadixRoadTrie trie, String key, int node, int matched) {
+            this.trie = trie;
+            this.version = trie.version;
+            this.key = key;
+            this.node = node;
+            this.matched = matched;
+        }
+    }
+
+    // candidates of search() are { edits, rank, node or ~position of a road }
+    private static final Comparator<long[]> CANDIDATE_ORDER = (a, b) -> a[0] != b[0]
+            ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]);
+
+    /**
+     * This method ranks all roads, best first by road class, then by length (then
+     * by ID, so that the order doesn't depend on the order they were added), and
+     * packs the tree again with the roads added since last time. It has to be called
+     * again once the segments of the roads are loaded, as the length of a road counts.
+     */
+    public void rank() {
+        List<String> keys = new ArrayList<>();
+        List<Road> keyRoads = new ArrayList<>();
+        collect(0, new StringBuilder(), keys, keyRoads);
+        keys.addAll(addedKeys);
+        keyRoads.addAll(addedRoads);
+        addedKeys = new ArrayList<>();
+        addedRoads = new ArrayList<>();
+        pack(keys, keyRoads);
+    }
+
+    /**
+     * @return    the number of nodes of the packed tree
+     */
+    public int size() {
+        return numNodes;
+    }
+
+    /**
+     * This method adds the key and road of every road under the given node to the
+     * given lists.
+     * @param key    the key of the node, without its label
+     */
+    private void collect(int node, StringBuilder key, List<String> keys, List<Road> keyRoads) {
+        int length = key.length();
+        key.append(chars, labelStart[node], labelStart[node + 1] - labelStart[node]);
+        for (int i = firstRoad[node]; i < firstRoad[node + 1]; i++) {
+            keys.add(key.toString());
+            keyRoads.add(roads[i]);
+        }
+        for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+            collect(child, key, keys, keyRoads);
+        }
+        key.setLength(length);
+    }
+
+    /**
+     * This method builds the packed tree of the given keys and their roads.
+     */
+    private void pack(List<String> keys, List<Road> keyRoads) {
+        int n = keys.size();
+        // rank the roads
+        Road[] ranked = keyRoads.toArray(new Road[n]);
+        Map<Road, Double> lengths = new HashMap<>();
+        for (Road road : ranked) {
+            lengths.put(road, road.length());
+        }
+        Arrays.sort(ranked, Comparator.comparingDouble((Road road) -> road.roadClass)
+                .thenComparingDouble(lengths::get).reversed().thenComparingInt(road -> road.roadID));
+        Map<Road, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ranks.put(ranked[i], i);
+        }
+        rankedRoads = ranked;
+        version++;
+
+        // sort the keys, and the roads of the same key by rank
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> keys.get(i))
+                .thenComparing(i -> ranks.get(keyRoads.get(i))));
+        String[] sortedKeys = new String[n];
+        int totalLength = 0;
+        for (int i = 0; i < n; i++) {
+            sortedKeys[i] = keys.get(order[i]);
+            totalLength += sortedKeys[i].length();
+        }
+
+        // a radix tree of n keys has at most 2n nodes, besides the root
+        int maxNodes = 2 * n + 1;
+        chars = new char[totalLength];
+        labelStart = new int[maxNodes + 1];
+        firstChild = new int[maxNodes + 1];
+        roads = new Road[n];
+        roadRanks = new int[n];
+        firstRoad = new int[maxNodes + 1];
+        // the keys under each node (from, to) and the length of its key, breadth first
+        int[] from = new int[maxNodes], to = new int[maxNodes], depth = new int[maxNodes];
+        int numChars = 0, numRoads = 0;
+        numNodes = 1;
+        to[0] = n;
+        for (int node = 0; node < numNodes; node++) {
+            firstChild[node] = numNodes;
+            firstRoad[node] = numRoads;
+            // the keys ending here come first, as they are the shortest
+            int i = from[node];
+            while (i < to[node] && sortedKeys[i].length() == depth[node]) {
+                Road road = keyRoads.get(order[i]);
+                roads[numRoads] = road;
+                roadRanks[numRoads] = ranks.get(road);
+                numRoads++;
+                i++;
+            }
+            // the rest are split by their next char; each group is a child, whose
+            // label is what the group has in common
+            while (i < to[node]) {
+                char next = sortedKeys[i].charAt(depth[node]);
+                int end = i + 1;
+                while (end < to[node] && sortedKeys[end].charAt(depth[node]) == next) {
+                    end++;
+                }
+                int common = commonLength(sortedKeys[i], sortedKeys[end - 1]);
+                int child = numNodes++;
+                from[child] = i;
+                to[child] = end;
+                depth[child] = common;
+                labelStart[child] = numChars;
+                sortedKeys[i].getChars(depth[node], common, chars, numChars);
+                numChars += common - depth[node];
+                labelStart[child + 1] = numChars;
+                i = end;
+            }
+        }
+        firstChild[numNodes] = numNodes;
+        firstRoad[numNodes] = numRoads;
+        labelStart[numNodes] = numChars;
+
+        // trim the arrays to what is used
+        chars = Arrays.copyOf(chars, numChars);
+        labelStart = Arrays.copyOf(labelStart, numNodes + 1);
+        firstChild = Arrays.copyOf(firstChild, numNodes + 1);
+        firstRoad = Arrays.copyOf(firstRoad, numNodes + 1);
+
+        // children come after their parent, so the best roads under each node can be
+        // worked out backwards, from its own roads and the best roads of its children
+        int[][] tops = new int[numNodes][];
+        int numTops = 0;
+        for (int node = numNodes - 1; node >= 0; node--) {
+            int count = firstRoad[node + 1] - firstRoad[node];
+            for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                count += tops[child].length;
+            }
+            int[] candidates = new int[count];
+            count = firstRoad[node + 1] - firstRoad[node];
+            System.arraycopy(roadRanks, firstRoad[node], candidates, 0, count);
+            for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                System.arraycopy(tops[child], 0, candidates, count, tops[child].length);
+                count += tops[child].length;
+            }
+            Arrays.sort(candidates);
+            tops[node] = Arrays.copyOf(candidates, Math.min(TOP_K, candidates.length));
+            numTops += tops[node].length;
+        }
+        topRanks = new int[numTops];
+        firstTop = new int[numNodes + 1];
+        bestRank = new int[numNodes];
+        numTops = 0;
+        for (int node = 0; node < numNodes; node++) {
+            firstTop[node] = numTops;
+            System.arraycopy(tops[node], 0, topRanks, numTops, tops[node].length);
+            numTops += tops[node].length;
+            bestRank[node] = tops[node].length > 0 ? tops[node][0] : NO_RANK;
+        }
+        firstTop[numNodes] = numTops;
+    }
+
+    /**
+     * This method finds the nodes whose key is within maxEdits of the query, given
+     * the row of the edit distance table at the end of its parent's key, and adds
+     * them as candidates. Nodes under a match are only added if they need fewer
+     * edits than it.
+     */
+    private void match(int node, int[] row, String query, int maxEdits, int matchedEdits,
+            PriorityQueue<long[]> candidates) {
+        int best = row[query.length()];
+        boolean dead = false;
+        for (int c = labelStart[node]; c < labelStart[node + 1] && !dead; c++) {
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int min = next[0];
+            for (int i = 1; i < row.length; i++) {
+                int substitution = row[i - 1] + (query.charAt(i - 1) == chars[c] ? 0 : 1);
+                next[i] = Math.min(substitution, Math.min(row[i], next[i - 1]) + 1);
+                min = Math.min(min, next[i]);
+            }
+            row = next;
+            best = Math.min(best, row[query.length()]);
+            // no longer key can be within the edits allowed
+            dead = min > maxEdits;
+        }
+        if (best <= maxEdits && best < matchedEdits) {
+            if (bestRank[node] != NO_RANK) {
+                candidates.add(new long[] { best, bestRank[node], node });
+            }
+            if (best == 0) {
+                // nothing under it can do better
+                return;
+            }
+            matchedEdits = best;
+        }
+        if (dead) {
+            return;
+        }
+        for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+            match(child, row, query, maxEdits, matchedEdits, candidates);
+        }
+    }
+
+    private static int commonLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * This method compares the heap taken and the lookup speed of a RadixRoadTrie
+     * and a RoadTrie of the roads in the given directory.
+     * @param args    the directory of the data files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: RadixRoadTrie dataDirectory");
+            return;
+        }
+        List<Road> roadList = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(args[0], "roadID-roadInfo.tab")))) {
+            // the first line is the header
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                roadList.add(new Road(line));
+            }
+        }
+
+        long before = usedHeap();
+        RoadTrie trie = new RoadTrie();
+        for (Road road : roadList) {
+            trie.add(road.label + ", " + road.city, road);
+        }
+        trie.rank();
+        long trieHeap = usedHeap() - before;
+
+        before = usedHeap();
+        RadixRoadTrie radix = new RadixRoadTrie();
+        for (Road road : roadList) {
+            radix.add(road.label + ", " + road.city, road);
+        }
+        radix.rank();
+        long radixHeap = usedHeap() - before;
+        System.out.printf("%d roads: RoadTrie %d KB, RadixRoadTrie %d KB (%d nodes)%n", roadList.size(),
+                trieHeap >> 10, radixHeap >> 10, radix.size());
+
+        // every prefix of every tenth road's key, exact and with typos allowed
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i < roadList.size(); i += 10) {
+            String key = roadList.get(i).label + ", " + roadList.get(i).city;
+            for (int length = 1; length <= key.length(); length++) {
+                prefixes.add(key.substring(0, length));
+            }
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int maxEdits = 0; maxEdits <= 1; maxEdits++) {
+                long start = System.nanoTime();
+                for (String prefix : prefixes) {
+                    trie.search(prefix, maxEdits, Graph.SEARCH_LIMIT);
+                }
+                double trieRate = prefixes.size() / ((System.nanoTime() - start) / 1e9);
+                start = System.nanoTime();
+                for (String prefix : prefixes) {
+                    radix.search(prefix, maxEdits, Graph.SEARCH_LIMIT);
+                }
+                double radixRate = prefixes.size() / ((System.nanoTime() - start) / 1e9);
+                System.out.printf("%d edits: RoadTrie %.0f lookups/s, RadixRoadTrie %.0f lookups/s%n", maxEdits,
+                        trieRate, radixRate);
+            }
+        }
+        // this also keeps both alive until they are measured
+        System.out.printf("RoadTrie has %d roads, RadixRoadTrie %d%n", trie.find("").size(),
+                radix.find("").size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
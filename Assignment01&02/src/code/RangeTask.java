@@ -0,0 +1,44 @@
+package code;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class represents a fork-join task running some work over a range of indices
+ * (nodes, components, origins...), split in halves until the pieces are no bigger
+ * than the grain. The work is given the bounds of its piece rather than one index
+ * at a time, so that it can set up scratch state once per piece.
+ *
+ * @author Hector
+ *
+ */
+class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Some work over the indices from..to - 1.
+     */
+    interface Action {
+        void run(int from, int to);
+    }
+
+    private final int from, to, grain;
+    private final Action action;
+
+    RangeTask(int from, int to, int grain, Action action) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > grain) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, action), new RangeTask(mid, to, grain, action));
+            return;
+        }
+        action.run(from, to);
+    }
+}
@@ -0,0 +1,65 @@
+package code;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class measures how long a frame of the map takes to draw, and how much memory
+ * is allocated while drawing it, at several scales.
+ *
+ * @author Hector
+ *
+ */
+public class RenderBenchmark {
+
+    // the scales measured, from the whole region to a few streets
+    private static final double[] SCALES = { 5, 20, 100, 500 };
+    private static final Dimension FRAME = new Dimension(1000, 800);
+
+    /**
+     * @param args    the directory of the data files, and optionally the number of
+     *                frames to draw at each scale
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: RenderBenchmark <data directory> [frames]");
+            return;
+        }
+        File dir = new File(args[0]);
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        File polygons = new File(dir, "polygon-shapes.mp");
+        Graph graph = new Graph();
+        graph.load(new File(dir, "nodeID-lat-lon.tab"), new File(dir, "roadID-roadInfo.tab"),
+                new File(dir, "roadSeg-roadID-length-nodeID-nodeID-coords.tab"),
+                polygons.exists() ? polygons : null, null);
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // allocation counting is only offered by some JVMs
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        BufferedImage image = new BufferedImage(FRAME.width, FRAME.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Location centre = Location.newFromLatLon(-36.847622, 174.763444);
+        for (double scale : SCALES) {
+            // warm up
+            for (int i = 0; i < frames; i++) {
+                graph.redraw(g, centre, scale, FRAME);
+            }
+            long bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                graph.redraw(g, centre, scale, FRAME);
+            }
+            long time = System.nanoTime() - start;
+            bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) - bytes : -1;
+            System.out.printf("scale %.0f: %.2f ms/frame, %d bytes allocated/frame%n", scale,
+                    time / 1e6 / frames, bytes / frames);
+        }
+        g.dispose();
+    }
+}
@@ -18,12 +18,20 @@ public class Restriction {
     Node nodeTo;
     
     public Restriction(String line, Map<Integer, Node> nodeMap, Map<Integer, Road> roadMap) {
-        String[] values = line.split("\t");
-        this.nodeFrom = nodeMap.get(Integer.parseInt(values[0]));
-        this.roadFrom = roadMap.get(Integer.parseInt(values[1]));
-        this.rstrNode = nodeMap.get(Integer.parseInt(values[2]));
-        this.roadTo = roadMap.get(Integer.parseInt(values[3]));
-        this.nodeTo = nodeMap.get(Integer.parseInt(values[4]));
+        LineScanner values = new LineScanner(line, '\t');
+        this.nodeFrom = nodeMap.get(values.nextInt());
+        this.roadFrom = roadMap.get(values.nextInt());
+        this.rstrNode = nodeMap.get(values.nextInt());
+        this.roadTo = roadMap.get(values.nextInt());
+        this.nodeTo = nodeMap.get(values.nextInt());
+    }
+
+    public Restriction(Node nodeFrom, Road roadFrom, Node rstrNode, Road roadTo, Node nodeTo) {
+        this.nodeFrom = nodeFrom;
+        this.roadFrom = roadFrom;
+        this.rstrNode = rstrNode;
+        this.roadTo = roadTo;
+        this.nodeTo = nodeTo;
     }
 
     @Override
@@ -16,24 +16,25 @@ public class Road {
     public final Set<Segment> roadSegments;
     
     /**
-     * Constructor. Note that the field joinedSegments is empty
+     * Constructor. Note that the field roadSegments is empty
      * when an object is constructed
      * @param line
      */
     public Road(String line) {
-        String[] values = line.split("\t");
-        this.roadID = Integer.parseInt(values[0]);
-        this.type = Integer.parseInt(values[1]);
-        this.label = values[2];
-        this.city = values[3];
-        this.isOneWay = Integer.parseInt(values[4]) == 1 ? true : false;
-        this.notForCar = Integer.parseInt(values[7]) == 1 ? true : false;
-        this.notForPedestrian = Integer.parseInt(values[8]) == 1 ? true : false;
-        this.notForBicycle = Integer.parseInt(values[9]) == 1 ? true : false;
+        LineScanner values = new LineScanner(line, '\t');
+        this.roadID = values.nextInt();
+        this.type = values.nextInt();
+        this.label = values.nextString();
+        this.city = values.nextString();
+        this.isOneWay = values.nextInt() == 1 ? true : false;
+        int speed = values.nextInt();
+        int value6 = values.nextInt();
+        this.notForCar = values.nextInt() == 1 ? true : false;
+        this.notForPedestrian = values.nextInt() == 1 ? true : false;
+        this.notForBicycle = values.nextInt() == 1 ? true : false;
         roadSegments = new HashSet<>();
         
         // speed limit, for A* search
-        int speed = Integer.parseInt(values[5]);
         switch (speed) {
         case 0:
             this.speedLimit = 5;
@@ -69,7 +70,6 @@ public class Road {
          * 100km/h, the condition is not so good that the car can only reach 80%
          * of speed limit.
          */
-        int value6 = Integer.parseInt(values[6]);
         switch (value6) {
         case 0:
             this.roadClass = 0.80;
@@ -89,4 +89,45 @@ public class Road {
             break;
         }
     }
+
+    /**
+     * Constructor, for a road whose values are already known, e.g. read from a 
+     * snapshot. Note that the speed limit is in km/h and the road class is the 
+     * factor of it a car can reach, as worked out by the other constructor.
+     * @param roadID
+     * @param type
+     * @param label
+     * @param city
+     * @param isOneWay
+     * @param speedLimit
+     * @param roadClass
+     * @param notForCar
+     * @param notForPedestrian
+     * @param notForBicycle
+     */
+    public Road(int roadID, int type, String label, String city, boolean isOneWay, int speedLimit,
+            double roadClass, boolean notForCar, boolean notForPedestrian, boolean notForBicycle) {
+        this.roadID = roadID;
+        this.type = type;
+        this.label = label;
+        this.city = city;
+        this.isOneWay = isOneWay;
+        this.speedLimit = speedLimit;
+        this.roadClass = roadClass;
+        this.notForCar = notForCar;
+        this.notForPedestrian = notForPedestrian;
+        this.notForBicycle = notForBicycle;
+        roadSegments = new HashSet<>();
+    }
+
+    /**
+     * @return    the total length of the road's segments
+     */
+    public double length() {
+        double length = 0;
+        for (Segment seg : roadSegments) {
+            length += seg.length;
+        }
+        return length;
+    }
 }
@@ -1,33 +1,49 @@
 package code;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
  * This class represents a trie structure where all roads objects are stored.
  * It is indexed by their label + city (see Graph class, loadRoads() method).
+ *
+ * Besides exact prefix search, it supports fuzzy, ranked search (see search()):
+ * roads are ranked by road class, then by length, and each node of the trie knows
+ * the best rank in its subtree, so the best K matches are found by looking at the
+ * best subtrees first, without collecting everything under a prefix.
+ *
  * @author Hector
  *
  */
 public class RoadTrie {
 
+	// the rank of a node without any road under it
+	private static final int NO_RANK = Integer.MAX_VALUE;
+
 	private RoadTriesNode root;
+	// whether the ranks are up to date, see rank()
+	private boolean ranked;
 
 	public RoadTrie() {
 		root = new RoadTriesNode();
+		ranked = true;
 	}
 
 	/**
 	 * Add a Road object according to its label and city.
-	 * @param word    a String with road name stored inside
-	 * @param road    the corresponding road object 
+	 * @param word    a String with road name stored inside; it is stored in lower
+	 *                case, as queries are looked up in lower case
+	 * @param road    the corresponding road object
 	 */
 	public void add(String word, Road road) {
 		RoadTriesNode node = root;
-		word = word.trim();
+		word = word.trim().toLowerCase();
 		for (int i = 0; i < word.length(); i++) {
 			char c = word.charAt(i);
 			if (node.children.get(c) == null) {
@@ -37,36 +53,136 @@ public class RoadTrie {
 		}
 		node.isLabel = true;
 		node.roads.add(road);
+		ranked = false;
 	}
 
 	/**
 	 * This method finds all roads that match the given prefix.
 	 * @param word    the prefix to be searched
-	 * @return    an ArrayList of Road objects that match the given prefix.
+	 * @return    an ArrayList of Road objects that match the given prefix,
+	 *            best ranked first, or null if none does.
 	 */
 	public ArrayList<Road> find(String word) {
-		RoadTriesNode node = root;
-		word = word.trim();
-		for (int i = 0; i < word.length(); i++) {
-			char c = word.charAt(i);
-			if (node.children.get(c) == null) {
-				return null;
-			} else {
-				node = node.children.get(c);
-			}
+		ArrayList<Road> roads = search(word, 0, Integer.MAX_VALUE);
+		return roads.isEmpty() ? null : roads;
+	}
+
+	/**
+	 * This method finds the best roads whose label + city starts with something
+	 * within the given number of edits (insertions, deletions or substitutions of
+	 * a character) from the given query.
+	 *
+	 * The trie is walked with one row of the edit distance table per node (which is
+	 * the same as running a Levenshtein automaton of the query along it), and a
+	 * branch is left as soon as no cell of its row is within the edits allowed.
+	 * The subtrees that match are then opened best rank first, until enough roads
+	 * are found.
+	 *
+	 * @param query    the prefix to be searched, case doesn't matter
+	 * @param maxEdits    how many edits a match may be away from the query
+	 * @param limit    how many roads to return at most
+	 * @return    an ArrayList of the roads found, those needing fewer edits first,
+	 *            then best ranked first
+	 */
+	public ArrayList<Road> search(String query, int maxEdits, int limit) {
+		if (!ranked) {
+			rank();
 		}
-		// Use ArrayList instead of HashSet to keep the output in alphabet order
-		// seems not working?
+		query = query.trim().toLowerCase();
+		PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+		int[] row = new int[query.length() + 1];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = i;
+		}
+		match(root, row, query, maxEdits, Integer.MAX_VALUE, candidates);
+
+		// a road can be under more than one match, it counts with the fewest edits
 		ArrayList<Road> roads = new ArrayList<>();
-		node.getAllLeaves(roads);
+		Set<Road> found = new HashSet<>();
+		while (!candidates.isEmpty() && roads.size() < limit) {
+			Candidate candidate = candidates.poll();
+			if (candidate.road != null) {
+				if (found.add(candidate.road)) {
+					roads.add(candidate.road);
+				}
+				continue;
+			}
+			RoadTriesNode node = candidate.node;
+			for (int i = 0; i < node.rankedRoads.size(); i++) {
+				candidates.add(new Candidate(candidate.edits, node.roadRanks[i], node.rankedRoads.get(i), null));
+			}
+			for (RoadTriesNode child : node.children.values()) {
+				if (child.bestRank != NO_RANK) {
+					candidates.add(new Candidate(candidate.edits, child.bestRank, null, child));
+				}
+			}
+		}
 		return roads;
 	}
 
+	/**
+	 * This method ranks all roads, best first by road class, then by length (then
+	 * by ID, so that the order doesn't depend on the order they were added). It has
+	 * to be called again once roads are added, or once their segments are loaded,
+	 * as the length of a road counts; search() does it if roads have been added.
+	 */
+	public void rank() {
+		ArrayList<Road> roads = new ArrayList<>();
+		root.getAllLeaves(roads);
+		Map<Road, Double> lengths = new HashMap<>();
+		for (Road road : roads) {
+			lengths.put(road, road.length());
+		}
+		roads.sort(Comparator.comparingDouble((Road road) -> road.roadClass)
+				.thenComparingDouble(lengths::get).reversed().thenComparingInt(road -> road.roadID));
+		Map<Road, Integer> ranks = new HashMap<>();
+		for (int i = 0; i < roads.size(); i++) {
+			ranks.put(roads.get(i), i);
+		}
+		root.rank(ranks);
+		ranked = true;
+	}
+
+	/**
+	 * This method finds the nodes whose key is within maxEdits of the query, given
+	 * the row of the edit distance table of the node (the distances from each prefix
+	 * of the query to the key of the node), and adds them as candidates. Nodes under
+	 * a match are only added if they need fewer edits than it.
+	 */
+	private void match(RoadTriesNode node, int[] row, String query, int maxEdits, int matchedEdits,
+			PriorityQueue<Candidate> candidates) {
+		int edits = row[query.length()];
+		if (edits <= maxEdits && edits < matchedEdits) {
+			if (node.bestRank != NO_RANK) {
+				candidates.add(new Candidate(edits, node.bestRank, null, node));
+			}
+			if (edits == 0) {
+				// nothing under it can do better
+				return;
+			}
+			matchedEdits = edits;
+		}
+		for (Map.Entry<Character, RoadTriesNode> entry : node.children.entrySet()) {
+			char c = entry.getKey();
+			int[] next = new int[row.length];
+			next[0] = row[0] + 1;
+			int min = next[0];
+			for (int i = 1; i < row.length; i++) {
+				int substitution = row[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+				next[i] = Math.min(substitution, Math.min(row[i], next[i - 1]) + 1);
+				min = Math.min(min, next[i]);
+			}
+			if (min <= maxEdits) {
+				match(entry.getValue(), next, query, maxEdits, matchedEdits, candidates);
+			}
+		}
+	}
+
 	// for testing. not used
 	public void traversal() {
 		traversTrie(root);
 	}
-	
+
 	// for testing. not used
 	private void traversTrie(RoadTriesNode node) {
 		if (node.isLabel){
@@ -80,6 +196,31 @@ public class RoadTrie {
 		}
 	}
 
+	/**
+	 * A subtree, or a single road, found by search(). Those needing fewer edits come
+	 * first, then those with a better rank.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		final int edits, rank;
+		final Road road;
+		final RoadTriesNode node;
+
+		Candidate(int edits, int rank, Road road, RoadTriesNode node) {
+			this.edits = edits;
+			this.rank = rank;
+			this.road = road;
+			this.node = node;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			if (edits != other.edits) {
+				return Integer.compare(edits, other.edits);
+			}
+			return Integer.compare(rank, other.rank);
+		}
+	}
+
 	/**
 	 * A inner class representing the node of the trie.
 	 * @author Hector
@@ -89,11 +230,18 @@ public class RoadTrie {
 		public boolean isLabel; // if this node is an end of a label
 		Set<Road> roads;
 		public Map<Character, RoadTriesNode> children;
+		// roads sorted by rank, and their ranks; and the best rank in the subtree
+		List<Road> rankedRoads;
+		int[] roadRanks;
+		int bestRank;
 
 		public RoadTriesNode() {
 			isLabel = false;
 			roads = new HashSet<>();
 			children = new HashMap<Character, RoadTriesNode>();
+			rankedRoads = new ArrayList<>();
+			roadRanks = new int[0];
+			bestRank = NO_RANK;
 		}
 
 		/**
@@ -111,5 +259,24 @@ public class RoadTrie {
 				node.getAllLeaves(roads);
 			}
 		}
+
+		/**
+		 * This method sorts the roads of this subtree by the given ranks, and works
+		 * out the best rank in it.
+		 * @param ranks    the rank of every road
+		 */
+		void rank(Map<Road, Integer> ranks) {
+			rankedRoads = new ArrayList<>(roads);
+			rankedRoads.sort(Comparator.comparing(ranks::get));
+			roadRanks = new int[rankedRoads.size()];
+			for (int i = 0; i < roadRanks.length; i++) {
+				roadRanks[i] = ranks.get(rankedRoads.get(i));
+			}
+			bestRank = roadRanks.length > 0 ? roadRanks[0] : NO_RANK;
+			for (RoadTriesNode node : children.values()) {
+				node.rank(ranks);
+				bestRank = Math.min(bestRank, node.bestRank);
+			}
+		}
 	}
 }
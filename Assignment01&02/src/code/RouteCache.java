@@ -0,0 +1,130 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a cache of the paths found between pairs of intersections,
+ * so that asking for the same route again doesn't search again. It holds at most a
+ * fixed number of paths, and drops the one used least recently to make room.
+ *
+ * A path is keyed by its start, its end and whether it's the shortest or the
+ * fastest one, packed into a long. The cache also has a version, which goes up
+ * whenever it is invalidated (see invalidate()) because the turn restrictions have
+ * changed. A path is only put into the cache if it was found under the current
+ * version, so a search that was already running when the restrictions changed
+ * can't put an out of date path back. The costs of roads are fixed when the graph
+ * is built, and building it again makes a new cache.
+ *
+ * The cache can be used by many threads at once. Paths are handed out as new lists,
+ * so that callers can change them as they like.
+ *
+ * @author Hector
+ *
+ */
+public class RouteCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    // in order of use, least recently used first
+    private final LinkedHashMap<Long, Segment[]> paths;
+    private int version;
+    private long hits, misses;
+
+    /**
+     * Constructor.
+     * @param capacity    the most paths held at once
+     */
+    public RouteCache(int capacity) {
+        this.capacity = capacity;
+        this.paths = new LinkedHashMap<Long, Segment[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Segment[]> eldest) {
+                return size() > RouteCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return    the current version, to be passed to put() with a path found after
+     *               calling this
+     */
+    public synchronized int version() {
+        return version;
+    }
+
+    /**
+     * This method looks up the path between two intersections.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    a new list of the segments of the path, or null if it's not cached
+     */
+    public synchronized List<Segment> get(Node start, Node end, boolean distanceFirst) {
+        Segment[] path = paths.get(key(start, end, distanceFirst));
+        if (path == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * This method caches the path between two intersections, unless the cache has
+     * been invalidated since the path was found.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @param version    what version() was before the path was searched for
+     * @param path    the path found, which may be empty if there is none
+     */
+    public synchronized void put(Node start, Node end, boolean distanceFirst, int version,
+            List<Segment> path) {
+        if (version != this.version) {
+            return;
+        }
+        paths.put(key(start, end, distanceFirst), path.toArray(new Segment[path.size()]));
+    }
+
+    /**
+     * This method drops all cached paths. It should be called whenever the turn
+     * restrictions change.
+     */
+    public synchronized void invalidate() {
+        version++;
+        paths.clear();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return    the fraction of lookups that found a path, or 0 if there has been
+     *               none
+     */
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    // node indices are far smaller than 2^31, so one bit is left for the mode
+    private static long key(Node start, Node end, boolean distanceFirst) {
+        return (long) start.index << 32 | (long) end.index << 1 | (distanceFirst ? 1 : 0);
+    }
+}
@@ -0,0 +1,98 @@
+package code;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This utility class provides a method to work out the costs from many sources to
+ * many targets at once (a distance or time matrix), which is much cheaper than
+ * finding a path for every pair.
+ *
+ * Each row of the matrix comes from one DijkstraSweep from its source, which stops
+ * as soon as every target has been settled, so turn restrictions are honoured. The
+ * rows are independent of each other, so they are worked out in parallel on a
+ * fork-join pool: the sources are split in halves until a task is small enough, and
+ * each task keeps one sweep, with its scratch arrays, for all its sources.
+ *
+ * @author Hector
+ *
+ */
+public class RouteMatrixUtil {
+
+    // a task won't be split into pieces of fewer sources than this
+    private static final int MIN_SOURCES_PER_TASK = 2;
+
+    /**
+     * This method works out the cost of the cheapest path from every source to every
+     * target.
+     * @param graph    the compact form of the graph
+     * @param restrictions
+     * @param sources    the indices of the source nodes
+     * @param targets    the indices of the target nodes
+     * @param distanceFirst    true for distances, false for times
+     * @param pool    the pool to run the sweeps on
+     * @return    matrix[i][j] is the cost from sources[i] to targets[j], or infinity if
+     *            targets[j] can't be reached from sources[i]
+     */
+    public static double[][] computeMatrix(CompactGraph graph, TurnRestrictions restrictions, int[] sources,
+            int[] targets, boolean distanceFirst, ForkJoinPool pool) {
+        double[][] matrix = new double[sources.length][];
+        if (sources.length == 0) {
+            return matrix;
+        }
+
+        // the columns of each target node, chained through nextColumn, since the same
+        // node may be asked for more than once
+        int[] firstColumn = new int[graph.numNodes()];
+        int[] nextColumn = new int[targets.length];
+        Arrays.fill(firstColumn, -1);
+        for (int j = targets.length - 1; j >= 0; j--) {
+            nextColumn[j] = firstColumn[targets[j]];
+            firstColumn[targets[j]] = j;
+        }
+
+        int grain = Math.max(MIN_SOURCES_PER_TASK, sources.length / (4 * pool.getParallelism()));
+        int numTargets = targets.length;
+        pool.invoke(new RangeTask(0, sources.length, grain, (from, to) -> {
+            DijkstraSweep sweep = new DijkstraSweep(graph, restrictions, distanceFirst);
+            for (int i = from; i < to; i++) {
+                Row row = new Row(numTargets, firstColumn, nextColumn);
+                sweep.run(sources[i], Double.POSITIVE_INFINITY, row);
+                matrix[i] = row.costs;
+            }
+        }));
+        return matrix;
+    }
+
+    /**
+     * A row of the matrix, filled in as a sweep settles the target nodes.
+     */
+    private static class Row implements DijkstraSweep.Visitor {
+
+        private final int[] firstColumn, nextColumn;
+        // the cost to each target column, infinity until the target is settled
+        private final double[] costs;
+        private int remaining;
+
+        Row(int numTargets, int[] firstColumn, int[] nextColumn) {
+            this.firstColumn = firstColumn;
+            this.nextColumn = nextColumn;
+            costs = new double[numTargets];
+            Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            remaining = numTargets;
+        }
+
+        @Override
+        public boolean settled(int node, double cost) {
+            for (int j = firstColumn[node]; j >= 0; j = nextColumn[j]) {
+                costs[j] = cost;
+                remaining--;
+            }
+            return remaining > 0;
+        }
+
+        @Override
+        public void driven(int arc, double cost) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package code;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class represents a route query engine that can be used by many threads at
+ * once. It only reads the immutable parts of a loaded graph (the compact graph, the
+ * turn restrictions and the landmarks), never the Node and Segment objects' UI
+ * state, so queries don't interfere with each other or with drawing.
+ *
+ * The scratch state of a query (see SearchSpace) is taken from a pool and given back
+ * when the query is done, so a busy service allocates no search arrays at all once
+ * the pool has one space per concurrent query.
+ *
+ * A service is tied to the graph data loaded when it was created; create a new one
+ * after loading another map.
+ *
+ * @author Hector
+ *
+ */
+public class RoutingService {
+
+    private final CompactGraph graph;
+    private final TurnRestrictions restrictions;
+    private final CostModel.Heuristic distanceHeuristic;
+    private final CostModel.Heuristic timeHeuristic;
+    private final int numStates;
+
+    // search spaces not used by any query right now
+    private final ConcurrentLinkedQueue<SearchSpace> spaces = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param graph    a loaded graph
+     * @param numThreads    the number of threads serving submitted queries
+     */
+    public RoutingService(Graph graph, int numThreads) {
+        this.graph = graph.compactGraph;
+        this.restrictions = graph.turnRestrictions;
+        this.distanceHeuristic = CostModel.euclidean(this.graph, true);
+        this.timeHeuristic = graph.timeLandmarks != null ? graph.timeLandmarks
+                : CostModel.euclidean(this.graph, false);
+        this.numStates = AStarUtil.numStates(this.graph, restrictions);
+        this.executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "routing");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This method finds the shortest (or fastest) path between two intersections on
+     * the calling thread. It can be called from any number of threads at once.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    a list of segments from start to end. Returns an empty list if
+     *               no path can be found
+     */
+    public List<Segment> findPath(Node start, Node end, boolean distanceFirst) {
+        SearchSpace space = spaces.poll();
+        if (space == null) {
+            space = new SearchSpace(numStates);
+        }
+        try {
+            return AStarUtil.findPath(graph, start, end, restrictions, distanceFirst,
+                    distanceFirst ? distanceHeuristic : timeHeuristic, space);
+        } finally {
+            spaces.offer(space);
+        }
+    }
+
+    /**
+     * This method queues a query to be run on the service's threads.
+     * @param start    the start intersection
+     * @param end    the destination
+     * @param distanceFirst    true for the shortest path, false for the fastest
+     * @return    the future path, see findPath()
+     */
+    public Future<List<Segment>> submit(Node start, Node end, boolean distanceFirst) {
+        return executor.submit(() -> findPath(start, end, distanceFirst));
+    }
+
+    /**
+     * This method stops the service's threads once the queued queries are done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * This method measures how many queries per second the service answers with 1, 2,
+     * 4, ... threads, up to the number of cores.
+     * @param args    the directory of the data files, and optionally the number of
+     *                queries to run for each thread count
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        if (args.length < 1) {
+            System.out.println("Usage: RoutingService <data directory> [queries]");
+            return;
+        }
+        File dir = new File(args[0]);
+        int numQueries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        File restrictions = new File(dir, "restrictions.tab");
+        Graph graph = new Graph();
+        graph.load(new File(dir, "nodeID-lat-lon.tab"), new File(dir, "roadID-roadInfo.tab"),
+                new File(dir, "roadSeg-roadID-length-nodeID-nodeID-coords.tab"), null,
+                restrictions.exists() ? restrictions : null);
+
+        // the same random queries for every run
+        List<Node> nodes = new ArrayList<>(graph.nodeMap.values());
+        nodes.sort(Comparator.comparingInt(node -> node.nodeID));
+        Random random = new Random(42);
+        Node[][] queries = new Node[numQueries][];
+        for (int i = 0; i < numQueries; i++) {
+            queries[i] = new Node[] { nodes.get(random.nextInt(nodes.size())),
+                    nodes.get(random.nextInt(nodes.size())) };
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        double singleThreaded = 0;
+        for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+            RoutingService service = new RoutingService(graph, threads);
+            runQueries(service, queries);  // warm up
+            long start = System.nanoTime();
+            runQueries(service, queries);
+            double perSecond = numQueries / ((System.nanoTime() - start) / 1e9);
+            service.shutdown();
+            if (threads == 1) {
+                singleThreaded = perSecond;
+            }
+            System.out.printf("%d thread(s): %.0f queries/sec, %.2fx%n", threads, perSecond,
+                    perSecond / singleThreaded);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    private static void runQueries(RoutingService service, Node[][] queries)
+            throws InterruptedException, ExecutionException {
+        List<Future<List<Segment>>> results = new ArrayList<>();
+        for (int i = 0; i < queries.length; i++) {
+            results.add(service.submit(queries[i][0], queries[i][1], (i & 1) == 0));
+        }
+        for (Future<List<Segment>> result : results) {
+            result.get();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package code;
+
+import java.util.List;
+
+/**
+ * This class represents a reusable buffer of screen coordinates, for drawing lines
+ * and polygons without making a Point for every vertex. Each thread has its own
+ * buffer (see forThread()), which only grows, so once it's big enough for the
+ * longest line drawn, projecting a line allocates nothing.
+ *
+ * @author Hector
+ *
+ */
+public class ScreenPoints {
+
+    private static final ThreadLocal<ScreenPoints> BUFFERS = ThreadLocal.withInitial(ScreenPoints::new);
+
+    // the projected points are (xs[i], ys[i]) for i from 0 to size - 1; the arrays
+    // may be longer
+    int[] xs = new int[64];
+    int[] ys = new int[64];
+    int size;
+
+    /**
+     * @return    the buffer of the calling thread. It's overwritten by the next
+     *            project() on the same thread
+     */
+    public static ScreenPoints forThread() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * This method projects locations to the screen, the same way as asPoint() plus
+     * moving the points by (dx, dy), into this buffer.
+     * @param locations
+     * @param origin    the current origin Location
+     * @param scale    the current scale
+     * @param dx    how many pixels to move the points right, e.g. half the panel width
+     * @param dy    how many pixels to move the points down
+     * @return    this buffer
+     */
+    public ScreenPoints project(List<Location> locations, Location origin, double scale, int dx, int dy) {
+        int n = locations.size();
+        if (xs.length < n) {
+            int capacity = Math.max(n, 2 * xs.length);
+            xs = new int[capacity];
+            ys = new int[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            Location location = locations.get(i);
+            xs[i] = location.screenX(origin, scale) + dx;
+            ys[i] = location.screenY(origin, scale) + dy;
+        }
+        size = n;
+        return this;
+    }
+
+    /**
+     * @param width    the width of the panel
+     * @param height    the height of the panel
+     * @return    true if all points are beyond the same edge of the panel, so
+     *            nothing drawn through them can be seen
+     */
+    public boolean isOffScreen(int width, int height) {
+        boolean left = true, right = true, above = true, below = true;
+        for (int i = 0; i < size; i++) {
+            left &= xs[i] < 0;
+            right &= xs[i] > width;
+            above &= ys[i] < 0;
+            below &= ys[i] > height;
+        }
+        return left || right || above || below;
+    }
+}
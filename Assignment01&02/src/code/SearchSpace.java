@@ -0,0 +1,75 @@
+package code;
+
+/**
+ * This class represents the scratch state of one path search: the cost, the previous
+ * state and the arc used for each search state, and the fringe. It can be reused by
+ * many searches, one at a time, without clearing the arrays: a state only counts as
+ * reached (or visited) in the current search if its stamp equals the current
+ * generation, so starting a new search just bumps the generation.
+ *
+ * A SearchSpace is not thread-safe. Concurrent searches each need their own, see
+ * RoutingService.
+ *
+ * @author Hector
+ *
+ */
+public class SearchSpace {
+
+    final double[] costFromStart;
+    final int[] cameFrom;
+    final int[] cameBy;
+    final IndexedMinHeap fringe;
+    private final int[] reachedAt;
+    private final int[] visitedAt;
+    private int generation;
+
+    /**
+     * Constructor.
+     * @param numStates    the number of search states, see AStarUtil.findPath()
+     */
+    public SearchSpace(int numStates) {
+        costFromStart = new double[numStates];
+        cameFrom = new int[numStates];
+        cameBy = new int[numStates];
+        fringe = new IndexedMinHeap(numStates);
+        reachedAt = new int[numStates];
+        visitedAt = new int[numStates];
+        generation = 0;
+    }
+
+    /**
+     * This method gets the space ready for a new search.
+     */
+    public void reset() {
+        fringe.clear();
+        generation++;
+        if (generation == 0) {
+            // the stamps have wrapped around, so they must be cleared for real
+            for (int i = 0; i < reachedAt.length; i++) {
+                reachedAt[i] = 0;
+                visitedAt[i] = 0;
+            }
+            generation = 1;
+        }
+    }
+
+    public int numStates() {
+        return costFromStart.length;
+    }
+
+    boolean isReached(int state) {
+        return reachedAt[state] == generation;
+    }
+
+    void markReached(int state) {
+        reachedAt[state] = generation;
+    }
+
+    boolean isVisited(int state) {
+        return visitedAt[state] == generation;
+    }
+
+    void markVisited(int state) {
+        visitedAt[state] = generation;
+    }
+}
@@ -3,7 +3,7 @@ package code;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Point;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +22,10 @@ public class Segment {
     // a list of all coordinates, with node_1's location being the first element
     // and node_2's location being the last
     public final List<Location> coords;
-    private Color color;
+    // coords simplified for each zoom band, see LevelOfDetailUtil
+    private final List<List<Location>> simplifiedCoords;
+    // set on the event thread, read by the render thread
+    private volatile Color color;
     // default color
     public static final Color DEFAULT_COLOUR = new Color(130, 130, 130);
     public static final Color SELECT_COLOUR = new Color(255, 192, 0);
@@ -36,54 +39,92 @@ public class Segment {
      */
     public Segment(String line, Map<Integer, Node> nodeMap, Map<Integer, Road> roadMap) {
         this.coords = new ArrayList<>();
-        String[] values = line.split("\t");
-        this.roadID = Integer.parseInt(values[0]);
+        LineScanner values = new LineScanner(line, '\t');
+        this.roadID = values.nextInt();
         this.road = roadMap.get(roadID);
-        this.length = Double.parseDouble(values[1]);
-        start = nodeMap.get(Integer.parseInt(values[2]));
+        this.length = values.nextDouble();
+        start = nodeMap.get(values.nextInt());
         // add node_1's location as the first element in ArrayList
         coords.add(start.location); 
-        end = nodeMap.get(Integer.parseInt(values[3]));
+        end = nodeMap.get(values.nextInt());
         // add all coordinates into the ArrayList
-        for (int index = 4; index < values.length;) {
-            double lat = Double.parseDouble(values[index++]);
-            double lon = Double.parseDouble(values[index++]);
+        while (values.hasNext()) {
+            double lat = values.nextDouble();
+            double lon = values.nextDouble();
             coords.add(Location.newFromLatLon(lat, lon));
         }
         // add node_2's location as the last element in ArrayList
         coords.add(end.location);
+        simplifiedCoords = LevelOfDetailUtil.simplifyForBands(coords);
         color = DEFAULT_COLOUR;
     }
 
     /**
-     * This method draws the segment.
+     * Constructor, for a segment whose values are already known, e.g. read from a
+     * snapshot.
+     * @param roadID
+     * @param road
+     * @param length
+     * @param start
+     * @param end
+     * @param coords    all coordinates, with start's location being the first element
+     *                  and end's location being the last
+     */
+    public Segment(int roadID, Road road, double length, Node start, Node end, List<Location> coords) {
+        this.roadID = roadID;
+        this.road = road;
+        this.length = length;
+        this.start = start;
+        this.end = end;
+        this.coords = coords;
+        simplifiedCoords = LevelOfDetailUtil.simplifyForBands(coords);
+        color = DEFAULT_COLOUR;
+    }
+
+    /**
+     * This method draws the segment. When zoomed out, it draws the segment
+     * simplified for the zoom band, and nothing at all if it's on a minor road
+     * (unless it's highlighted).
      * @param g    the passed Graphics object
      * @param currentOrigin    the current origin Location
      * @param currentScale    the current scale
      * @param d    the current dimension of the display panel
      */
     public void draw(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
+        draw(g, currentOrigin, currentScale, d, color);
+    }
+
+    /**
+     * Same as above, but draws the segment in the given colour rather than its own.
+     * @param g    the passed Graphics object
+     * @param currentOrigin    the current origin Location
+     * @param currentScale    the current scale
+     * @param d    the current dimension of the display panel
+     * @param color    the colour to draw in
+     */
+    public void draw(Graphics g, Location currentOrigin, double currentScale, Dimension d, Color color) {
+        if (currentScale < LevelOfDetailUtil.MINOR_FEATURE_SCALE && color == DEFAULT_COLOUR
+                && LevelOfDetailUtil.isMinor(road)) {
+            return;
+        }
+        int band = LevelOfDetailUtil.band(currentScale);
+        List<Location> coords = band < 0 ? this.coords : simplifiedCoords.get(band);
+        
         // the coordinate of display panel center
         int centrXCoord = (int) (d.getWidth() / 2);
         int centrYCoord = (int) (d.getHeight() / 2);
-        g.setColor(this.color);
-        for (int i = 0; i < coords.size() - 1; i++) {
-            // Location -> Point, and shift the point toward bottom-right
-            Point point_i = coords.get(i).asPoint(currentOrigin, currentScale);
-            Point newPoint_i = new Point(point_i.x + centrXCoord, point_i.y + centrYCoord);
-            Point point_iNext = coords.get(i + 1).asPoint(currentOrigin, currentScale);
-            Point newPoint_iNext = new Point(point_iNext.x + centrXCoord, point_iNext.y + centrYCoord);
-            
-            // for efficiency, don't render segments that are off-screen.
-            if ((newPoint_i.x < 0 && newPoint_iNext.x < 0)
-                    || (newPoint_i.x > d.width && newPoint_iNext.x > d.width)
-                    || (newPoint_i.y < 0 && newPoint_iNext.y < 0)
-                    || (newPoint_i.y > d.height && newPoint_iNext.y > d.height)) {
-                continue;
-            }
-            
-            g.drawLine(newPoint_i.x, newPoint_i.y, newPoint_iNext.x, newPoint_iNext.y);
+        // Location -> screen coordinates, shifted toward bottom-right, into the
+        // thread's reusable buffer
+        ScreenPoints points = ScreenPoints.forThread().project(coords, currentOrigin, currentScale,
+                centrXCoord, centrYCoord);
+        
+        // for efficiency, don't render segments that are off-screen.
+        if (points.isOffScreen(d.width, d.height)) {
+            return;
         }
+        
+        g.setColor(color);
+        g.drawPolyline(points.xs, points.ys, points.size);
     }
 
     /**
@@ -95,6 +136,17 @@ public class Segment {
     	this.color = color;
     }
     
+    /**
+     * @return    the bounding box of all coordinates of this segment
+     */
+    public Rectangle2D bounds() {
+        Rectangle2D bounds = new Rectangle2D.Double(start.location.x, start.location.y, 0, 0);
+        for (Location location : coords) {
+            bounds.add(location.x, location.y);
+        }
+        return bounds;
+    }
+    
     /**
      * Given one end of this segment, this method returns the other end. 
      * If the given node is not either end, this method returns null.
@@ -0,0 +1,231 @@
+package code;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class represents a cache of rendered map tiles. At each scale, the map is cut
+ * into square tiles of TILE_SIZE pixels on a grid fixed to the map (not to the
+ * screen), so that when the map is panned, the tiles still on screen are simply
+ * copied to their new place instead of being drawn again.
+ *
+ * Tiles are drawn on background threads with Graph.redrawBase(), i.e. without any
+ * highlight, so they stay valid whatever is selected; highlights are drawn on top of
+ * them by the caller. A tile not drawn yet is left blank, and the given callback is
+ * called once it is there, so that the screen can be repainted.
+ *
+ * Tiles are kept in least-recently-used order, and the least recently used ones are
+ * dropped once the tiles take more memory than the budget.
+ *
+ * A tile that fails to draw is left blank, and isn't tried again until the cache is
+ * cleared; only the first failure since then is reported.
+ *
+ * @author Hector
+ *
+ */
+public class TileCache {
+
+    // the size of a tile, in pixels
+    public static final int TILE_SIZE = 256;
+    // tiles are drawn this many pixels bigger on each side and then cut, so that
+    // intersections on the edge of a tile are drawn on both tiles
+    private static final int TILE_PADDING = 8;
+    // the default memory budget, in bytes
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    // bytes per pixel of a tile
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final Graph graph;
+    private final Runnable onTileReady;
+    private final int maxTiles;
+    private final ExecutorService renderers;
+
+    // all cached tiles, least recently used first
+    private final LinkedHashMap<TileKey, BufferedImage> tiles;
+    // the tiles being drawn right now
+    private final Set<TileKey> pending = new HashSet<>();
+    // the tiles that failed to draw, which are not tried again
+    private final Set<TileKey> failed = new HashSet<>();
+    // bumped by clear(), so that tiles drawn from old data are thrown away
+    private int generation;
+    // set by shutdown(), after which no more tiles are drawn
+    private boolean isShutDown;
+
+    /**
+     * Constructor.
+     * @param graph    the graph to be drawn
+     * @param budget    how many bytes the tiles may take
+     * @param onTileReady    called (on a background thread) when a tile is drawn
+     */
+    public TileCache(Graph graph, long budget, Runnable onTileReady) {
+        this.graph = graph;
+        this.onTileReady = onTileReady;
+        this.maxTiles = (int) Math.max(1, budget / ((long) TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL));
+        this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.renderers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tile renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This method draws the map at the given origin and scale from the cached tiles,
+     * and queues the missing ones to be drawn.
+     * @param g     the passed Graphics object
+     * @param currentOrigin    the current origin Location
+     * @param currentScale     the current scale
+     * @param d    the current dimension of the display panel
+     * @return    true if every tile on screen was drawn, false if some are missing
+     */
+    public boolean draw(Graphics g, Location currentOrigin, double currentScale, Dimension d) {
+        /*
+         * The map pixel of a location is (x * scale, -y * scale), and the screen
+         * shows the map pixels from (offsetX, offsetY) on, see Location.asPoint()
+         * and Node.draw().
+         */
+        double offsetX = currentOrigin.x * currentScale - d.width / 2;
+        double offsetY = -currentOrigin.y * currentScale - d.height / 2;
+        int fromColumn = (int) Math.floor(offsetX / TILE_SIZE);
+        int toColumn = (int) Math.floor((offsetX + d.width) / TILE_SIZE);
+        int fromRow = (int) Math.floor(offsetY / TILE_SIZE);
+        int toRow = (int) Math.floor((offsetY + d.height) / TILE_SIZE);
+
+        boolean complete = true;
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                TileKey key = new TileKey(currentScale, column, row);
+                BufferedImage tile = get(key);
+                if (tile == null) {
+                    complete = false;
+                    continue;
+                }
+                int x = (int) Math.floor((long) column * TILE_SIZE - offsetX);
+                int y = (int) Math.floor((long) row * TILE_SIZE - offsetY);
+                g.drawImage(tile, x, y, null);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * This method throws away all tiles, e.g. when another map is loaded.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        pending.clear();
+        failed.clear();
+        generation++;
+    }
+
+    /**
+     * @return    the number of cached tiles
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * This method stops the background threads. A frame still being drawn from this
+     * cache, e.g. one started just before another map was loaded, gets the cached
+     * tiles only.
+     */
+    public synchronized void shutdown() {
+        isShutDown = true;
+        renderers.shutdownNow();
+    }
+
+    /**
+     * @return    the tile if it's cached, or null if not, in which case it's queued
+     *            to be drawn unless the cache is shut down
+     */
+    private synchronized BufferedImage get(TileKey key) {
+        BufferedImage tile = tiles.get(key);
+        if (tile == null && !isShutDown && !failed.contains(key) && pending.add(key)) {
+            int expected = generation;
+            renderers.execute(() -> {
+                BufferedImage rendered;
+                try {
+                    rendered = render(key);
+                } catch (RuntimeException e) {
+                    // caught here, so that it doesn't kill the thread drawing tiles
+                    synchronized (this) {
+                        if (generation == expected) {
+                            pending.remove(key);
+                            if (failed.isEmpty()) {
+                                System.out.println("Cannot draw a map tile: " + e);
+                            }
+                            failed.add(key);
+                        }
+                    }
+                    return;
+                }
+                synchronized (this) {
+                    if (generation != expected) {
+                        return;
+                    }
+                    pending.remove(key);
+                    tiles.put(key, rendered);
+                }
+                onTileReady.run();
+            });
+        }
+        return tile;
+    }
+
+    private BufferedImage render(TileKey key) {
+        int size = TILE_SIZE + 2 * TILE_PADDING;
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.translate(-TILE_PADDING, -TILE_PADDING);
+        // the origin that puts the middle of the tile in the middle of the padded area
+        Location origin = new Location(((double) key.column * TILE_SIZE + TILE_SIZE / 2) / key.scale,
+                -((double) key.row * TILE_SIZE + TILE_SIZE / 2) / key.scale);
+        graph.redrawBase(g, origin, key.scale, new Dimension(size, size));
+        g.dispose();
+        return tile;
+    }
+
+    /**
+     * A tile's place: the scale, and the column and row in the grid of that scale.
+     */
+    private static class TileKey {
+        final double scale;
+        final int column, row;
+
+        TileKey(double scale, int column, int row) {
+            this.scale = scale;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(scale);
+            return 31 * (31 * (int) (bits ^ (bits >>> 32)) + column) + row;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return scale == other.scale && column == other.column && row == other.row;
+        }
+    }
+}
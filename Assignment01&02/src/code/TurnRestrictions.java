@@ -0,0 +1,179 @@
+package code;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * This class represents the turn restrictions of the graph, indexed by arc so
+ * that a search can tell whether a turn is banned without going through every
+ * Restriction.
+ *
+ * A restriction bans driving from nodeFrom to rstrNode along roadFrom and then on
+ * to nodeTo along roadTo. It is turned into a banned pair of arcs (in, out) of the
+ * compact graph: in goes from nodeFrom into rstrNode, out goes from rstrNode to
+ * nodeTo. Parallel segments of the same road give one pair each.
+ *
+ * Arcs that some turn is banned from are "restricted-in" arcs, and get a dense
+ * index 0 to numRestrictedIn() - 1; arcs that some turn is banned onto are
+ * "restricted-out" arcs and are indexed the same way. The searches use these to
+ * keep one state per restricted arc on top of one state per node, which is the
+ * turn-aware graph: all other ways of arriving at (or leaving) a node allow the
+ * same turns, so they can share the node's state.
+ *
+ * @author Hector
+ *
+ */
+public class TurnRestrictions {
+
+    // arc -> restricted-in / restricted-out index, or -1 if none
+    private final int[] inIndex;
+    private final int[] outIndex;
+    // restricted-in / restricted-out index -> arc
+    private final int[] inArcs;
+    private final int[] outArcs;
+    // the arcs banned after restricted-in arc i are at positions banOffsets[i] to
+    // banOffsets[i + 1] - 1 of bannedArcs
+    private final int[] banOffsets;
+    private final int[] bannedArcs;
+    // marks the nodes where some turn is banned
+    private final boolean[] restrictedNodes;
+
+    /**
+     * Constructor. Indexes the given restrictions over the arcs of the graph.
+     * Restrictions naming nodes or roads that are not in the graph are ignored.
+     * @param graph    the compact form of the graph
+     * @param restrictions
+     */
+    public TurnRestrictions(CompactGraph graph, Set<Restriction> restrictions) {
+        inIndex = new int[graph.numArcs()];
+        outIndex = new int[graph.numArcs()];
+        Arrays.fill(inIndex, -1);
+        Arrays.fill(outIndex, -1);
+        restrictedNodes = new boolean[graph.numNodes()];
+
+        // find the banned pairs, each packed into a long as (in << 32 | out)
+        long[] pairs = new long[restrictions.size()];
+        int numPairs = 0;
+        for (Restriction restr : restrictions) {
+            if (restr.nodeFrom == null || restr.roadFrom == null || restr.rstrNode == null
+                    || restr.roadTo == null || restr.nodeTo == null) {
+                continue;
+            }
+            int from = restr.nodeFrom.index;
+            int via = restr.rstrNode.index;
+            for (int in = graph.offsets[from]; in < graph.offsets[from + 1]; in++) {
+                if (graph.targets[in] != via || graph.segment(in).roadID != restr.roadFrom.roadID) {
+                    continue;
+                }
+                for (int out = graph.offsets[via]; out < graph.offsets[via + 1]; out++) {
+                    if (graph.targets[out] != restr.nodeTo.index
+                            || graph.segment(out).roadID != restr.roadTo.roadID) {
+                        continue;
+                    }
+                    if (numPairs == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+                    }
+                    pairs[numPairs++] = (long) in << 32 | out;
+                    restrictedNodes[via] = true;
+                }
+            }
+        }
+
+        // sort the pairs, which groups them by in arc, and drop duplicates
+        Arrays.sort(pairs, 0, numPairs);
+        int numUnique = 0;
+        for (int i = 0; i < numPairs; i++) {
+            if (numUnique == 0 || pairs[i] != pairs[numUnique - 1]) {
+                pairs[numUnique++] = pairs[i];
+            }
+        }
+
+        bannedArcs = new int[numUnique];
+        int[] ins = new int[numUnique];
+        int[] outs = new int[numUnique];
+        int[] offsets = new int[numUnique + 1];
+        int numIn = 0, numOut = 0;
+        for (int i = 0; i < numUnique; i++) {
+            int in = (int) (pairs[i] >>> 32);
+            int out = (int) pairs[i];
+            if (inIndex[in] < 0) {
+                inIndex[in] = numIn;
+                ins[numIn++] = in;
+                offsets[numIn] = offsets[numIn - 1];
+            }
+            if (outIndex[out] < 0) {
+                outIndex[out] = numOut;
+                outs[numOut++] = out;
+            }
+            bannedArcs[offsets[numIn]++] = out;
+        }
+        inArcs = Arrays.copyOf(ins, numIn);
+        outArcs = Arrays.copyOf(outs, numOut);
+        banOffsets = Arrays.copyOf(offsets, numIn + 1);
+    }
+
+    /**
+     * @param in    the arc driven into a node, or -1 at the start
+     * @param out    the arc driven out of that node, or -1 at the end
+     * @return    true if turning from in onto out is banned
+     */
+    public boolean isBanned(int in, int out) {
+        if (in < 0 || out < 0 || inIndex[in] < 0) {
+            return false;
+        }
+        int i = inIndex[in];
+        for (int b = banOffsets[i]; b < banOffsets[i + 1]; b++) {
+            if (bannedArcs[b] == out) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param node
+     * @return    true if some turn is banned at the given node
+     */
+    public boolean isRestricted(int node) {
+        return restrictedNodes[node];
+    }
+
+    /**
+     * @param arc
+     * @return    the restricted-in index of the arc, or -1 if no turn is banned from it
+     */
+    public int inIndex(int arc) {
+        return inIndex[arc];
+    }
+
+    /**
+     * @param arc
+     * @return    the restricted-out index of the arc, or -1 if no turn is banned onto it
+     */
+    public int outIndex(int arc) {
+        return outIndex[arc];
+    }
+
+    public int inArc(int index) {
+        return inArcs[index];
+    }
+
+    public int outArc(int index) {
+        return outArcs[index];
+    }
+
+    public int numRestrictedIn() {
+        return inArcs.length;
+    }
+
+    public int numRestrictedOut() {
+        return outArcs.length;
+    }
+
+    /**
+     * @return    the number of banned (in, out) arc pairs
+     */
+    public int numBannedTurns() {
+        return bannedArcs.length;
+    }
+}
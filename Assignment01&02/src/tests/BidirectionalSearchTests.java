@@ -0,0 +1,100 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.Graph;
+import code.Node;
+import code.Restriction;
+
+/**
+ * Checks bidirectional A* against A* from the start only: random pairs of
+ * intersections of the small data set must get paths of the same cost either way,
+ * by distance and by time, with and without turn restrictions.
+ *
+ * @author Hector
+ *
+ */
+public class BidirectionalSearchTests {
+
+    private static final int PAIRS = 300;
+    // how many turns of random routes are banned for the tests with restrictions
+    private static final int BANNED_TURNS = 200;
+
+    private static Graph graph;
+    private static List<Node> nodes;
+    private static Set<Restriction> restrictions;
+    // the routes whose turns were banned, which must all go another way
+    private static Node[][] bannedRoutes;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        nodes = RouteTestUtil.nodes(graph);
+
+        // ban a turn of each of some random routes, so that the restrictions are on
+        // roads that routes actually take
+        Random random = new Random(0);
+        bannedRoutes = RouteTestUtil.randomPairs(nodes, random, BANNED_TURNS);
+        restrictions = RouteTestUtil.banTurns(graph, bannedRoutes, random);
+        assertFalse(restrictions.isEmpty());
+    }
+
+    @Test
+    /**
+     * The shortest paths cost the same with no restrictions.
+     */
+    public void testByDistance() {
+        graph.setRestrictions(Collections.emptySet());
+        checkRandomPairs(new Random(1), true);
+    }
+
+    @Test
+    /**
+     * The fastest paths cost the same with no restrictions.
+     */
+    public void testByTime() {
+        graph.setRestrictions(Collections.emptySet());
+        checkRandomPairs(new Random(2), false);
+    }
+
+    @Test
+    /**
+     * The shortest paths cost the same when some turns are banned.
+     */
+    public void testByDistanceWithRestrictions() {
+        graph.setRestrictions(restrictions);
+        checkRandomPairs(new Random(3), true);
+        checkPairs(bannedRoutes, true);
+    }
+
+    @Test
+    /**
+     * The fastest paths cost the same when some turns are banned.
+     */
+    public void testByTimeWithRestrictions() {
+        graph.setRestrictions(restrictions);
+        checkRandomPairs(new Random(4), false);
+        checkPairs(bannedRoutes, false);
+    }
+
+    private static void checkRandomPairs(Random random, boolean distanceFirst) {
+        checkPairs(RouteTestUtil.randomPairs(nodes, random, PAIRS), distanceFirst);
+    }
+
+    private static void checkPairs(Node[][] pairs, boolean distanceFirst) {
+        for (Node[] pair : pairs) {
+            String when = pair[0].nodeID + " to " + pair[1].nodeID;
+            RouteTestUtil.assertSameCost(when, pair[0], pair[1],
+                    graph.findPath(pair[0], pair[1], distanceFirst),
+                    graph.findPathBidirectional(pair[0], pair[1], distanceFirst), distanceFirst);
+        }
+    }
+}
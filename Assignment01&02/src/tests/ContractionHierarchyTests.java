@@ -0,0 +1,69 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.Graph;
+import code.Node;
+
+/**
+ * Checks the routes found with contraction hierarchies against those found by A*:
+ * random pairs of intersections of the small data set, which has no turn
+ * restrictions, must get paths of the same cost either way.
+ *
+ * @author Hector
+ *
+ */
+public class ContractionHierarchyTests {
+
+    private static final int PAIRS = 300;
+
+    private static Graph graph;
+    private static List<Node> nodes;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        graph.prepareContractionHierarchies();
+        nodes = RouteTestUtil.nodes(graph);
+    }
+
+    @Test
+    /**
+     * The shortest paths by distance cost the same as those found by A*.
+     */
+    public void testByDistance() {
+        checkRandomPairs(new Random(1), true);
+    }
+
+    @Test
+    /**
+     * The fastest paths cost the same as those found by A*.
+     */
+    public void testByTime() {
+        checkRandomPairs(new Random(2), false);
+    }
+
+    @Test
+    /**
+     * Going nowhere needs no segment.
+     */
+    public void testSameStartAndEnd() {
+        Node node = nodes.get(0);
+        assertTrue(graph.findPathCH(node, node, true).isEmpty());
+    }
+
+    private static void checkRandomPairs(Random random, boolean distanceFirst) {
+        for (Node[] pair : RouteTestUtil.randomPairs(nodes, random, PAIRS)) {
+            String when = pair[0].nodeID + " to " + pair[1].nodeID;
+            RouteTestUtil.assertSameCost(when, pair[0], pair[1],
+                    graph.findPath(pair[0], pair[1], distanceFirst),
+                    graph.findPathCH(pair[0], pair[1], distanceFirst), distanceFirst);
+        }
+    }
+}
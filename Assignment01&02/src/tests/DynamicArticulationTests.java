@@ -0,0 +1,150 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.ArticulationUtil;
+import code.Biconnectivity;
+import code.CompactGraph;
+import code.DynamicArticulation;
+import code.Graph;
+import code.Node;
+import code.Segment;
+
+/**
+ * Checks DynamicArticulation against ArticulationUtil: random segments of the small
+ * data set are closed and reopened, and after every change the articulation points
+ * and bridges kept up to date must be the same as those found by searching the open
+ * segments from scratch.
+ *
+ * @author Hector
+ *
+ */
+public class DynamicArticulationTests {
+
+    private static final int STEPS = 300;
+
+    private static Graph graph;
+    private static CompactGraph compact;
+    // the segments by index, and all nodes
+    private static Segment[] segments;
+    private static List<Node> nodes;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        compact = graph.getCompactGraph();
+        segments = new Segment[compact.numSegments()];
+        for (int arc = 0; arc < compact.numArcs(); arc++) {
+            Segment seg = compact.segment(arc);
+            segments[compact.segmentIndex(seg)] = seg;
+        }
+        nodes = RouteTestUtil.nodes(graph);
+    }
+
+    @Test
+    /**
+     * With nothing closed, the articulation points and bridges are those of the
+     * whole graph.
+     */
+    public void testNothingClosed() {
+        DynamicArticulation dynamic = graph.trackArticulationPoints();
+        assertEquals(graph.findArticulationPoints(), dynamic.articulationPoints());
+        assertMatchesRecompute(dynamic, "nothing closed");
+    }
+
+    @Test
+    /**
+     * Mostly closes segments, so that the graph falls apart bit by bit.
+     */
+    public void testMostlyClosing() {
+        checkRandomChanges(new Random(1), 3);
+    }
+
+    @Test
+    /**
+     * Closes and reopens segments about as often, so that blocks are both split
+     * and merged again.
+     */
+    public void testClosingAndReopening() {
+        checkRandomChanges(new Random(2), 1);
+    }
+
+    @Test
+    /**
+     * Closes many segments first, then reopens all of them one by one, which must
+     * end up with the articulation points of the whole graph again.
+     */
+    public void testReopeningEverything() {
+        Random random = new Random(3);
+        DynamicArticulation dynamic = graph.trackArticulationPoints();
+        List<Integer> closed = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            int seg = random.nextInt(segments.length);
+            if (dynamic.close(seg)) {
+                closed.add(seg);
+            }
+        }
+        assertMatchesRecompute(dynamic, "after closing");
+        while (!closed.isEmpty()) {
+            assertTrue(dynamic.open(closed.remove(random.nextInt(closed.size()))));
+            assertMatchesRecompute(dynamic, closed.size() + " still closed");
+        }
+        assertEquals(0, dynamic.numClosed());
+        assertEquals(graph.findArticulationPoints(), dynamic.articulationPoints());
+    }
+
+    /**
+     * Makes STEPS random changes, closing a segment closeWeight times as often as
+     * reopening one, and checks the articulation points after each.
+     */
+    private static void checkRandomChanges(Random random, int closeWeight) {
+        DynamicArticulation dynamic = graph.trackArticulationPoints();
+        List<Integer> closed = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            if (closed.isEmpty() || random.nextInt(closeWeight + 1) != 0) {
+                int seg = random.nextInt(segments.length);
+                // closing a closed segment changes nothing
+                boolean wasClosed = dynamic.isClosed(seg);
+                assertEquals(!wasClosed, dynamic.close(segments[seg]));
+                if (!wasClosed) {
+                    closed.add(seg);
+                }
+            } else {
+                assertTrue(dynamic.open(closed.remove(random.nextInt(closed.size()))));
+            }
+            assertEquals(closed.size(), dynamic.numClosed());
+            assertMatchesRecompute(dynamic, "step " + step);
+        }
+    }
+
+    /**
+     * Searches the open segments from scratch and compares the articulation points
+     * and the bridges.
+     */
+    private static void assertMatchesRecompute(DynamicArticulation dynamic, String when) {
+        List<Segment> open = new ArrayList<>();
+        for (int i = 0; i < segments.length; i++) {
+            if (!dynamic.isClosed(i)) {
+                open.add(segments[i]);
+            }
+        }
+        Biconnectivity expected = ArticulationUtil.findBiconnectivity(new CompactGraph(nodes, open));
+        Set<Node> actual = dynamic.articulationPoints();
+        assertEquals(when, expected.articulationPoints(), actual);
+        assertEquals(when, expected.numArticulationPoints(), dynamic.numArticulationPoints());
+        Set<Segment> bridges = new HashSet<>(expected.bridges());
+        for (int i = 0; i < segments.length; i++) {
+            assertEquals(when + ", " + segments[i], bridges.contains(segments[i]), dynamic.isBridge(i));
+        }
+    }
+}
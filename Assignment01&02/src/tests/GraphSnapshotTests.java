@@ -0,0 +1,252 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.CompactGraph;
+import code.Graph;
+import code.GraphSnapshot;
+import code.Location;
+import code.Node;
+import code.Polygon;
+import code.Restriction;
+import code.Road;
+import code.Segment;
+
+/**
+ * Checks that a graph read back from a snapshot is the graph that was saved: the
+ * small data set, with the polygons of the large one and some turn restrictions, is
+ * copied to a temporary directory, parsed and saved, then loaded again through
+ * Graph.load(), which must read the snapshot. Nodes, roads, segments with their
+ * coordinates, polygons, restrictions and road completions must all be the same.
+ * Snapshots that are out of date, of another format, made from other optional files
+ * or cut short must not be read.
+ *
+ * @author Hector
+ *
+ */
+public class GraphSnapshotTests {
+
+    private static final int RESTRICTIONS = 100;
+    private static final int PREFIXES = 500;
+
+    private static File dir;
+    private static File[] files;
+    private static File snapshot;
+    private static Graph parsed;
+
+    @BeforeClass
+    public static void saveSnapshot() throws IOException {
+        dir = Files.createTempDirectory("graph-snapshot-test").toFile();
+        files = new File[] { copy(new File(RouteTestUtil.DATA, "nodeID-lat-lon.tab")),
+                copy(new File(RouteTestUtil.DATA, "roadID-roadInfo.tab")),
+                copy(new File(RouteTestUtil.DATA, "roadSeg-roadID-length-nodeID-nodeID-coords.tab")),
+                copy(new File("data/large/polygon-shapes.mp")), new File(dir, "restrictions.tab") };
+
+        // restrictions on turns that routes take
+        Graph small = RouteTestUtil.loadSmall();
+        Random random = new Random(0);
+        try (PrintWriter out = new PrintWriter(files[4])) {
+            out.println("NodeID\tRoadID\tNodeID\tRoadID\tNodeID");
+            for (Node[] pair : RouteTestUtil.randomPairs(RouteTestUtil.nodes(small), random, RESTRICTIONS)) {
+                List<Segment> path = small.findPath(pair[0], pair[1], true);
+                if (path.size() >= 2) {
+                    RouteTestUtil.Turn turn = RouteTestUtil.turnOf(path, pair[0],
+                            random.nextInt(path.size() - 1));
+                    out.println(turn.from.nodeID + "\t" + turn.roadFrom.roadID + "\t" + turn.via.nodeID
+                            + "\t" + turn.roadTo.roadID + "\t" + turn.to.nodeID);
+                }
+            }
+        }
+
+        parsed = new Graph();
+        parsed.load(files[0], files[1], files[2], files[3], files[4]);
+        assertFalse(parsed.getRestrictions().isEmpty());
+        assertFalse(parsed.getPolygons().isEmpty());
+        snapshot = new File(dir, GraphSnapshot.FILENAME);
+        GraphSnapshot.save(parsed, snapshot, true, true);
+    }
+
+    @AfterClass
+    public static void deleteFiles() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    /**
+     * Graph.load() reads the snapshot, and gets the same graph as was parsed.
+     */
+    public void testRoundTrip() {
+        Graph read = new Graph();
+        read.load(files[0], files[1], files[2], files[3], files[4]);
+        assertEquals(Collections.singleton(snapshot), read.getLoadTimes().keySet());
+
+        // nodes, in the same order
+        CompactGraph expected = parsed.getCompactGraph(), actual = read.getCompactGraph();
+        assertEquals(expected.numNodes(), actual.numNodes());
+        for (int i = 0; i < expected.numNodes(); i++) {
+            assertEquals(expected.node(i).nodeID, actual.node(i).nodeID);
+            assertEquals(expected.node(i).location, actual.node(i).location);
+        }
+
+        assertEquals(roads(parsed), roads(read));
+        assertEquals(segments(expected), segments(actual));
+        assertEquals(polygons(parsed), polygons(read));
+        assertEquals(restrictions(parsed), restrictions(read));
+
+        // the same roads complete the same prefixes
+        Random random = new Random(1);
+        List<Road> roads = new ArrayList<>(parsed.getRoads().values());
+        roads.sort((a, b) -> Integer.compare(a.roadID, b.roadID));
+        for (int i = 0; i < PREFIXES; i++) {
+            String label = roads.get(random.nextInt(roads.size())).label;
+            String prefix = label.substring(0, random.nextInt(label.length() + 1));
+            assertEquals(prefix, roadIDs(parsed.completeRoad(prefix)), roadIDs(read.completeRoad(prefix)));
+        }
+    }
+
+    @Test
+    /**
+     * A snapshot made with polygons and restrictions isn't read for a load without
+     * either, which leaves the graph as it was.
+     */
+    public void testOtherOptionalFiles() {
+        Graph graph = new Graph();
+        assertFalse(GraphSnapshot.load(snapshot, graph, false, true));
+        assertFalse(GraphSnapshot.load(snapshot, graph, true, false));
+        assertFalse(GraphSnapshot.load(snapshot, graph, false, false));
+        assertTrue(graph.getRoads().isEmpty());
+        assertTrue(GraphSnapshot.load(snapshot, graph, true, true));
+    }
+
+    @Test
+    /**
+     * Files that aren't snapshots, or are cut short, aren't read.
+     */
+    public void testCorrupted() throws IOException {
+        File other = new File(dir, "other.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(other))) {
+            out.writeInt(0x12345678);
+            out.writeInt(3);
+        }
+        assertFalse(GraphSnapshot.load(other, new Graph(), true, true));
+
+        Files.copy(snapshot.toPath(), other.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (RandomAccessFile file = new RandomAccessFile(other, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertFalse(GraphSnapshot.load(other, new Graph(), true, true));
+        assertFalse(GraphSnapshot.load(new File(dir, "missing.bin"), new Graph(), true, true));
+        other.delete();
+    }
+
+    @Test
+    /**
+     * A snapshot older than any of its data files is out of date, and then
+     * Graph.load() parses the data files instead.
+     */
+    public void testOutOfDate() {
+        assertTrue(GraphSnapshot.isUpToDate(snapshot, files));
+        assertFalse(GraphSnapshot.isUpToDate(new File(dir, "missing.bin"), files));
+        long saved = snapshot.lastModified();
+        try {
+            assertTrue(snapshot.setLastModified(files[2].lastModified() - 10000));
+            assertFalse(GraphSnapshot.isUpToDate(snapshot, files));
+            Graph graph = new Graph();
+            graph.load(files[0], files[1], files[2], files[3], files[4]);
+            assertFalse(graph.getLoadTimes().containsKey(snapshot));
+            assertEquals(roads(parsed), roads(graph));
+        } finally {
+            snapshot.setLastModified(saved);
+        }
+    }
+
+    private static File copy(File file) throws IOException {
+        File to = new File(dir, file.getName());
+        Files.copy(file.toPath(), to.toPath());
+        // older than the snapshot to be written
+        to.setLastModified(System.currentTimeMillis() - 60000);
+        return to;
+    }
+
+    private static Set<String> roads(Graph graph) {
+        Set<String> roads = new HashSet<>();
+        for (Road road : graph.getRoads().values()) {
+            roads.add(road.roadID + " " + road.type + " " + road.label + " " + road.city + " " + road.isOneWay
+                    + " " + road.speedLimit + " " + road.roadClass + " " + road.notForCar + " "
+                    + road.notForPedestrian + " " + road.notForBicycle + " " + road.roadSegments.size());
+        }
+        return roads;
+    }
+
+    private static Set<String> segments(CompactGraph graph) {
+        Set<String> segments = new HashSet<>();
+        for (int arc = 0; arc < graph.numArcs(); arc++) {
+            Segment seg = graph.segment(arc);
+            StringBuilder str = new StringBuilder();
+            str.append(seg.roadID + " " + seg.length + " " + seg.start.nodeID + " " + seg.end.nodeID);
+            for (Location location : seg.coords) {
+                str.append(" " + location.x + "," + location.y);
+            }
+            segments.add(str.toString());
+        }
+        return segments;
+    }
+
+    private static Set<String> polygons(Graph graph) {
+        Set<String> polygons = new HashSet<>();
+        for (Polygon polygon : graph.getPolygons()) {
+            List<String> rings = new ArrayList<>();
+            for (List<Location> ring : polygon.locations) {
+                StringBuilder str = new StringBuilder();
+                for (Location location : ring) {
+                    str.append(location.x + "," + location.y + " ");
+                }
+                rings.add(str.toString());
+            }
+            Collections.sort(rings);
+            polygons.add(polygon.type + " " + polygon.label + " " + polygon.endLevel + " " + polygon.cityIdx
+                    + " " + rings);
+        }
+        return polygons;
+    }
+
+    private static Set<String> restrictions(Graph graph) {
+        Set<String> restrictions = new HashSet<>();
+        for (Restriction restriction : graph.getRestrictions()) {
+            restrictions.add(restriction.toString());
+        }
+        return restrictions;
+    }
+
+    private static List<Integer> roadIDs(List<Road> roads) {
+        List<Integer> ids = new ArrayList<>();
+        for (Road road : roads) {
+            ids.add(road.roadID);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,214 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.CompactGraph;
+import code.Graph;
+import code.Isochrone;
+import code.Location;
+import code.Node;
+import code.Restriction;
+import code.Segment;
+
+/**
+ * Checks isochrones on the small data set. The nodes reached, and the time to each,
+ * must be those of the fastest paths found by A*, with and without turn
+ * restrictions, and isochrones found many at once must be those found one by one.
+ * The outline's rings must be closed paths of horizontal and vertical sides,
+ * enclosing everything reached (every node, and the middle of every arc that can be
+ * driven within the budget) and some area.
+ *
+ * @author Hector
+ *
+ */
+public class IsochroneTests {
+
+    private static final int ORIGINS = 50;
+    private static final double[] MINUTES = { 0.5, 2, 5, 10 };
+    // how many origins to check the nodes reached from against A*, which takes a
+    // search per node
+    private static final int CHECKED_ORIGINS = 8;
+    private static final double CHECKED_MINUTES = 4;
+    private static final int BANNED_TURNS = 200;
+
+    private static Graph graph;
+    private static CompactGraph compact;
+    private static List<Node> nodes;
+    private static Set<Restriction> restrictions;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        compact = graph.getCompactGraph();
+        nodes = RouteTestUtil.nodes(graph);
+        Random random = new Random(0);
+        restrictions = RouteTestUtil.banTurns(graph, RouteTestUtil.randomPairs(nodes, random, BANNED_TURNS),
+                random);
+        assertFalse(restrictions.isEmpty());
+    }
+
+    @Test
+    /**
+     * The nodes reached, and when, are those A* gets to within the budget.
+     */
+    public void testReachedMatchesRoutes() {
+        graph.setRestrictions(Collections.emptySet());
+        checkReached(new Random(1));
+    }
+
+    @Test
+    /**
+     * The same, with some turns banned.
+     */
+    public void testReachedMatchesRoutesWithRestrictions() {
+        graph.setRestrictions(restrictions);
+        checkReached(new Random(2));
+    }
+
+    @Test
+    /**
+     * Isochrones found all at once, in parallel, are the same as those found one at
+     * a time, repeated origins included.
+     */
+    public void testManyOrigins() {
+        graph.setRestrictions(restrictions);
+        Random random = new Random(3);
+        List<Node> origins = new ArrayList<>();
+        for (int i = 0; i < ORIGINS; i++) {
+            origins.add(nodes.get(random.nextInt(nodes.size())));
+        }
+        origins.add(origins.get(0));
+        Isochrone[] isochrones = graph.findIsochrones(origins, CHECKED_MINUTES);
+        assertEquals(origins.size(), isochrones.length);
+        for (int i = 0; i < origins.size(); i++) {
+            Isochrone expected = graph.findIsochrone(origins.get(i), CHECKED_MINUTES);
+            assertEquals(origins.get(i), isochrones[i].origin());
+            assertEquals(expected.numNodes(), isochrones[i].numNodes());
+            for (int j = 0; j < expected.numNodes(); j++) {
+                assertEquals(expected.node(j), isochrones[i].node(j));
+                assertEquals(expected.time(j), isochrones[i].time(j), 0);
+            }
+            assertEquals(expected.boundary(), isochrones[i].boundary());
+        }
+    }
+
+    @Test
+    /**
+     * Everything reached from random origins is inside the outline.
+     */
+    public void testOutlineEnclosesReached() {
+        graph.setRestrictions(Collections.emptySet());
+        Random random = new Random(0);
+        for (int i = 0; i < ORIGINS; i++) {
+            Node origin = nodes.get(random.nextInt(nodes.size()));
+            for (double minutes : MINUTES) {
+                checkOutline(graph.findIsochrone(origin, minutes), minutes / 60);
+            }
+        }
+    }
+
+    @Test
+    /**
+     * With no time to drive anywhere, the outline is the one cell of the origin.
+     */
+    public void testOriginOnly() {
+        graph.setRestrictions(Collections.emptySet());
+        Node origin = nodes.get(0);
+        Isochrone isochrone = graph.findIsochrone(origin, 0);
+        assertEquals(1, isochrone.numNodes());
+        assertEquals(1, isochrone.boundary().size());
+        assertEquals(4, isochrone.boundary().get(0).size());
+        checkOutline(isochrone, 0);
+    }
+
+    /**
+     * Checks the isochrones of random origins against the fastest path found by A*
+     * to every node: a node is reached if and only if that path fits the budget, and
+     * then at its cost. Nodes whose path costs about the budget could go either way.
+     */
+    private static void checkReached(Random random) {
+        double budget = CHECKED_MINUTES / 60;
+        for (int i = 0; i < CHECKED_ORIGINS; i++) {
+            Node origin = nodes.get(random.nextInt(nodes.size()));
+            Isochrone isochrone = graph.findIsochrone(origin, CHECKED_MINUTES);
+            Map<Node, Double> times = new HashMap<>();
+            double last = 0;
+            for (int j = 0; j < isochrone.numNodes(); j++) {
+                // fastest first
+                assertTrue(isochrone.time(j) >= last);
+                last = isochrone.time(j);
+                assertTrue(isochrone.time(j) <= budget);
+                times.put(compact.node(isochrone.node(j)), isochrone.time(j));
+            }
+            assertEquals(times.keySet(), isochrone.reachedNodes());
+            assertEquals(0, times.get(origin), 0);
+
+            for (Node node : nodes) {
+                if (node == origin) {
+                    continue;
+                }
+                String when = origin.nodeID + " to " + node.nodeID;
+                List<Segment> path = graph.findPath(origin, node, false);
+                double expected = path.isEmpty() ? Double.POSITIVE_INFINITY : RouteTestUtil.cost(path, false);
+                if (Math.abs(expected - budget) <= RouteTestUtil.TOLERANCE) {
+                    continue;
+                }
+                if (expected < budget) {
+                    assertTrue(when + " isn't reached", times.containsKey(node));
+                    assertEquals(when, expected, times.get(node), RouteTestUtil.TOLERANCE);
+                } else {
+                    assertFalse(when + " is reached", times.containsKey(node));
+                }
+            }
+        }
+    }
+
+    private static void checkOutline(Isochrone isochrone, double budget) {
+        String name = isochrone.origin() + ", " + budget * 60 + " minutes";
+        Path2D.Double outline = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        double area = 0;
+        for (List<Location> ring : isochrone.boundary()) {
+            assertTrue(name, ring.size() >= 4);
+            outline.moveTo(ring.get(0).x, ring.get(0).y);
+            for (int i = 0; i < ring.size(); i++) {
+                Location a = ring.get(i), b = ring.get((i + 1) % ring.size());
+                // sides are horizontal or vertical, and each vertex is a turn
+                assertTrue(name, (a.x == b.x) != (a.y == b.y));
+                area += a.x * b.y - b.x * a.y;
+                if (i > 0) {
+                    outline.lineTo(a.x, a.y);
+                }
+            }
+            outline.closePath();
+        }
+        // counter-clockwise around cells, clockwise around holes
+        assertTrue(name, area > 0);
+
+        for (int i = 0; i < isochrone.numNodes(); i++) {
+            int node = isochrone.node(i);
+            Location location = compact.node(node).location;
+            assertTrue(name + ", " + compact.node(node), outline.contains(location.x, location.y));
+            for (int arc = compact.firstArc(node); arc < compact.endArc(node); arc++) {
+                if (compact.canDrive(arc) && isochrone.time(i) + compact.cost(arc, false) <= budget) {
+                    Location target = compact.node(compact.target(arc)).location;
+                    assertTrue(name + ", arc " + arc, outline.contains((location.x + target.x) / 2,
+                            (location.y + target.y) / 2));
+                }
+            }
+        }
+    }
+}
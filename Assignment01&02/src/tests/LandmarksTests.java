@@ -0,0 +1,230 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.CompactGraph;
+import code.CostModel;
+import code.Graph;
+import code.Landmarks;
+import code.Node;
+import code.Restriction;
+
+/**
+ * Checks the landmark heuristic on the small data set. Tables saved to a file and
+ * loaded again must give the same estimates; a file saved for another graph (the
+ * same one with every segment twice as long), for the other cost model, or cut short
+ * must not be loaded, and loadOrCompute() must then work the tables out again. The
+ * estimates must never be more than the costs Dijkstra finds, by distance and by
+ * time, with and without turn restrictions.
+ *
+ * @author Hector
+ *
+ */
+public class LandmarksTests {
+
+    private static final int PAIRS = 2000;
+    private static final int SOURCES = 30;
+    private static final int TARGETS = 300;
+    private static final int BANNED_TURNS = 200;
+
+    private static Graph graph;
+    private static CompactGraph compact;
+    private static List<Node> nodes;
+    private static File dir;
+
+    @BeforeClass
+    public static void loadData() throws IOException {
+        graph = RouteTestUtil.loadSmall();
+        compact = graph.getCompactGraph();
+        nodes = RouteTestUtil.nodes(graph);
+        dir = Files.createTempDirectory("landmarks-test").toFile();
+    }
+
+    @AfterClass
+    public static void deleteFiles() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    /**
+     * Tables saved and loaded again give the same estimates, for either cost model.
+     */
+    public void testRoundTrip() {
+        for (boolean distanceFirst : new boolean[] { true, false }) {
+            File file = new File(dir, "round-trip.bin");
+            Landmarks saved = new Landmarks(compact, Landmarks.DEFAULT_NUM_LANDMARKS, distanceFirst);
+            saved.save(file);
+            Landmarks loaded = Landmarks.load(file, compact, distanceFirst);
+            assertNotNull(loaded);
+            assertSameEstimates(saved, loaded, new Random(0));
+            assertSameEstimates(saved, Landmarks.loadOrCompute(file, compact, distanceFirst), new Random(1));
+            // not for the other cost model
+            assertNull(Landmarks.load(file, compact, !distanceFirst));
+            file.delete();
+        }
+    }
+
+    @Test
+    /**
+     * A file saved for another graph with as many nodes isn't loaded, and
+     * loadOrCompute() works the tables out for this graph and saves them instead.
+     */
+    public void testOtherGraph() throws IOException {
+        CompactGraph longer = longerGraph().getCompactGraph();
+        assertEquals(compact.numNodes(), longer.numNodes());
+        File file = new File(dir, "other-graph.bin");
+        Landmarks stale = new Landmarks(longer, Landmarks.DEFAULT_NUM_LANDMARKS, true);
+        stale.save(file);
+        assertNotNull(Landmarks.load(file, longer, true));
+        assertNull(Landmarks.load(file, compact, true));
+
+        Landmarks expected = new Landmarks(compact, Landmarks.DEFAULT_NUM_LANDMARKS, true);
+        assertSameEstimates(expected, Landmarks.loadOrCompute(file, compact, true), new Random(2));
+        Landmarks saved = Landmarks.load(file, compact, true);
+        assertNotNull(saved);
+        assertSameEstimates(expected, saved, new Random(3));
+        assertNull(Landmarks.load(file, longer, true));
+    }
+
+    @Test
+    /**
+     * Files that are cut short, or missing, aren't loaded either.
+     */
+    public void testCorrupted() throws IOException {
+        File file = new File(dir, "corrupted.bin");
+        assertNull(Landmarks.load(file, compact, false));
+        Landmarks expected = Landmarks.loadOrCompute(file, compact, false);
+        assertTrue(file.exists());
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() / 2);
+        }
+        assertNull(Landmarks.load(file, compact, false));
+        assertSameEstimates(expected, Landmarks.loadOrCompute(file, compact, false), new Random(4));
+        assertNotNull(Landmarks.load(file, compact, false));
+    }
+
+    @Test
+    public void testAdmissibleByDistance() {
+        graph.setRestrictions(Collections.emptySet());
+        checkAdmissible(new Random(5), true);
+    }
+
+    @Test
+    public void testAdmissibleByTime() {
+        graph.setRestrictions(Collections.emptySet());
+        checkAdmissible(new Random(6), false);
+    }
+
+    @Test
+    /**
+     * Turn restrictions only make paths more expensive, so the tables worked out
+     * without them still hold.
+     */
+    public void testAdmissibleWithRestrictions() {
+        Random random = new Random(7);
+        Set<Restriction> restrictions = RouteTestUtil.banTurns(graph,
+                RouteTestUtil.randomPairs(nodes, random, BANNED_TURNS), random);
+        assertFalse(restrictions.isEmpty());
+        graph.setRestrictions(restrictions);
+        try {
+            checkAdmissible(random, true);
+            checkAdmissible(random, false);
+        } finally {
+            graph.setRestrictions(Collections.emptySet());
+        }
+    }
+
+    /**
+     * Checks the estimates between random sources and targets against the costs of
+     * a Dijkstra cost matrix: never more, and zero from a node to itself.
+     */
+    private static void checkAdmissible(Random random, boolean distanceFirst) {
+        Landmarks landmarks = new Landmarks(compact, Landmarks.DEFAULT_NUM_LANDMARKS, distanceFirst);
+        List<Node> sources = new ArrayList<>(), targets = new ArrayList<>();
+        for (int i = 0; i < SOURCES; i++) {
+            sources.add(nodes.get(random.nextInt(nodes.size())));
+        }
+        for (int i = 0; i < TARGETS; i++) {
+            targets.add(nodes.get(random.nextInt(nodes.size())));
+        }
+        double[][] matrix = graph.findCostMatrix(sources, targets, distanceFirst);
+        CostModel.Heuristic euclidean = CostModel.euclidean(compact, distanceFirst);
+        double estimated = 0, straight = 0;
+        for (int i = 0; i < SOURCES; i++) {
+            Node source = sources.get(i);
+            assertEquals(0, landmarks.estimate(source.index, source.index), 0);
+            for (int j = 0; j < TARGETS; j++) {
+                Node target = targets.get(j);
+                double estimate = landmarks.estimate(source.index, target.index);
+                assertTrue(estimate >= 0);
+                assertTrue(source.nodeID + " to " + target.nodeID + ": " + estimate + " > " + matrix[i][j],
+                        estimate <= matrix[i][j] + RouteTestUtil.TOLERANCE * Math.max(1, matrix[i][j]));
+                if (matrix[i][j] != Double.POSITIVE_INFINITY) {
+                    estimated += estimate;
+                    straight += euclidean.estimate(source.index, target.index);
+                }
+            }
+        }
+        // not just admissible because it says little: tighter than the euclidean bound
+        assertTrue(estimated > straight);
+    }
+
+    private static void assertSameEstimates(Landmarks expected, Landmarks actual, Random random) {
+        assertEquals(expected.numLandmarks(), actual.numLandmarks());
+        for (Node[] pair : RouteTestUtil.randomPairs(nodes, random, PAIRS)) {
+            assertEquals(pair[0].nodeID + " to " + pair[1].nodeID, expected.estimate(pair[0].index, pair[1].index),
+                    actual.estimate(pair[0].index, pair[1].index), 0);
+        }
+    }
+
+    /**
+     * @return    the small data set with every segment twice as long
+     */
+    private static Graph longerGraph() throws IOException {
+        File nodeFile = new File(RouteTestUtil.DATA, "nodeID-lat-lon.tab");
+        File roadFile = new File(RouteTestUtil.DATA, "roadID-roadInfo.tab");
+        File segFile = new File(dir, "roadSeg-roadID-length-nodeID-nodeID-coords.tab");
+        try (BufferedReader in = new BufferedReader(
+                new FileReader(new File(RouteTestUtil.DATA, segFile.getName())));
+                PrintWriter out = new PrintWriter(segFile)) {
+            out.println(in.readLine());
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] values = line.split("\t");
+                values[1] = Double.toString(2 * Double.parseDouble(values[1]));
+                out.println(String.join("\t", values));
+            }
+        }
+        File[] files = { new File(dir, nodeFile.getName()), new File(dir, roadFile.getName()) };
+        Files.copy(nodeFile.toPath(), files[0].toPath());
+        Files.copy(roadFile.toPath(), files[1].toPath());
+        Graph longer = new Graph();
+        longer.load(files[0], files[1], segFile, null, null);
+        return longer;
+    }
+}
@@ -0,0 +1,142 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import code.ArticulationUtil;
+import code.Biconnectivity;
+import code.CompactGraph;
+import code.Location;
+import code.NetworkAnalysis;
+import code.NetworkAnalysisUtil;
+import code.Node;
+import code.Road;
+import code.Segment;
+
+/**
+ * Checks NetworkAnalysisUtil on pools of one to several threads: the components
+ * found by the union-find must be those found by a breadth-first search, numbered
+ * largest first, and the biconnected structure must be that found by
+ * ArticulationUtil.
+ *
+ * @author Hector
+ *
+ */
+public class NetworkAnalysisTests {
+
+    private static final int[] THREADS = { 1, 2, 4 };
+
+    @Test
+    /**
+     * The small data set, which is small enough to be one task per phase.
+     */
+    public void testSmallData() {
+        checkOnPools(RouteTestUtil.loadSmall().getCompactGraph());
+    }
+
+    @Test
+    /**
+     * A random graph with many components and some segments from a node to itself,
+     * big enough for the union-find to be split into tasks.
+     */
+    public void testManyComponents() {
+        Random random = new Random(0);
+        Road road = new Road("1\t0\ttest st\ttest\t0\t0\t0\t0\t0\t0");
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            nodes.add(new Node(i, i, new Location(random.nextDouble(), random.nextDouble())));
+        }
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 36000; i++) {
+            Node start = nodes.get(random.nextInt(nodes.size()));
+            Node end = random.nextInt(50) == 0 ? start : nodes.get(random.nextInt(nodes.size()));
+            segments.add(new Segment(road.roadID, road, random.nextDouble(), start, end,
+                    new ArrayList<>(Collections.nCopies(2, start.location))));
+        }
+        checkOnPools(new CompactGraph(nodes, segments));
+    }
+
+    private static void checkOnPools(CompactGraph graph) {
+        for (int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertMatchesReference(graph, NetworkAnalysisUtil.analyse(graph, pool), threads);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void assertMatchesReference(CompactGraph graph, NetworkAnalysis analysis, int threads) {
+        String pool = threads + " threads";
+        int numNodes = graph.numNodes();
+
+        // label the components by breadth-first search, in order of their first node
+        int[] label = new int[numNodes];
+        Arrays.fill(label, -1);
+        List<Integer> sizes = new ArrayList<>();
+        int[] queue = new int[numNodes];
+        for (int root = 0; root < numNodes; root++) {
+            if (label[root] >= 0) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            label[root] = sizes.size();
+            queue[tail++] = root;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int arc = graph.firstArc(u); arc < graph.endArc(u); arc++) {
+                    int v = graph.target(arc);
+                    if (label[v] < 0) {
+                        label[v] = sizes.size();
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            sizes.add(tail);
+        }
+
+        assertEquals(pool, sizes.size(), analysis.numComponents());
+        List<Integer> expectedSizes = new ArrayList<>(sizes);
+        expectedSizes.sort(Collections.reverseOrder());
+        List<Integer> actualSizes = new ArrayList<>();
+        for (int c = 0; c < analysis.numComponents(); c++) {
+            actualSizes.add(analysis.componentSize(c));
+        }
+        assertEquals(pool, expectedSizes, actualSizes);
+
+        // the same nodes are together, and each component has the segments of its nodes
+        int[] componentOfLabel = new int[sizes.size()];
+        Arrays.fill(componentOfLabel, -1);
+        int[] segmentsOfLabel = new int[sizes.size()];
+        for (int u = 0; u < numNodes; u++) {
+            int c = analysis.component(u);
+            if (componentOfLabel[label[u]] < 0) {
+                componentOfLabel[label[u]] = c;
+            }
+            assertEquals(pool + ", node " + u, componentOfLabel[label[u]], c);
+            segmentsOfLabel[label[u]] += graph.endArc(u) - graph.firstArc(u);
+        }
+        for (int l = 0; l < sizes.size(); l++) {
+            assertEquals(pool, segmentsOfLabel[l] / 2, analysis.componentSegments(componentOfLabel[l]));
+        }
+
+        Biconnectivity expected = ArticulationUtil.findBiconnectivity(graph);
+        Biconnectivity actual = analysis.biconnectivity();
+        assertEquals(pool, expected.articulationPoints(), actual.articulationPoints());
+        assertEquals(pool, new HashSet<>(expected.bridges()), new HashSet<>(actual.bridges()));
+        assertEquals(pool, expected.numComponents(), actual.numComponents());
+        for (int arc = 0; arc < graph.numArcs(); arc++) {
+            assertEquals(pool + ", arc " + arc, expected.component(arc), actual.component(arc));
+        }
+    }
+}
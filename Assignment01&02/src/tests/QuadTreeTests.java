@@ -0,0 +1,132 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import code.Location;
+import code.QuadTree;
+
+/**
+ * Checks QuadTree against a linear scan of the same points. The points are put on a
+ * coarse grid, so that many of them are at the same distance from a query (ties), at
+ * the same location, on the borders of queries, and on the lines cells are split
+ * at.
+ *
+ * @author Hector
+ *
+ */
+public class QuadTreeTests {
+
+    private static final int POINTS = 3000;
+    private static final int QUERIES = 2000;
+    // the grid the points are on, 0 to GRID_SIZE - 1 steps of GRID_STEP each way
+    private static final int GRID_SIZE = 33;
+    private static final double GRID_STEP = 0.25;
+
+    @Test
+    /**
+     * Points on a grid, queried at points on and off the grid.
+     */
+    public void testGridPoints() {
+        Random random = new Random(0);
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < POINTS; i++) {
+            locations.add(gridPoint(random));
+        }
+        checkQueries(new QuadTree<>(indices(locations.size()), locations::get), locations, random);
+    }
+
+    @Test
+    /**
+     * Points added one at a time to a tree built empty, all outside its box, and
+     * more at one location than a cell holds at its deepest.
+     */
+    public void testAddedLater() {
+        Random random = new Random(1);
+        List<Location> locations = new ArrayList<>();
+        QuadTree<Integer> tree = new QuadTree<>(new ArrayList<>(), locations::get);
+        for (int i = 0; i < POINTS; i++) {
+            locations.add(i % 3 == 0 ? new Location(1, 1) : gridPoint(random));
+            tree.add(i);
+        }
+        assertEquals(POINTS, tree.size());
+        checkQueries(tree, locations, random);
+    }
+
+    @Test
+    /**
+     * An empty tree finds nothing.
+     */
+    public void testEmpty() {
+        List<Location> locations = new ArrayList<>();
+        QuadTree<Integer> tree = new QuadTree<>(new ArrayList<>(), locations::get);
+        assertEquals(0, tree.size());
+        assertNull(tree.nearest(new Location(0, 0)));
+        assertTrue(tree.within(-1, -1, 1, 1).isEmpty());
+        assertTrue(tree.within(new Location(0, 0), 10).isEmpty());
+    }
+
+    private static void checkQueries(QuadTree<Integer> tree, List<Location> locations, Random random) {
+        for (int q = 0; q < QUERIES; q++) {
+            Location at = random.nextBoolean() ? gridPoint(random)
+                    : new Location(random.nextDouble() * GRID_SIZE * GRID_STEP - 1,
+                            random.nextDouble() * GRID_SIZE * GRID_STEP - 1);
+
+            // any of the closest points will do
+            double closest = Double.POSITIVE_INFINITY;
+            for (Location location : locations) {
+                closest = Math.min(closest, at.distance(location));
+            }
+            Integer nearest = tree.nearest(at);
+            assertEquals(at.toString(), closest, at.distance(locations.get(nearest)), 0);
+
+            // a rectangle with its borders on the grid, or around a point
+            double minX = gridPoint(random).x, minY = gridPoint(random).y;
+            double maxX = minX + random.nextInt(8) * GRID_STEP, maxY = minY + random.nextInt(8) * GRID_STEP;
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < locations.size(); i++) {
+                Location location = locations.get(i);
+                if (location.x >= minX && location.x <= maxX && location.y >= minY && location.y <= maxY) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = tree.within(minX, minY, maxX, maxY);
+            assertEquals(found.size(), new HashSet<>(found).size());
+            assertEquals(expected, new HashSet<>(found));
+            Set<Integer> visited = new HashSet<>();
+            tree.forEachWithin(minX, minY, maxX, maxY, visited::add);
+            assertEquals(expected, visited);
+
+            // a radius of whole grid steps, so that points on the circle count
+            double radius = random.nextInt(6) * GRID_STEP;
+            expected.clear();
+            for (int i = 0; i < locations.size(); i++) {
+                if (at.distance(locations.get(i)) <= radius) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(at + ", " + radius, expected, new HashSet<>(tree.within(at, radius)));
+        }
+    }
+
+    private static Location gridPoint(Random random) {
+        return new Location(random.nextInt(GRID_SIZE) * GRID_STEP, random.nextInt(GRID_SIZE) * GRID_STEP);
+    }
+
+    private static List<Integer> indices(int size) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            indices.add(i);
+        }
+        return indices;
+    }
+}
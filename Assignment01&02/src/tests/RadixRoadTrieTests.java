@@ -0,0 +1,252 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.Graph;
+import code.Location;
+import code.Node;
+import code.RadixRoadTrie;
+import code.Road;
+import code.RoadTrie;
+import code.Segment;
+
+/**
+ * Checks RadixRoadTrie against RoadTrie: the roads of the large data set are put
+ * into both, and random queries, exact and misspelt, must find the same roads in
+ * the same order from either. The same goes for completing what is typed a char at
+ * a time, from the Prefix of the keystroke before.
+ *
+ * @author Hector
+ *
+ */
+public class RadixRoadTrieTests {
+
+    // run from the project directory, as Eclipse does
+    private static final File ROADS = new File("data/large/roadID-roadInfo.tab");
+    private static final int QUERIES = 3000;
+    private static final int KEYSTROKES = 21000;
+    // the chars typos are made of
+    private static final String TYPO_CHARS = "abcdefghijklmnopqrstuvwxyz ,";
+
+    private static List<Road> roads;
+    private static List<String> keys;
+    private static RoadTrie trie;
+    private static RadixRoadTrie radix;
+
+    @BeforeClass
+    public static void loadRoads() throws IOException {
+        roads = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(ROADS))) {
+            // the first line is the header
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                roads.add(new Road(line));
+            }
+        }
+        // the road file has no lengths, so give some roads a segment of random length
+        // for the ranks to depend on; and put some keys in capitals, which must be
+        // found all the same
+        Random random = new Random(0);
+        Node node = new Node(0, 0, new Location(0, 0));
+        keys = new ArrayList<>();
+        trie = new RoadTrie();
+        radix = new RadixRoadTrie();
+        for (Road road : roads) {
+            if (random.nextInt(3) == 0) {
+                road.roadSegments.add(new Segment(road.roadID, road, random.nextDouble(), node, node,
+                        new ArrayList<>(Collections.nCopies(2, node.location))));
+            }
+            String key = road.label + ", " + road.city;
+            if (random.nextInt(5) == 0) {
+                key = key.toUpperCase();
+            }
+            keys.add(key);
+            trie.add(key, road);
+            radix.add(key, road);
+        }
+        trie.rank();
+        radix.rank();
+    }
+
+    @Test
+    /**
+     * Every prefix of some keys finds the same roads.
+     */
+    public void testExactPrefixes() {
+        for (int i = 0; i < keys.size(); i += 50) {
+            String key = keys.get(i);
+            for (int length = 1; length <= key.length(); length++) {
+                assertSameRoads(key.substring(0, length), 0, Graph.SEARCH_LIMIT);
+            }
+        }
+    }
+
+    @Test
+    /**
+     * Whole keys find the same roads however many are asked for.
+     */
+    public void testAllMatches() {
+        Random random = new Random(1);
+        for (int i = 0; i < QUERIES; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            String prefix = key.substring(0, 1 + random.nextInt(key.length()));
+            assertEquals(prefix, trie.find(prefix), radix.find(prefix));
+        }
+    }
+
+    @Test
+    /**
+     * Random prefixes with up to two typos find the same roads with one typo
+     * allowed.
+     */
+    public void testOneTypo() {
+        checkMisspeltQueries(new Random(2), 1);
+    }
+
+    @Test
+    /**
+     * Random prefixes with up to two typos find the same roads with two typos
+     * allowed.
+     */
+    public void testTwoTypos() {
+        checkMisspeltQueries(new Random(3), 2);
+    }
+
+    @Test
+    /**
+     * Random prefixes with up to two typos find the same roads with none allowed,
+     * i.e. usually none.
+     */
+    public void testNoTypos() {
+        checkMisspeltQueries(new Random(4), 0);
+    }
+
+    @Test
+    /**
+     * Typing, deleting and making typos a char at a time, each keystroke completed
+     * from where the one before ended gives the best roads starting exactly with
+     * what has been typed so far.
+     */
+    public void testTyping() {
+        Random random = new Random(5);
+        String target = keys.get(random.nextInt(keys.size()));
+        StringBuilder typed = new StringBuilder();
+        RadixRoadTrie.Prefix prefix = null;
+        for (int i = 0; i < KEYSTROKES; i++) {
+            int keystroke = random.nextInt(10);
+            if (keystroke < 2 && typed.length() > 0) {
+                typed.deleteCharAt(typed.length() - 1);
+            } else if (keystroke < 3) {
+                typed.append(TYPO_CHARS.charAt(random.nextInt(TYPO_CHARS.length())));
+            } else if (typed.length() < target.length()
+                    && target.toLowerCase().startsWith(typed.toString().toLowerCase())) {
+                // in the case of the target, which doesn't matter
+                typed.append(target.charAt(typed.length()));
+            } else {
+                // the search box is cleared for another road
+                target = keys.get(random.nextInt(keys.size()));
+                typed.setLength(0);
+            }
+            String query = typed.toString();
+            prefix = radix.locate(query, prefix);
+            int limit = random.nextBoolean() ? Graph.SEARCH_LIMIT : 1 + random.nextInt(Graph.SEARCH_LIMIT);
+            assertEquals("\"" + query + "\", " + limit + " roads", trie.search(query, 0, limit),
+                    radix.complete(prefix, limit));
+        }
+    }
+
+    @Test
+    /**
+     * Asking for more roads than are kept for a node still finds all of them.
+     */
+    public void testCompletingBeyondKept() {
+        for (char c = 'a'; c <= 'z'; c++) {
+            String query = String.valueOf(c);
+            int limit = 3 * RadixRoadTrie.TOP_K;
+            assertEquals(query, trie.search(query, 0, limit), radix.complete(radix.locate(query, null), limit));
+        }
+    }
+
+    @Test
+    /**
+     * Once the tree is packed again, a Prefix found before isn't used: locate()
+     * starts from the root instead, and complete() refuses it.
+     */
+    public void testPrefixOfOldTree() {
+        int half = roads.size() / 2;
+        RadixRoadTrie tree = new RadixRoadTrie();
+        for (int i = 0; i < half; i++) {
+            tree.add(keys.get(i), roads.get(i));
+        }
+        tree.rank();
+        String key = keys.get(half).toLowerCase();
+        String query = key.substring(0, key.length() / 2);
+        RadixRoadTrie.Prefix before = tree.locate(query.substring(0, query.length() / 2), null);
+
+        // the nodes are numbered again, so the node of the old Prefix is another one
+        for (int i = half; i < roads.size(); i++) {
+            tree.add(keys.get(i), roads.get(i));
+        }
+        tree.rank();
+        RadixRoadTrie.Prefix after = tree.locate(query, before);
+        assertEquals(query, tree.complete(tree.locate(query, null), Integer.MAX_VALUE),
+                tree.complete(after, Integer.MAX_VALUE));
+        assertTrue(tree.complete(after, Integer.MAX_VALUE).contains(roads.get(half)));
+        try {
+            tree.complete(before, Graph.SEARCH_LIMIT);
+            fail("a Prefix of the old tree was completed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void checkMisspeltQueries(Random random, int maxEdits) {
+        for (int i = 0; i < QUERIES; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            String query = misspell(key.substring(0, 1 + random.nextInt(key.length())), random);
+            assertSameRoads(query, maxEdits, 1 + random.nextInt(2 * Graph.SEARCH_LIMIT));
+        }
+    }
+
+    /**
+     * @return    the query with up to two chars inserted, deleted or replaced
+     */
+    private static String misspell(String query, Random random) {
+        StringBuilder typed = new StringBuilder(query);
+        int typos = random.nextInt(3);
+        for (int t = 0; t < typos && typed.length() > 0; t++) {
+            int at = random.nextInt(typed.length());
+            char c = TYPO_CHARS.charAt(random.nextInt(TYPO_CHARS.length()));
+            switch (random.nextInt(3)) {
+            case 0:
+                typed.insert(at, c);
+                break;
+            case 1:
+                typed.deleteCharAt(at);
+                break;
+            default:
+                typed.setCharAt(at, c);
+            }
+        }
+        return typed.toString();
+    }
+
+    private static void assertSameRoads(String query, int maxEdits, int limit) {
+        assertEquals("\"" + query + "\" with " + maxEdits + " edits, " + limit + " roads",
+                trie.search(query, maxEdits, limit), radix.search(query, maxEdits, limit));
+    }
+}
@@ -0,0 +1,175 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.Graph;
+import code.Location;
+import code.Node;
+import code.Road;
+import code.RouteCache;
+import code.Segment;
+
+/**
+ * Checks RouteCache on its own (eviction, copies, versions and counts) and as used
+ * by Graph.findPath(), whose cached paths must go when the restrictions change.
+ *
+ * @author Hector
+ *
+ */
+public class RouteCacheTests {
+
+    private static final Road ROAD = new Road("1\t0\ttest st\ttest\t0\t0\t0\t0\t0\t0");
+
+    @Test
+    /**
+     * Once full, the cache drops the path used least recently, where a hit counts
+     * as a use.
+     */
+    public void testEvictsLeastRecentlyUsed() {
+        Node[] nodes = nodes(4);
+        RouteCache cache = new RouteCache(2);
+        cache.put(nodes[0], nodes[1], true, cache.version(), path(nodes[0], nodes[1]));
+        cache.put(nodes[1], nodes[2], true, cache.version(), path(nodes[1], nodes[2]));
+        assertNotNull(cache.get(nodes[0], nodes[1], true));
+        cache.put(nodes[2], nodes[3], true, cache.version(), path(nodes[2], nodes[3]));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(nodes[1], nodes[2], true));
+        assertNotNull(cache.get(nodes[0], nodes[1], true));
+        assertNotNull(cache.get(nodes[2], nodes[3], true));
+    }
+
+    @Test
+    /**
+     * The shortest and the fastest path between the same nodes, and the two ways
+     * between them, are kept apart.
+     */
+    public void testKeysApart() {
+        Node[] nodes = nodes(2);
+        RouteCache cache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        List<Segment> shortest = path(nodes[0], nodes[1]);
+        cache.put(nodes[0], nodes[1], true, cache.version(), shortest);
+        assertEquals(shortest, cache.get(nodes[0], nodes[1], true));
+        assertNull(cache.get(nodes[0], nodes[1], false));
+        assertNull(cache.get(nodes[1], nodes[0], true));
+    }
+
+    @Test
+    /**
+     * Changing a path put in or handed out changes neither what is cached.
+     */
+    public void testHandsOutCopies() {
+        Node[] nodes = nodes(3);
+        RouteCache cache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        List<Segment> path = path(nodes[0], nodes[1], nodes[2]);
+        List<Segment> expected = new ArrayList<>(path);
+        cache.put(nodes[0], nodes[2], false, cache.version(), path);
+        path.clear();
+
+        List<Segment> hit = cache.get(nodes[0], nodes[2], false);
+        assertEquals(expected, hit);
+        Collections.reverse(hit);
+        hit.remove(0);
+        assertEquals(expected, cache.get(nodes[0], nodes[2], false));
+    }
+
+    @Test
+    /**
+     * A path found before invalidate() isn't put in after it, and the paths put in
+     * before are gone.
+     */
+    public void testDropsOldVersions() {
+        Node[] nodes = nodes(3);
+        RouteCache cache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        cache.put(nodes[0], nodes[1], true, cache.version(), path(nodes[0], nodes[1]));
+        int before = cache.version();
+        cache.invalidate();
+        cache.put(nodes[1], nodes[2], true, before, path(nodes[1], nodes[2]));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(nodes[0], nodes[1], true));
+        assertNull(cache.get(nodes[1], nodes[2], true));
+        cache.put(nodes[1], nodes[2], true, cache.version(), path(nodes[1], nodes[2]));
+        assertNotNull(cache.get(nodes[1], nodes[2], true));
+    }
+
+    @Test
+    /**
+     * Every lookup is either a hit or a miss.
+     */
+    public void testCounts() {
+        Node[] nodes = nodes(2);
+        RouteCache cache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+        assertEquals(0, cache.hitRate(), 0);
+        cache.get(nodes[0], nodes[1], true);
+        cache.put(nodes[0], nodes[1], true, cache.version(), path(nodes[0], nodes[1]));
+        cache.get(nodes[0], nodes[1], true);
+        cache.get(nodes[0], nodes[1], true);
+        cache.get(nodes[0], nodes[1], false);
+
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0.5, cache.hitRate(), 0);
+    }
+
+    @Test
+    /**
+     * findPath() answers a repeat from the cache, until the restrictions are
+     * replaced, after which it searches again.
+     */
+    public void testRestrictionsDropPaths() {
+        Graph graph = RouteTestUtil.loadSmall();
+        List<Node> nodes = RouteTestUtil.nodes(graph);
+        Node[][] pairs = RouteTestUtil.randomPairs(nodes, new Random(0), 20);
+        RouteCache cache = graph.getRouteCache();
+        for (Node[] pair : pairs) {
+            graph.findPath(pair[0], pair[1], false);
+        }
+        long misses = cache.misses(), hits = cache.hits();
+        for (Node[] pair : pairs) {
+            graph.findPath(pair[0], pair[1], false);
+        }
+        assertEquals(misses, cache.misses());
+        assertEquals(hits + pairs.length, cache.hits());
+        assertTrue(cache.size() > 0);
+
+        graph.setRestrictions(new HashSet<>());
+        assertEquals(0, cache.size());
+        for (Node[] pair : pairs) {
+            graph.findPath(pair[0], pair[1], false);
+        }
+        assertEquals(misses + pairs.length, cache.misses());
+    }
+
+    private static Node[] nodes(int count) {
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = new Node(i, i, new Location(i, 0));
+        }
+        return nodes;
+    }
+
+    /**
+     * @return    a new list of segments from each node to the next
+     */
+    private static List<Segment> path(Node... nodes) {
+        List<Segment> path = new ArrayList<>();
+        for (int i = 0; i + 1 < nodes.length; i++) {
+            path.add(new Segment(ROAD.roadID, ROAD, 1, nodes[i], nodes[i + 1],
+                    Arrays.asList(nodes[i].location, nodes[i + 1].location)));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,153 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.CompactGraph;
+import code.Graph;
+import code.Node;
+import code.Restriction;
+import code.Segment;
+
+/**
+ * Checks Graph.findCostMatrix() against A*: on the small data set, every entry of a
+ * matrix between random sources and targets must be the cost of the path findPath()
+ * finds, by distance and by time, with and without turn restrictions. The targets
+ * include the sources themselves (cost 0) and repeats of the same node. One source
+ * can't be driven out of and some targets can't be driven into (one-way roads or
+ * roads not for cars), so that some pairs have no path (infinity).
+ *
+ * @author Hector
+ *
+ */
+public class RouteMatrixTests {
+
+    private static final int SOURCES = 20;
+    private static final int TARGETS = 60;
+    private static final int BANNED_TURNS = 200;
+
+    private static Graph graph;
+    private static List<Node> nodes;
+    private static Set<Restriction> restrictions;
+    // nodes that no car can drive out of, and nodes no car can drive into
+    private static List<Node> noWayOut, noWayIn;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        nodes = RouteTestUtil.nodes(graph);
+        Random random = new Random(0);
+        restrictions = RouteTestUtil.banTurns(graph, RouteTestUtil.randomPairs(nodes, random, BANNED_TURNS),
+                random);
+        assertFalse(restrictions.isEmpty());
+        CompactGraph compact = graph.getCompactGraph();
+        noWayOut = new ArrayList<>();
+        noWayIn = new ArrayList<>();
+        for (Node node : nodes) {
+            boolean out = false, in = false;
+            for (int arc = compact.firstArc(node.index); arc < compact.endArc(node.index); arc++) {
+                out |= compact.canDrive(arc);
+                in |= compact.canDrive(compact.twin(arc));
+            }
+            if (!out) {
+                noWayOut.add(node);
+            }
+            if (!in) {
+                noWayIn.add(node);
+            }
+        }
+        assertFalse(noWayOut.isEmpty());
+        assertFalse(noWayIn.isEmpty());
+    }
+
+    @Test
+    public void testByDistance() {
+        graph.setRestrictions(Collections.emptySet());
+        checkMatrix(new Random(1), true);
+    }
+
+    @Test
+    public void testByTime() {
+        graph.setRestrictions(Collections.emptySet());
+        checkMatrix(new Random(2), false);
+    }
+
+    @Test
+    public void testByDistanceWithRestrictions() {
+        graph.setRestrictions(restrictions);
+        checkMatrix(new Random(3), true);
+    }
+
+    @Test
+    public void testByTimeWithRestrictions() {
+        graph.setRestrictions(restrictions);
+        checkMatrix(new Random(4), false);
+    }
+
+    @Test
+    /**
+     * No sources or no targets make an empty matrix, or empty rows.
+     */
+    public void testEmpty() {
+        graph.setRestrictions(Collections.emptySet());
+        assertEquals(0, graph.findCostMatrix(new ArrayList<>(), nodes, true).length);
+        double[][] matrix = graph.findCostMatrix(nodes.subList(0, 3), new ArrayList<>(), true);
+        assertEquals(3, matrix.length);
+        for (double[] row : matrix) {
+            assertEquals(0, row.length);
+        }
+    }
+
+    private static void checkMatrix(Random random, boolean distanceFirst) {
+        // a source no car can leave, and targets no car can get to
+        List<Node> sources = new ArrayList<>();
+        sources.add(noWayOut.get(random.nextInt(noWayOut.size())));
+        while (sources.size() < SOURCES) {
+            sources.add(nodes.get(random.nextInt(nodes.size())));
+        }
+        // every source, and repeats of some targets, among random targets
+        List<Node> targets = new ArrayList<>(sources);
+        for (int i = 0; i < 3; i++) {
+            targets.add(noWayIn.get(random.nextInt(noWayIn.size())));
+        }
+        while (targets.size() < TARGETS) {
+            targets.add(random.nextInt(4) == 0 ? targets.get(random.nextInt(targets.size()))
+                    : nodes.get(random.nextInt(nodes.size())));
+        }
+        Collections.shuffle(targets, random);
+
+        double[][] matrix = graph.findCostMatrix(sources, targets, distanceFirst);
+        assertEquals(SOURCES, matrix.length);
+        int unreachable = 0;
+        for (int i = 0; i < SOURCES; i++) {
+            assertEquals(TARGETS, matrix[i].length);
+            for (int j = 0; j < TARGETS; j++) {
+                Node source = sources.get(i), target = targets.get(j);
+                String when = source.nodeID + " to " + target.nodeID;
+                if (source == target) {
+                    assertEquals(when, 0, matrix[i][j], 0);
+                    continue;
+                }
+                List<Segment> path = graph.findPath(source, target, distanceFirst);
+                if (path.isEmpty()) {
+                    assertEquals(when, Double.POSITIVE_INFINITY, matrix[i][j], 0);
+                    unreachable++;
+                } else {
+                    double cost = RouteTestUtil.cost(path, distanceFirst);
+                    assertEquals(when, cost, matrix[i][j], RouteTestUtil.TOLERANCE * Math.max(1, cost));
+                }
+            }
+        }
+        assertTrue("no pair without a path", unreachable > 0);
+    }
+}
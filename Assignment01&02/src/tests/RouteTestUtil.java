@@ -0,0 +1,200 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import code.CostModel;
+import code.CompactGraph;
+import code.Graph;
+import code.Node;
+import code.Restriction;
+import code.Road;
+import code.Segment;
+
+/**
+ * Helpers shared by the routing tests: loading the small data set, picking random
+ * pairs of intersections, and checking that a path found is one a car can drive.
+ *
+ * @author Hector
+ *
+ */
+final class RouteTestUtil {
+
+    // run from the project directory, as Eclipse does
+    static final File DATA = new File("data/small");
+    // costs are sums of doubles added up in different orders by different searches
+    static final double TOLERANCE = 1e-9;
+
+    private RouteTestUtil() {
+    }
+
+    /**
+     * @return    the small data set, without polygons or restrictions
+     */
+    static Graph loadSmall() {
+        Graph graph = new Graph();
+        graph.load(new File(DATA, "nodeID-lat-lon.tab"), new File(DATA, "roadID-roadInfo.tab"),
+                new File(DATA, "roadSeg-roadID-length-nodeID-nodeID-coords.tab"), null, null);
+        return graph;
+    }
+
+    /**
+     * @param graph
+     * @return    all nodes of the graph, in order of id so that seeded picks are
+     *               the same every run
+     */
+    static List<Node> nodes(Graph graph) {
+        CompactGraph compact = graph.getCompactGraph();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < compact.numNodes(); i++) {
+            nodes.add(compact.node(i));
+        }
+        nodes.sort((a, b) -> Integer.compare(a.nodeID, b.nodeID));
+        return nodes;
+    }
+
+    /**
+     * @return    count random pairs of nodes, as pairs[i][0] to pairs[i][1]
+     */
+    static Node[][] randomPairs(List<Node> nodes, Random random, int count) {
+        Node[][] pairs = new Node[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new Node[] { nodes.get(random.nextInt(nodes.size())),
+                    nodes.get(random.nextInt(nodes.size())) };
+        }
+        return pairs;
+    }
+
+    /**
+     * This method bans a random turn of the path found between each of the given
+     * pairs, so that the restrictions are on roads that routes actually take.
+     * @return    the restrictions, one per pair whose path has a turn
+     */
+    static Set<Restriction> banTurns(Graph graph, Node[][] pairs, Random random) {
+        Set<Restriction> restrictions = new HashSet<>();
+        for (Node[] pair : pairs) {
+            List<Segment> path = graph.findPath(pair[0], pair[1], random.nextBoolean());
+            if (path.size() >= 2) {
+                restrictions.add(turnOf(path, pair[0], random.nextInt(path.size() - 1)).restriction());
+            }
+        }
+        return restrictions;
+    }
+
+    /**
+     * A turn from one road onto another at an intersection, described the same way
+     * as a Restriction, whose fields can't be read from here.
+     */
+    static final class Turn {
+        final Node from, via, to;
+        final Road roadFrom, roadTo;
+
+        Turn(Node from, Road roadFrom, Node via, Road roadTo, Node to) {
+            this.from = from;
+            this.roadFrom = roadFrom;
+            this.via = via;
+            this.roadTo = roadTo;
+            this.to = to;
+        }
+
+        /**
+         * @return    true if driving in from from to via, then out from via to to,
+         *               is this turn
+         */
+        boolean matches(Node from, Segment in, Node via, Segment out, Node to) {
+            return from == this.from && in.road == roadFrom && via == this.via && out.road == roadTo
+                    && to == this.to;
+        }
+
+        Restriction restriction() {
+            return new Restriction(from, roadFrom, via, roadTo, to);
+        }
+
+        @Override
+        public String toString() {
+            return from.nodeID + " -> " + via.nodeID + " -> " + to.nodeID;
+        }
+    }
+
+    /**
+     * @param path    a path from start
+     * @param start
+     * @param i    which turn, from 0 for the one between the first two segments
+     * @return    the i-th turn of the path
+     */
+    static Turn turnOf(List<Segment> path, Node start, int i) {
+        Node from = start;
+        for (int j = 0; j < i; j++) {
+            from = path.get(j).theOtherEnd(from);
+        }
+        Segment in = path.get(i), out = path.get(i + 1);
+        Node via = in.theOtherEnd(from);
+        return new Turn(from, in.road, via, out.road, out.theOtherEnd(via));
+    }
+
+    /**
+     * @return    true if a car may drive the segment leaving the given end
+     */
+    static boolean canDrive(Segment seg, Node from) {
+        return !seg.road.notForCar && (!seg.road.isOneWay || seg.start == from);
+    }
+
+    /**
+     * @return    the total cost of the path, by distance or by time
+     */
+    static double cost(List<Segment> path, boolean distanceFirst) {
+        double cost = 0;
+        for (Segment seg : path) {
+            cost += CostModel.edgeCost(seg, distanceFirst);
+        }
+        return cost;
+    }
+
+    /**
+     * Checks that the path goes from start to end one segment after another, and
+     * that a car may drive each segment the way it's taken.
+     * @return    the intersections the path goes through, from start to end
+     */
+    static List<Node> assertDrivable(String when, Node start, Node end, List<Segment> path) {
+        assertNotNull(when, path);
+        List<Node> visited = new ArrayList<>();
+        visited.add(start);
+        Node at = start;
+        for (Segment seg : path) {
+            Node next = seg.theOtherEnd(at);
+            assertNotNull(when + ": " + seg + " doesn't leave " + at.nodeID, next);
+            assertTrue(when + ": " + seg + " can't be driven from " + at.nodeID, canDrive(seg, at));
+            visited.add(next);
+            at = next;
+        }
+        assertEquals(when + ": the path doesn't end at the destination", end, at);
+        return visited;
+    }
+
+    /**
+     * Checks that the two paths are both drivable and cost the same, or that
+     * neither was found.
+     */
+    static void assertSameCost(String when, Node start, Node end, List<Segment> expected,
+            List<Segment> actual, boolean distanceFirst) {
+        if (start == end) {
+            return;
+        }
+        assertEquals(when + ": one path is missing", expected.isEmpty(), actual.isEmpty());
+        if (expected.isEmpty()) {
+            return;
+        }
+        assertDrivable(when, start, end, expected);
+        assertDrivable(when, start, end, actual);
+        double cost = cost(expected, distanceFirst);
+        assertEquals(when, cost, cost(actual, distanceFirst), TOLERANCE * Math.max(1, cost));
+    }
+}
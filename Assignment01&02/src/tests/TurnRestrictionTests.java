@@ -0,0 +1,257 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import code.CostModel;
+import code.CompactGraph;
+import code.Graph;
+import code.Node;
+import code.Segment;
+
+/**
+ * Checks that routes keep to turn restrictions: one turn of the small data set is
+ * banned at a time, and the path found must not take it and must cost the same as
+ * the one found by a plain Dijkstra search over the segments driven, written here
+ * independently of AStarUtil and TurnRestrictions.
+ *
+ * @author Hector
+ *
+ */
+public class TurnRestrictionTests {
+
+    private static final int ROUTES = 100;
+    // how many turns next to dead ends to ban
+    private static final int DEAD_END_TURNS = 50;
+
+    private static Graph graph;
+    private static CompactGraph compact;
+    private static List<Node> nodes;
+    // the segments, numbered in the order of their first arc
+    private static List<Segment> segments;
+    private static Map<Segment, Integer> segmentIndices;
+
+    @BeforeClass
+    public static void loadData() {
+        graph = RouteTestUtil.loadSmall();
+        compact = graph.getCompactGraph();
+        nodes = RouteTestUtil.nodes(graph);
+        segments = new ArrayList<>();
+        segmentIndices = new HashMap<>();
+        for (int arc = 0; arc < compact.numArcs(); arc++) {
+            Segment seg = compact.segment(arc);
+            if (segmentIndices.putIfAbsent(seg, segments.size()) == null) {
+                segments.add(seg);
+            }
+        }
+    }
+
+    @Test
+    /**
+     * Bans a turn that the shortest path takes.
+     */
+    public void testBannedTurnByDistance() {
+        checkBannedTurns(new Random(1), true);
+    }
+
+    @Test
+    /**
+     * Bans a turn that the fastest path takes.
+     */
+    public void testBannedTurnByTime() {
+        checkBannedTurns(new Random(2), false);
+    }
+
+    @Test
+    /**
+     * Bans going straight on past a dead end, so that the way around is to drive
+     * into the dead end, turn back and come out onto the road ahead. That path
+     * must still be found, by distance and by time.
+     */
+    public void testUTurnDetour() {
+        int uTurns = 0;
+        int checked = 0;
+        for (Node via : nodes) {
+            if (checked == DEAD_END_TURNS) {
+                break;
+            }
+            Segment deadEnd = deadEndFrom(via);
+            if (deadEnd == null) {
+                continue;
+            }
+            // any two other roads that can be driven through via
+            for (Segment in : joinedSegments(via)) {
+                Node from = in.theOtherEnd(via);
+                if (in == deadEnd || !RouteTestUtil.canDrive(in, from)) {
+                    continue;
+                }
+                for (Segment out : joinedSegments(via)) {
+                    Node to = out.theOtherEnd(via);
+                    if (out == deadEnd || out == in || to == from || !RouteTestUtil.canDrive(out, via)) {
+                        continue;
+                    }
+                    RouteTestUtil.Turn turn = new RouteTestUtil.Turn(from, in.road, via, out.road, to);
+                    for (boolean distanceFirst : new boolean[] { true, false }) {
+                        List<Segment> path = checkRoute(turn, from, to, distanceFirst);
+                        if (hasUTurn(path)) {
+                            uTurns++;
+                        }
+                    }
+                    checked++;
+                }
+            }
+        }
+        assertTrue("no turn next to a dead end to ban", checked > 0);
+        assertTrue("no detour through a dead end was needed", uTurns > 0);
+    }
+
+    /**
+     * For ROUTES random routes, bans one of their turns and checks the route found
+     * instead.
+     */
+    private static void checkBannedTurns(Random random, boolean distanceFirst) {
+        int banned = 0;
+        for (Node[] pair : RouteTestUtil.randomPairs(nodes, random, ROUTES)) {
+            graph.setRestrictions(Collections.emptySet());
+            List<Segment> path = graph.findPath(pair[0], pair[1], distanceFirst);
+            if (path.size() < 2) {
+                continue;
+            }
+            RouteTestUtil.Turn turn = RouteTestUtil.turnOf(path, pair[0], random.nextInt(path.size() - 1));
+            checkRoute(turn, pair[0], pair[1], distanceFirst);
+            banned++;
+        }
+        assertTrue("no route had a turn to ban", banned > 0);
+    }
+
+    /**
+     * Bans the turn and finds the path from start to end, which must be drivable,
+     * not take the turn, and cost the same as the path found by dijkstra().
+     * @return    the path found
+     */
+    private static List<Segment> checkRoute(RouteTestUtil.Turn turn, Node start, Node end,
+            boolean distanceFirst) {
+        String when = "banning " + turn + ", " + start.nodeID + " to " + end.nodeID
+                + (distanceFirst ? " by distance" : " by time");
+        graph.setRestrictions(Collections.singleton(turn.restriction()));
+        List<Segment> path = graph.findPath(start, end, distanceFirst);
+        double expected = dijkstra(start, end, turn, distanceFirst);
+        assertEquals(when + ": one path is missing", Double.isInfinite(expected), path.isEmpty());
+        if (path.isEmpty()) {
+            return path;
+        }
+        List<Node> visited = RouteTestUtil.assertDrivable(when, start, end, path);
+        for (int i = 0; i + 1 < path.size(); i++) {
+            assertFalse(when + ": the path takes the banned turn", turn.matches(visited.get(i), path.get(i),
+                    visited.get(i + 1), path.get(i + 1), visited.get(i + 2)));
+        }
+        assertEquals(when, expected, RouteTestUtil.cost(path, distanceFirst),
+                RouteTestUtil.TOLERANCE * Math.max(1, expected));
+        return path;
+    }
+
+    /**
+     * Dijkstra's search over the segments driven rather than the intersections, so
+     * that the turn taken at each intersection is known. A state is a segment and
+     * the end it was driven to, numbered 2 * segment index, plus 1 if it was driven
+     * to its start.
+     * @return    the cost of the best path from start to end that doesn't take the
+     *               banned turn, or infinity if there is none
+     */
+    private static double dijkstra(Node start, Node end, RouteTestUtil.Turn banned, boolean distanceFirst) {
+        double[] costs = new double[2 * segments.size()];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        // entries are { cost, state }
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        for (Segment seg : joinedSegments(start)) {
+            if (RouteTestUtil.canDrive(seg, start)) {
+                relax(costs, queue, seg, seg.theOtherEnd(start), CostModel.edgeCost(seg, distanceFirst));
+            }
+        }
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int state = (int) entry[1];
+            if (entry[0] > costs[state]) {
+                continue;
+            }
+            Segment in = segments.get(state / 2);
+            Node at = state % 2 == 0 ? in.end : in.start;
+            if (at == end) {
+                return entry[0];
+            }
+            Node from = in.theOtherEnd(at);
+            for (Segment out : joinedSegments(at)) {
+                Node to = out.theOtherEnd(at);
+                if (RouteTestUtil.canDrive(out, at) && !banned.matches(from, in, at, out, to)) {
+                    relax(costs, queue, out, to, entry[0] + CostModel.edgeCost(out, distanceFirst));
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static void relax(double[] costs, PriorityQueue<double[]> queue, Segment seg, Node to,
+            double cost) {
+        int state = 2 * segmentIndices.get(seg) + (to == seg.end ? 0 : 1);
+        if (cost < costs[state]) {
+            costs[state] = cost;
+            queue.add(new double[] { cost, state });
+        }
+    }
+
+    /**
+     * @return    the segment to a neighbour of the node that has no other segment,
+     *               if a car may drive it both ways, or null if there is none
+     */
+    private static Segment deadEndFrom(Node node) {
+        for (Segment seg : joinedSegments(node)) {
+            Node other = seg.theOtherEnd(node);
+            if (other != node && joinedSegments(other).size() == 1 && RouteTestUtil.canDrive(seg, node)
+                    && RouteTestUtil.canDrive(seg, other)) {
+                return seg;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return    the segments joining the node, each once, as the arcs of the
+     *               compact graph leaving it find them
+     */
+    private static List<Segment> joinedSegments(Node node) {
+        List<Segment> joined = new ArrayList<>();
+        for (int arc = compact.firstArc(node.index); arc < compact.endArc(node.index); arc++) {
+            Segment seg = compact.segment(arc);
+            // a segment from the node back to itself leaves it both ways
+            if (!joined.contains(seg)) {
+                joined.add(seg);
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * @return    true if the path drives some segment and straight back along it
+     */
+    private static boolean hasUTurn(List<Segment> path) {
+        for (int i = 0; i + 1 < path.size(); i++) {
+            if (path.get(i) == path.get(i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}